@@ -1,6 +1,7 @@
 plugins {
     id("java")
     idea
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.atlantfs"
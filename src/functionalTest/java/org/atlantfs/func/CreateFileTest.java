@@ -61,6 +61,36 @@ class CreateFileTest {
         }
     }
 
+    @Test
+    void createFile_should_persistManyFiles_when_journal(TestInfo testInfo) throws IOException {
+        // Given
+        var atlantUri = atlantUri(testInfo);
+        var atlantConfig = AtlantConfig.defaults()
+                .blockSize(256)
+                .inodeSize(64)
+                .numberOfBlockBitmaps(1)
+                .numberOfInodeBitmaps(1)
+                .numberOfInodeTables(32)
+                .numberOfJournalBlocks(64)
+                .journalCommitMillis(10);
+        var expected = new ArrayList<String>();
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.asMap())) {
+            // When
+            for (int i = 0; i < 100; i++) {
+                var path = fileSystem.getPath("/dir" + i % 10 + "/file" + i + ".txt");
+                Files.createDirectories(path.getParent());
+                Files.writeString(path, "content" + i);
+                expected.add(path.toString());
+            }
+        }
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.asMap())) {
+            // Then
+            var files = allRegularFiles(fileSystem);
+            assertThat(files).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(Files.readString(fileSystem.getPath("/dir7/file57.txt"))).isEqualTo("content57");
+        }
+    }
+
     @Test
     void createFile_should_throwFileAlreadyExistsException_when_fileAlreadyExists(TestInfo testInfo) throws IOException {
         // Given
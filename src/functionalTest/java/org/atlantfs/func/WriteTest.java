@@ -8,6 +8,7 @@ import org.junit.jupiter.api.TestInfo;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -18,8 +19,11 @@ import java.util.ArrayList;
 import java.util.logging.Logger;
 
 import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.atlantfs.util.AtlantFileUtil.atlantFile;
 import static org.atlantfs.util.AtlantFileUtil.atlantUri;
 import static org.atlantfs.util.AtlantFileUtil.deleteAllAtlantFiles;
 import static org.atlantfs.util.PathUtil.allRegularFiles;
@@ -174,6 +178,139 @@ class WriteTest {
         }
     }
 
+    @Test
+    void write_should_persistContent_when_memoryMapped(TestInfo testInfo) throws IOException {
+        // Given
+        var atlantUri = atlantUri(testInfo);
+        var atlantConfig = AtlantConfig.defaults()
+                .blockSize(64)
+                .inodeSize(32)
+                .numberOfBlockBitmaps(1)
+                .numberOfInodeBitmaps(1)
+                .numberOfInodeTables(1);
+        var license = projectDir().resolve("LICENSE");
+        var text = Files.readAllBytes(license);
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.device(AtlantConfig.Device.MAPPED).asMap())) {
+            var path = fileSystem.getPath("/LICENSE");
+            // When
+            Files.write(path, text, CREATE);
+            var actual = Files.readAllBytes(path);
+            // Then
+            assertThat(actual).isEqualTo(text);
+        }
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.device(AtlantConfig.Device.FILE).asMap())) {
+            var path = fileSystem.getPath("/LICENSE");
+            // When
+            var actual = Files.readAllBytes(path);
+            var size = Files.size(path);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(actual).isEqualTo(text);
+                softly.assertThat(size).isEqualTo(text.length);
+            });
+        }
+    }
+
+    @Test
+    void write_should_persistContent_when_writeBack(TestInfo testInfo) throws IOException {
+        // Given
+        var atlantUri = atlantUri(testInfo);
+        var atlantConfig = AtlantConfig.defaults()
+                .blockSize(64)
+                .inodeSize(32)
+                .numberOfBlockBitmaps(1)
+                .numberOfInodeBitmaps(1)
+                .numberOfInodeTables(1);
+        var license = projectDir().resolve("LICENSE");
+        var text = Files.readAllBytes(license);
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.writeBack(true).asMap())) {
+            var path = fileSystem.getPath("/LICENSE");
+            // When
+            Files.write(path, text, CREATE);
+            var actual = Files.readAllBytes(path);
+            // Then
+            assertThat(actual).isEqualTo(text);
+        }
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.writeBack(false).asMap())) {
+            var path = fileSystem.getPath("/LICENSE");
+            // When
+            var actual = Files.readAllBytes(path);
+            var size = Files.size(path);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(actual).isEqualTo(text);
+                softly.assertThat(size).isEqualTo(text.length);
+            });
+        }
+    }
+
+    @Test
+    void write_should_notAllocateHole_when_positionFarAfterEnd(TestInfo testInfo) throws IOException {
+        // Given
+        var atlantUri = atlantUri(testInfo);
+        var atlantConfig = AtlantConfig.defaults()
+                .blockSize(64)
+                .inodeSize(32)
+                .numberOfBlockBitmaps(1)
+                .numberOfInodeBitmaps(1)
+                .numberOfInodeTables(1);
+        var position = 1024L * 1024 * 1024;
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.asMap())) {
+            var path = fileSystem.getPath("/sparse");
+            // When
+            Files.writeString(path, "head", CREATE);
+            try (var channel = Files.newByteChannel(path, WRITE)) {
+                channel.position(position);
+                channel.write(ByteBuffer.wrap("tail".getBytes()));
+            }
+        }
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.asMap())) {
+            var path = fileSystem.getPath("/sparse");
+            var size = Files.size(path);
+            var buffer = ByteBuffer.allocate(8);
+            try (var channel = Files.newByteChannel(path, READ)) {
+                channel.position(position - 4);
+                channel.read(buffer);
+            }
+            var atlantSize = Files.size(atlantFile(testInfo));
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(size).isEqualTo(position + 4);
+                softly.assertThat(buffer.array()).containsExactly(0, 0, 0, 0, 't', 'a', 'i', 'l');
+                softly.assertThat(atlantSize).isLessThan(64 * 1024);
+            });
+        }
+    }
+
+    @Test
+    void write_should_notCreateAtlantFile_when_memoryDevice(TestInfo testInfo) throws IOException {
+        // Given
+        var atlantFile = atlantFile(testInfo);
+        var atlantUri = atlantUri(testInfo);
+        var atlantConfig = AtlantConfig.defaults()
+                .blockSize(64)
+                .inodeSize(32)
+                .numberOfBlockBitmaps(1)
+                .numberOfInodeBitmaps(1)
+                .numberOfInodeTables(1)
+                .device(AtlantConfig.Device.MEMORY);
+        var license = projectDir().resolve("LICENSE");
+        var text = Files.readAllBytes(license);
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri, atlantConfig.asMap())) {
+            var path = fileSystem.getPath("/LICENSE");
+            // When
+            Files.write(path, text, CREATE);
+            var actual = Files.readAllBytes(path);
+            var size = Files.size(path);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(actual).isEqualTo(text);
+                softly.assertThat(size).isEqualTo(text.length);
+                softly.assertThat(atlantFile).doesNotExist();
+            });
+        }
+    }
+
     @Test
     void soapOpera(TestInfo testInfo) throws IOException {
         // Given
@@ -0,0 +1,95 @@
+package org.atlantfs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserve and free bits of almost full bitmap, each operation is followed by write of block as {@link BitmapRegion}
+ * does.
+ * <p>
+ * {@link #bitSet} replays previous implementation on {@link BitSet}: scan from bit 0 and allocation of the whole block
+ * on every write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitmapBenchmark {
+
+    private static final int CHURN = 64;
+
+    @Param({"4096", "65536"})
+    int blockSize;
+
+    @Param({"0.5", "0.95"})
+    double fill;
+
+    private Bitmap bitmap;
+    private BitSet bitSet;
+    private ByteBuffer block;
+    private int[] positions;
+    private SplittableRandom random;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        random = new SplittableRandom(42);
+        block = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+        var bits = blockSize * 8;
+        for (int i = 0; i < bits * fill; i++) {
+            var bit = random.nextInt(bits);
+            block.put(bit / 8, (byte) (block.get(bit / 8) | 1 << bit % 8));
+        }
+        bitmap = Bitmap.read(block, Block.Id.of(1));
+        bitSet = BitSet.valueOf(block);
+        positions = new int[CHURN];
+        for (int i = 0; i < CHURN; i++) {
+            var bit = bitmap.reserve();
+            positions[i] = bit;
+            bitSet.set(bit);
+        }
+        bitmap.write(block.clear().position(bitmap.dirtyOffset()));
+    }
+
+    @Benchmark
+    public void bitmap(Blackhole blackhole) {
+        var index = random.nextInt(CHURN);
+        bitmap.free(positions[index]);
+        bitmap.write(block.clear().position(bitmap.dirtyOffset()));
+        var bit = bitmap.reserve();
+        bitmap.write(block.clear().position(bitmap.dirtyOffset()));
+        positions[index] = bit;
+        blackhole.consume(bit);
+    }
+
+    @Benchmark
+    public void bitSet(Blackhole blackhole) {
+        var index = random.nextInt(CHURN);
+        bitSet.clear(positions[index]);
+        block.clear().put(bitSet.toByteArray());
+        var bit = bitSet.nextClearBit(0);
+        bitSet.set(bit);
+        block.clear().put(bitSet.toByteArray());
+        positions[index] = bit;
+        blackhole.consume(bit);
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.atlantfs;
+
+/**
+ * Consecutive bitmaps of {@link BitmapRegion} which are allocated from together.
+ * <p>
+ * Each thread prefers its own group, so concurrent writers don't contend on the same bitmaps and files written by one
+ * thread stay close to each other. Group has its own {@link FreeSpaceSummary} and cursor pointing to bitmap of the last
+ * reservation, search starts from it.
+ */
+final class AllocationGroup {
+
+    private final int number;
+    private final int firstBitmap;
+    private final int numberOfBitmaps;
+    private final FreeSpaceSummary summary;
+    private volatile int cursor;
+
+    AllocationGroup(int number, int firstBitmap, int numberOfBitmaps) {
+        assert numberOfBitmaps > 0;
+        this.number = number;
+        this.firstBitmap = firstBitmap;
+        this.numberOfBitmaps = numberOfBitmaps;
+        this.summary = new FreeSpaceSummary(numberOfBitmaps);
+        this.cursor = firstBitmap;
+    }
+
+    /**
+     * Find bitmap with free run of at least specified length, starting from cursor and wrapping to the start of group.
+     *
+     * @param length the length of run
+     * @return the number of bitmap or -1 if there is no such bitmap in group
+     */
+    int preferred(int length) {
+        var result = first(cursor, length);
+        return result >= 0 ? result : first(firstBitmap, length);
+    }
+
+    /**
+     * Find the first bitmap of group with free run of at least specified length.
+     *
+     * @param from   the number of bitmap to start from
+     * @param length the length of run
+     * @return the number of bitmap or -1 if there is no such bitmap in group
+     */
+    int first(int from, int length) {
+        var result = summary.first(Math.max(0, from - firstBitmap), length);
+        return result < 0 ? -1 : firstBitmap + result;
+    }
+
+    void update(int bitmapNumber, Bitmap bitmap) {
+        assert contains(bitmapNumber);
+        summary.update(bitmapNumber - firstBitmap, bitmap);
+    }
+
+    void moveCursor(int bitmapNumber) {
+        assert contains(bitmapNumber);
+        cursor = bitmapNumber;
+    }
+
+    boolean contains(int bitmapNumber) {
+        return bitmapNumber >= firstBitmap && bitmapNumber < end();
+    }
+
+    //region getters
+    int number() {
+        return number;
+    }
+
+    int firstBitmap() {
+        return firstBitmap;
+    }
+
+    int end() {
+        return firstBitmap + numberOfBitmaps;
+    }
+
+    long totalFree() {
+        return summary.totalFree();
+    }
+
+    int longestFreeRun() {
+        return summary.longestFreeRun();
+    }
+    //endregion
+
+    @Override
+    public String toString() {
+        return "AllocationGroup{" +
+                "number=" + number +
+                ", firstBitmap=" + firstBitmap +
+                ", numberOfBitmaps=" + numberOfBitmaps +
+                ", cursor=" + cursor +
+                ", summary=" + summary +
+                '}';
+    }
+
+}
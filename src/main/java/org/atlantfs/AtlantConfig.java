@@ -13,17 +13,53 @@ public class AtlantConfig {
     public static final String NUMBER_OF_BLOCK_BITMAPS = "number-of-block-bitmaps";
     public static final String NUMBER_OF_INODE_BITMAPS = "number-of-inode-bitmaps";
     public static final String NUMBER_OF_INODE_TABLES = "number-of-inode-tables";
+    public static final String DEVICE = "device";
+    public static final String CACHE_SIZE_BYTES = "cache-size-bytes";
+    public static final String WRITE_BACK = "write-back";
+    public static final String DIRTY_EXPIRE_MILLIS = "dirty-expire-millis";
+    public static final String DIRTY_RATIO = "dirty-ratio";
+    public static final String NUMBER_OF_JOURNAL_BLOCKS = "number-of-journal-blocks";
+    public static final String JOURNAL_COMMIT_MILLIS = "journal-commit-millis";
+    public static final String RESERVATION_WINDOW_BLOCKS = "reservation-window-blocks";
+    public static final String MAX_RESERVATION_WINDOW_BLOCKS = "max-reservation-window-blocks";
+    public static final String DIR_HASH_TREE_BLOCKS = "dir-hash-tree-blocks";
+    public static final String DENTRY_CACHE_SIZE = "dentry-cache-size";
+    public static final String DIR_NAME_FILTER_BLOCKS = "dir-name-filter-blocks";
     public static final int DEFAULT_BLOCK_SIZE = 512;
     public static final int DEFAULT_INODE_SIZE = 64;
     public static final int DEFAULT_NUMBER_OF_BLOCK_BITMAPS = 1;
     public static final int DEFAULT_NUMBER_OF_INODE_BITMAPS = 1;
     public static final int DEFAULT_NUMBER_OF_INODE_TABLES = 1;
+    public static final Device DEFAULT_DEVICE = Device.FILE;
+    public static final long DEFAULT_CACHE_SIZE_BYTES = 16L * 1024 * 1024;
+    public static final boolean DEFAULT_WRITE_BACK = false;
+    public static final long DEFAULT_DIRTY_EXPIRE_MILLIS = 5000;
+    public static final double DEFAULT_DIRTY_RATIO = 0.5;
+    public static final int DEFAULT_NUMBER_OF_JOURNAL_BLOCKS = 0;
+    public static final long DEFAULT_JOURNAL_COMMIT_MILLIS = 100;
+    public static final int DEFAULT_RESERVATION_WINDOW_BLOCKS = 8;
+    public static final int DEFAULT_MAX_RESERVATION_WINDOW_BLOCKS = 1024;
+    public static final int DEFAULT_DIR_HASH_TREE_BLOCKS = 4;
+    public static final int DEFAULT_DENTRY_CACHE_SIZE = 65536;
+    public static final int DEFAULT_DIR_NAME_FILTER_BLOCKS = 2;
 
     private int blockSize = DEFAULT_BLOCK_SIZE;
     private int inodeSize = DEFAULT_INODE_SIZE;
     private int numberOfBlockBitmaps = DEFAULT_NUMBER_OF_BLOCK_BITMAPS;
     private int numberOfInodeBitmaps = DEFAULT_NUMBER_OF_INODE_BITMAPS;
     private int numberOfInodeTables = DEFAULT_NUMBER_OF_INODE_TABLES;
+    private Device device = DEFAULT_DEVICE;
+    private long cacheSizeBytes = DEFAULT_CACHE_SIZE_BYTES;
+    private boolean writeBack = DEFAULT_WRITE_BACK;
+    private long dirtyExpireMillis = DEFAULT_DIRTY_EXPIRE_MILLIS;
+    private double dirtyRatio = DEFAULT_DIRTY_RATIO;
+    private int numberOfJournalBlocks = DEFAULT_NUMBER_OF_JOURNAL_BLOCKS;
+    private long journalCommitMillis = DEFAULT_JOURNAL_COMMIT_MILLIS;
+    private int reservationWindowBlocks = DEFAULT_RESERVATION_WINDOW_BLOCKS;
+    private int maxReservationWindowBlocks = DEFAULT_MAX_RESERVATION_WINDOW_BLOCKS;
+    private int dirHashTreeBlocks = DEFAULT_DIR_HASH_TREE_BLOCKS;
+    private int dentryCacheSize = DEFAULT_DENTRY_CACHE_SIZE;
+    private int dirNameFilterBlocks = DEFAULT_DIR_NAME_FILTER_BLOCKS;
 
     private AtlantConfig() {
     }
@@ -39,23 +75,51 @@ public class AtlantConfig {
         setIfPresent(map.get(NUMBER_OF_BLOCK_BITMAPS), config::numberOfBlockBitmaps);
         setIfPresent(map.get(NUMBER_OF_INODE_BITMAPS), config::numberOfInodeBitmaps);
         setIfPresent(map.get(NUMBER_OF_INODE_TABLES), config::numberOfInodeTables);
+        setIfPresent(map.get(DEVICE), Device.class, config::device);
+        setIfPresent(map.get(CACHE_SIZE_BYTES), Number.class, value -> config.cacheSizeBytes(value.longValue()));
+        setIfPresent(map.get(WRITE_BACK), Boolean.class, config::writeBack);
+        setIfPresent(map.get(DIRTY_EXPIRE_MILLIS), Number.class, value -> config.dirtyExpireMillis(value.longValue()));
+        setIfPresent(map.get(DIRTY_RATIO), Number.class, value -> config.dirtyRatio(value.doubleValue()));
+        setIfPresent(map.get(NUMBER_OF_JOURNAL_BLOCKS), config::numberOfJournalBlocks);
+        setIfPresent(map.get(JOURNAL_COMMIT_MILLIS), Number.class, value -> config.journalCommitMillis(value.longValue()));
+        setIfPresent(map.get(RESERVATION_WINDOW_BLOCKS), config::reservationWindowBlocks);
+        setIfPresent(map.get(MAX_RESERVATION_WINDOW_BLOCKS), config::maxReservationWindowBlocks);
+        setIfPresent(map.get(DIR_HASH_TREE_BLOCKS), config::dirHashTreeBlocks);
+        setIfPresent(map.get(DENTRY_CACHE_SIZE), config::dentryCacheSize);
+        setIfPresent(map.get(DIR_NAME_FILTER_BLOCKS), config::dirNameFilterBlocks);
         return config;
     }
 
     private static void setIfPresent(Object value, Consumer<Integer> consumer) {
+        setIfPresent(value, Integer.class, consumer);
+    }
+
+    private static <T> void setIfPresent(Object value, Class<T> type, Consumer<T> consumer) {
         Optional.ofNullable(value)
-                .filter(Integer.class::isInstance)
-                .map(Integer.class::cast)
+                .filter(type::isInstance)
+                .map(type::cast)
                 .ifPresent(consumer);
     }
 
     public Map<String, ?> asMap() {
-        return Map.of(
-                BLOCK_SIZE, blockSize,
-                INODE_SIZE, inodeSize,
-                NUMBER_OF_BLOCK_BITMAPS, numberOfBlockBitmaps,
-                NUMBER_OF_INODE_BITMAPS, numberOfInodeBitmaps,
-                NUMBER_OF_INODE_TABLES, numberOfInodeTables
+        return Map.ofEntries(
+                Map.entry(BLOCK_SIZE, blockSize),
+                Map.entry(INODE_SIZE, inodeSize),
+                Map.entry(NUMBER_OF_BLOCK_BITMAPS, numberOfBlockBitmaps),
+                Map.entry(NUMBER_OF_INODE_BITMAPS, numberOfInodeBitmaps),
+                Map.entry(NUMBER_OF_INODE_TABLES, numberOfInodeTables),
+                Map.entry(DEVICE, device),
+                Map.entry(CACHE_SIZE_BYTES, cacheSizeBytes),
+                Map.entry(WRITE_BACK, writeBack),
+                Map.entry(DIRTY_EXPIRE_MILLIS, dirtyExpireMillis),
+                Map.entry(DIRTY_RATIO, dirtyRatio),
+                Map.entry(NUMBER_OF_JOURNAL_BLOCKS, numberOfJournalBlocks),
+                Map.entry(JOURNAL_COMMIT_MILLIS, journalCommitMillis),
+                Map.entry(RESERVATION_WINDOW_BLOCKS, reservationWindowBlocks),
+                Map.entry(MAX_RESERVATION_WINDOW_BLOCKS, maxReservationWindowBlocks),
+                Map.entry(DIR_HASH_TREE_BLOCKS, dirHashTreeBlocks),
+                Map.entry(DENTRY_CACHE_SIZE, dentryCacheSize),
+                Map.entry(DIR_NAME_FILTER_BLOCKS, dirNameFilterBlocks)
         );
     }
 
@@ -79,6 +143,54 @@ public class AtlantConfig {
         return numberOfInodeTables;
     }
 
+    public Device device() {
+        return device;
+    }
+
+    public long cacheSizeBytes() {
+        return cacheSizeBytes;
+    }
+
+    public boolean writeBack() {
+        return writeBack;
+    }
+
+    public long dirtyExpireMillis() {
+        return dirtyExpireMillis;
+    }
+
+    public double dirtyRatio() {
+        return dirtyRatio;
+    }
+
+    public int numberOfJournalBlocks() {
+        return numberOfJournalBlocks;
+    }
+
+    public long journalCommitMillis() {
+        return journalCommitMillis;
+    }
+
+    public int reservationWindowBlocks() {
+        return reservationWindowBlocks;
+    }
+
+    public int maxReservationWindowBlocks() {
+        return maxReservationWindowBlocks;
+    }
+
+    public int dirHashTreeBlocks() {
+        return dirHashTreeBlocks;
+    }
+
+    public int dentryCacheSize() {
+        return dentryCacheSize;
+    }
+
+    public int dirNameFilterBlocks() {
+        return dirNameFilterBlocks;
+    }
+
     public AtlantConfig blockSize(int blockSize) {
         this.blockSize = blockSize;
         return this;
@@ -117,4 +229,177 @@ public class AtlantConfig {
         return this;
     }
 
+    /**
+     * Select storage of file system.
+     * <p>
+     * Mount option, is not persisted and can be changed on every mount.
+     *
+     * @param device the device
+     * @return this config
+     */
+    public AtlantConfig device(Device device) {
+        this.device = device;
+        return this;
+    }
+
+    /**
+     * Limit memory used by cache of blocks, zero disables cache.
+     * <p>
+     * Mount option, is not persisted and can be changed on every mount. Not used by addressable devices.
+     *
+     * @param cacheSizeBytes the size of cache in bytes
+     * @return this config
+     */
+    public AtlantConfig cacheSizeBytes(long cacheSizeBytes) {
+        this.cacheSizeBytes = cacheSizeBytes;
+        return this;
+    }
+
+    /**
+     * Keep written blocks in cache and flush them in background instead of writing through on every change.
+     * <p>
+     * Mount option, requires cache. Changes not yet flushed are lost on crash.
+     *
+     * @param writeBack true to enable write-back mode
+     * @return this config
+     */
+    public AtlantConfig writeBack(boolean writeBack) {
+        this.writeBack = writeBack;
+        return this;
+    }
+
+    /**
+     * Maximum age of dirty block in write-back mode.
+     *
+     * @param dirtyExpireMillis the age in milliseconds
+     * @return this config
+     */
+    public AtlantConfig dirtyExpireMillis(long dirtyExpireMillis) {
+        this.dirtyExpireMillis = dirtyExpireMillis;
+        return this;
+    }
+
+    /**
+     * Part of cache which dirty blocks can take in write-back mode before background flush starts.
+     *
+     * @param dirtyRatio the ratio between 0 and 1
+     * @return this config
+     */
+    public AtlantConfig dirtyRatio(double dirtyRatio) {
+        this.dirtyRatio = dirtyRatio;
+        return this;
+    }
+
+    /**
+     * Reserve region for write-ahead journal of metadata, zero disables journal.
+     * <p>
+     * Persisted on creation of file system. Journal needs header block and at least 2 blocks for transactions.
+     *
+     * @param numberOfJournalBlocks the number of blocks in journal region
+     * @return this config
+     */
+    public AtlantConfig numberOfJournalBlocks(int numberOfJournalBlocks) {
+        this.numberOfJournalBlocks = numberOfJournalBlocks;
+        return this;
+    }
+
+    /**
+     * Period of group commit, changes of all operations finished within period are forced to journal together.
+     * <p>
+     * Mount option, used only when file system has journal.
+     *
+     * @param journalCommitMillis the period in milliseconds
+     * @return this config
+     */
+    public AtlantConfig journalCommitMillis(long journalCommitMillis) {
+        this.journalCommitMillis = journalCommitMillis;
+        return this;
+    }
+
+    /**
+     * Initial number of blocks reserved ahead for every channel open for write, zero disables reservation windows.
+     * <p>
+     * Mount option. Window is doubled every time it is consumed, unused blocks are freed when channel is closed.
+     *
+     * @param reservationWindowBlocks the number of blocks
+     * @return this config
+     */
+    public AtlantConfig reservationWindowBlocks(int reservationWindowBlocks) {
+        this.reservationWindowBlocks = reservationWindowBlocks;
+        return this;
+    }
+
+    /**
+     * Limit of blocks reserved ahead for single channel open for write.
+     * <p>
+     * Mount option, used only when reservation windows are enabled.
+     *
+     * @param maxReservationWindowBlocks the number of blocks
+     * @return this config
+     */
+    public AtlantConfig maxReservationWindowBlocks(int maxReservationWindowBlocks) {
+        this.maxReservationWindowBlocks = maxReservationWindowBlocks;
+        return this;
+    }
+
+    /**
+     * Number of blocks of directory list, directory with more blocks is converted to hash tree, zero disables
+     * conversion.
+     * <p>
+     * Mount option. Lookup in hash tree reads one block per level instead of all blocks of directory.
+     *
+     * @param dirHashTreeBlocks the number of blocks
+     * @return this config
+     */
+    public AtlantConfig dirHashTreeBlocks(int dirHashTreeBlocks) {
+        this.dirHashTreeBlocks = dirHashTreeBlocks;
+        return this;
+    }
+
+    /**
+     * Maximum number of names cached with their inodes, including names which were not found, zero disables cache.
+     * <p>
+     * Mount option.
+     *
+     * @param dentryCacheSize the number of entries
+     * @return this config
+     */
+    public AtlantConfig dentryCacheSize(int dentryCacheSize) {
+        this.dentryCacheSize = dentryCacheSize;
+        return this;
+    }
+
+    /**
+     * Number of blocks of directory starting from which names of directory are kept in Bloom filter, zero disables
+     * filters.
+     * <p>
+     * Mount option. Filter is built on first lookup, so most lookups of missing names don't read directory.
+     *
+     * @param dirNameFilterBlocks the number of blocks
+     * @return this config
+     */
+    public AtlantConfig dirNameFilterBlocks(int dirNameFilterBlocks) {
+        this.dirNameFilterBlocks = dirNameFilterBlocks;
+        return this;
+    }
+
+    public enum Device {
+
+        /**
+         * Positional reads and writes of Atlant file.
+         */
+        FILE,
+
+        /**
+         * Memory mapped Atlant file.
+         */
+        MAPPED,
+
+        /**
+         * Off-heap memory, Atlant file is not used and content is lost on close.
+         */
+        MEMORY
+
+    }
+
 }
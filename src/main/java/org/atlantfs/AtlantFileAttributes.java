@@ -15,6 +15,13 @@ public class AtlantFileAttributes implements BasicFileAttributes {
         return new AtlantFileAttributes(inode);
     }
 
+    /**
+     * Attributes are stale when file is deleted after they were read, e.g. after listing of its directory.
+     */
+    boolean isStale() {
+        return inode.isDeleted();
+    }
+
     @Override
     public FileTime lastModifiedTime() {
         return null;
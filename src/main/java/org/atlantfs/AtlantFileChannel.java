@@ -1,80 +1,134 @@
 package org.atlantfs;
 
 import java.io.IOException;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.file.Files;
-import java.nio.file.OpenOption;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
-import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
 
-class AtlantFileChannel implements AutoCloseable {
-
-    private static final ThreadLocal<AtlantFileChannel> registry = new ThreadLocal<>();
-    private static final StandardOpenOption[] READ_OPTIONS = {READ};
-    private static final StandardOpenOption[] WRITE_OPTIONS = {READ, WRITE};
-    private static final StandardOpenOption[] CREATE_OPTIONS = {READ, WRITE, CREATE};
-
-    private final boolean main;
-    private final Set<OpenOption> options;
-    private final SeekableByteChannel channel;
-
-    private AtlantFileChannel(Path path, OpenOption... options) throws IOException {
-        var existing = AtlantFileChannel.registry.get();
-        if (existing == null) {
-            this.main = true;
-            this.options = new HashSet<>(Arrays.asList(options));
-            this.channel = Files.newByteChannel(path, options);
-            AtlantFileChannel.registry.set(this);
-        } else {
-            if (!existing.options.containsAll(Arrays.asList(options))) {
-                throw new IllegalArgumentException("Increasing open options, should be only [" + existing.options + "] but were [" + Arrays.toString(options) + "]");
+/**
+ * Positional I/O engine over single Atlant file.
+ * <p>
+ * Opened once per mounted {@link AtlantFileSystem} and shared by all threads. All operations use
+ * {@link FileChannel#read(ByteBuffer, long)} and {@link FileChannel#write(ByteBuffer, long)} which don't
+ * depend on channel's position, so concurrent callers never need to coordinate.
+ */
+class AtlantFileChannel implements BlockDevice {
+
+    private static final StandardOpenOption[] OPEN_OPTIONS = {READ, WRITE};
+    private static final StandardOpenOption[] CREATE_OPTIONS = {READ, WRITE, CREATE_NEW};
+
+    private final Path path;
+    private final FileChannel channel;
+
+    private AtlantFileChannel(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static AtlantFileChannel open(Path path) throws IOException {
+        return new AtlantFileChannel(path, FileChannel.open(path, OPEN_OPTIONS));
+    }
+
+    static AtlantFileChannel create(Path path) throws IOException {
+        return new AtlantFileChannel(path, FileChannel.open(path, CREATE_OPTIONS));
+    }
+
+    /**
+     * Read bytes starting from specified position until buffer is full or end of file is reached.
+     *
+     * @param buffer   the buffer to read into
+     * @param position the absolute position in file
+     * @return the number of bytes read, can be less than buffer remaining in case of end of file
+     * @throws IOException if I/O error occurs
+     */
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException {
+        var total = 0;
+        while (buffer.hasRemaining()) {
+            var read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
             }
-            this.main = false;
-            this.options = existing.options;
-            this.channel = existing.channel;
+            total += read;
         }
+        return total;
     }
 
-    static AtlantFileChannel openForRead(Path path) throws IOException {
-        return new AtlantFileChannel(path, READ_OPTIONS);
+    /**
+     * Write all remaining bytes of buffer starting from specified position.
+     *
+     * @param buffer   the buffer to write from
+     * @param position the absolute position in file
+     * @return the number of bytes written
+     * @throws IOException if I/O error occurs
+     */
+    @Override
+    public int write(ByteBuffer buffer, long position) throws IOException {
+        var total = 0;
+        while (buffer.hasRemaining()) {
+            total += channel.write(buffer, position + total);
+        }
+        return total;
     }
 
-    static AtlantFileChannel openForWrite(Path path) throws IOException {
-        return new AtlantFileChannel(path, WRITE_OPTIONS);
+    /**
+     * Map region of file into memory.
+     * <p>
+     * File is extended if region is not completely contained within it.
+     *
+     * @param position the absolute position in file
+     * @param size     the size of region
+     * @param arena    the arena which controls lifetime of mapping
+     * @return the memory segment of mapped region
+     * @throws IOException if I/O error occurs
+     */
+    MemorySegment map(long position, long size, Arena arena) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, size, arena);
     }
 
-    static AtlantFileChannel openForCreate(Path path) throws IOException {
-        return new AtlantFileChannel(path, CREATE_OPTIONS);
+    void truncate(long size) throws IOException {
+        channel.truncate(size);
     }
 
     @Override
-    public void close() throws IOException {
-        if (!main) {
-            return;
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void grow(long size) throws IOException {
+        if (channel.size() < size) {
+            write(ByteBuffer.allocate(1), size - 1);
         }
-        var existing = AtlantFileChannel.registry.get();
-        assert existing != null;
-        var channel = existing.channel;
-        assert channel != null;
-        channel.close();
-        AtlantFileChannel.registry.remove();
     }
 
-    static boolean notExists() {
-        return AtlantFileChannel.registry.get() == null;
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
     }
 
-    static SeekableByteChannel get() {
-        var existing = AtlantFileChannel.registry.get();
-        assert existing != null;
-        return existing.channel;
+    @Override
+    public String toString() {
+        return "AtlantFileChannel{" +
+                "path=" + path +
+                '}';
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
     }
 
 }
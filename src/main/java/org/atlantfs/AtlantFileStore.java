@@ -0,0 +1,103 @@
+package org.atlantfs;
+
+import java.nio.file.FileStore;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+/**
+ * Storage of single {@link AtlantFileSystem}, space is reported in bytes of data blocks.
+ * <p>
+ * Besides standard attributes {@code totalSpace}, {@code usableSpace} and {@code unallocatedSpace} supports
+ * {@code largestFreeExtent}, the size of the largest contiguous free space.
+ */
+class AtlantFileStore extends FileStore {
+
+    static final String TOTAL_SPACE = "totalSpace";
+    static final String USABLE_SPACE = "usableSpace";
+    static final String UNALLOCATED_SPACE = "unallocatedSpace";
+    static final String LARGEST_FREE_EXTENT = "largestFreeExtent";
+
+    private final AtlantFileSystem fileSystem;
+
+    AtlantFileStore(AtlantFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    @Override
+    public String name() {
+        return fileSystem.toString();
+    }
+
+    @Override
+    public String type() {
+        return "atlant";
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return fileSystem.isReadOnly();
+    }
+
+    @Override
+    public long getTotalSpace() {
+        return fileSystem.numberOfDataBlocks() * fileSystem.blockSize();
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return getUnallocatedSpace();
+    }
+
+    @Override
+    public long getUnallocatedSpace() {
+        return fileSystem.numberOfFreeBlocks() * fileSystem.blockSize();
+    }
+
+    /**
+     * Size of the largest contiguous free space, file of this size can be written without fragmentation.
+     *
+     * @return the size in bytes
+     */
+    public long getLargestFreeExtent() {
+        return (long) fileSystem.largestFreeExtent() * fileSystem.blockSize();
+    }
+
+    @Override
+    public long getBlockSize() {
+        return fileSystem.blockSize();
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+        return false;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(String name) {
+        return false;
+    }
+
+    @Override
+    public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        return switch (attribute) {
+            case TOTAL_SPACE -> getTotalSpace();
+            case USABLE_SPACE -> getUsableSpace();
+            case UNALLOCATED_SPACE -> getUnallocatedSpace();
+            case LARGEST_FREE_EXTENT -> getLargestFreeExtent();
+            default -> throw new UnsupportedOperationException("Attribute [" + attribute + "] is not supported");
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "AtlantFileStore{" +
+                "fileSystem=" + fileSystem +
+                '}';
+    }
+
+}
@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
@@ -15,15 +16,21 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.ProviderMismatchException;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -48,89 +55,247 @@ public class AtlantFileSystem extends FileSystem {
     private final DataBitmapRegion dataBitmapRegion = new DataBitmapRegion(this);
     private final InodeBitmapRegion inodeBitmapRegion = new InodeBitmapRegion(this);
     private final InodeTableRegion inodeTableRegion;
+    private final AtlantFileStore fileStore = new AtlantFileStore(this);
+    private final BlockDevice device;
+    private final Journal journal;
+    private final int reservationWindowBlocks;
+    private final int maxReservationWindowBlocks;
+    private final int dirHashTreeBlocks;
+    private final DentryCache dentryCache;
+    private final int dirNameFilterBlocks;
     private volatile boolean isOpen = true;
 
     public AtlantFileSystem(AtlantFileSystemProvider provider, Path atlant, Map<String, ?> env) throws IOException {
-        assert AtlantFileChannel.notExists();
         this.provider = provider;
         this.atlant = atlant;
-        if (Files.exists(atlant)) {
-            log.finer(() -> "Opening Atlant file system [path=" + atlant.toAbsolutePath() + "]...");
-            try (var _ = AtlantFileChannel.openForRead(atlant)) {
-                var channel = AtlantFileChannel.get();
+        var config = AtlantConfig.fromMap(env);
+        this.reservationWindowBlocks = config.reservationWindowBlocks();
+        this.maxReservationWindowBlocks = Math.max(config.reservationWindowBlocks(), config.maxReservationWindowBlocks());
+        this.dirHashTreeBlocks = config.dirHashTreeBlocks();
+        this.dentryCache = new DentryCache(config.dentryCacheSize(), statistics);
+        this.dirNameFilterBlocks = config.dirNameFilterBlocks();
+        if (config.device() != AtlantConfig.Device.MEMORY && Files.exists(atlant)) {
+            log.finer(() -> "Opening Atlant file system [path=" + atlant.toAbsolutePath() + ", device=" + config.device() + "]...");
+            var channel = AtlantFileChannel.open(atlant);
+            BlockDevice device = channel;
+            try {
                 var buffer = ByteBuffer.allocate(SuperBlock.LENGTH);
-                var read = channel.read(buffer);
+                var read = channel.readFully(buffer, 0);
                 statistics.incrementReadCalls();
                 statistics.addReadBytes(read);
                 buffer.flip();
                 superBlock = SuperBlock.read(this, buffer);
+                if (config.device() == AtlantConfig.Device.MAPPED) {
+                    device = AtlantMappedFile.map(channel, superBlock.blockSize());
+                }
+                var storage = device;
+                device = withCache(device, config);
+                this.device = device;
+                journal = superBlock.hasJournal() ? Journal.replay(this, device, storage, statistics) : null;
                 inodeTableRegion = InodeTableRegion.read(this);
+                startJournal(config);
                 log.fine(() -> "Successfully opened new Atlant file system [path=" + atlant.toAbsolutePath() + "]");
-            } catch (IOException e) {
+            } catch (IOException | RuntimeException e) {
                 log.log(Level.SEVERE, "Failed to open Atlant file system [path=" + atlant.toAbsolutePath() + "]", e);
+                device.close();
                 throw e;
             }
         } else {
-            log.finer(() -> "Creating new Atlant file system [path=" + atlant.toAbsolutePath() + "]...");
-            superBlock = SuperBlock.init(this, AtlantConfig.fromMap(env));
-            try (var _ = AtlantFileChannel.openForCreate(atlant)) {
+            log.finer(() -> "Creating new Atlant file system [path=" + atlant.toAbsolutePath() + ", device=" + config.device() + "]...");
+            superBlock = SuperBlock.init(this, config);
+            var device = createDevice(atlant, config.device(), superBlock.blockSize());
+            try {
+                var storage = device;
+                device = withCache(device, config);
+                this.device = device;
                 superBlock.flush();
                 dataBitmapRegion.init();
                 inodeBitmapRegion.init();
                 inodeTableRegion = new InodeTableRegion(this);
+                journal = superBlock.hasJournal() ? Journal.init(this, device, storage, statistics) : null;
+                startJournal(config);
                 log.fine(() -> "Successfully created new Atlant file system [path=" + atlant.toAbsolutePath() + "]");
-            } catch (IOException e) {
+            } catch (IOException | RuntimeException e) {
                 log.log(Level.SEVERE, "Failed to create Atlant file system [path=" + atlant.toAbsolutePath() + "]", e);
+                device.close();
                 throw e;
             }
         }
     }
 
+    private static BlockDevice createDevice(Path atlant, AtlantConfig.Device device, int blockSize) throws IOException {
+        return switch (device) {
+            case FILE -> AtlantFileChannel.create(atlant);
+            case MAPPED -> AtlantMappedFile.map(AtlantFileChannel.create(atlant), blockSize);
+            case MEMORY -> AtlantMemoryDevice.create(blockSize);
+        };
+    }
+
+    private void startJournal(AtlantConfig config) {
+        if (journal != null) {
+            journal.start(config.journalCommitMillis());
+        }
+    }
+
+    /**
+     * Put cache in front of device, hot metadata is pinned: super block, bitmaps and inode table block with root.
+     * <p>
+     * Addressable devices are not cached as they already serve blocks from memory.
+     */
+    private BlockDevice withCache(BlockDevice device, AtlantConfig config) throws IOException {
+        if (device.isAddressable() || config.cacheSizeBytes() < blockSize()) {
+            return device;
+        }
+        var writeBack = config.writeBack() ? new BlockCache.WriteBack(config.dirtyExpireMillis(), config.dirtyRatio()) : null;
+        var cache = new BlockCache(device, blockSize(), config.cacheSizeBytes(), statistics, writeBack);
+        cache.pin(Block.Id.ZERO);
+        for (int i = 0; i < dataBitmapRegion.numberOfBlocks(); i++) {
+            cache.pin(dataBitmapRegion.firstBlock().plus(i));
+        }
+        for (int i = 0; i < inodeBitmapRegion.numberOfBlocks(); i++) {
+            cache.pin(inodeBitmapRegion.firstBlock().plus(i));
+        }
+        cache.pin(superBlock.firstBlockOfInodeTables());
+        return cache;
+    }
+
     void createDirectory(AtlantPath dir) throws IOException {
-        try (var _ = AtlantFileChannel.openForWrite(atlant)) {
+        beginHandle();
+        try {
             var _ = locateDir(dir, CREATE_NEW);
+        } finally {
+            endHandle();
+        }
+    }
+
+    /**
+     * Start journal handle, all metadata changes until {@link #endHandle()} are committed atomically.
+     */
+    private void beginHandle() {
+        if (journal != null) {
+            journal.begin();
+        }
+    }
+
+    /**
+     * Start journal handle while current thread holds locks, see {@link Journal#beginHoldingLocks()}.
+     */
+    private void beginHandleHoldingLocks() {
+        if (journal != null) {
+            journal.beginHoldingLocks();
+        }
+    }
+
+    private void endHandle() {
+        if (journal != null) {
+            journal.end();
         }
     }
 
+    /**
+     * Open stream of entries of directory, {@link AtlantPathMatcher} as filter is applied to names of entries while
+     * directory is read, so paths are created only for matching entries. Other filters are applied to paths.
+     */
     public DirectoryStream<Path> newDirectoryStream(AtlantPath dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
-        var atlant = AtlantFileChannel.openForWrite(this.atlant);
-        try {
-            var dirInode = locateDir(dir);
-            try {
-                dirInode.beginWrite();
-                var iterator = dirInode.iterator();
-                return new DirectoryStream<>() {
-                    @Override
-                    public Iterator<Path> iterator() {
-                        return new Iterator<>() {
+        return newDirectoryStream(dir, filter, false);
+    }
+
+    /**
+     * Open stream of entries of directory which carry their attributes, like {@code readdirplus}. Inodes of entries are
+     * read for every block of directory together, in order of ids, so entries which share block of inode table are read
+     * by single read. {@link java.nio.file.Files#readAttributes(Path, Class, LinkOption...)} of entry returns attributes
+     * read with listing without lookup of the entry, unless the entry is deleted since, then it is looked up again.
+     *
+     * @param dir    the directory
+     * @param filter the filter of entries, see {@link #newDirectoryStream(AtlantPath, DirectoryStream.Filter)}
+     * @return the stream of entries
+     * @throws IOException if directory can't be opened
+     */
+    public DirectoryStream<Path> newDirectoryStreamWithAttributes(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        if (!(Objects.requireNonNull(dir) instanceof AtlantPath atlantPath)) {
+            throw new ProviderMismatchException();
+        }
+        return newDirectoryStream(atlantPath.toAbsolutePath(), filter, true);
+    }
 
-                            @Override
-                            public boolean hasNext() {
-                                return iterator.hasNext();
-                            }
+    private DirectoryStream<Path> newDirectoryStream(AtlantPath dir, DirectoryStream.Filter<? super Path> filter, boolean withAttributes) throws IOException {
+        var dirInode = locateDir(dir);
+        var listing = filter instanceof AtlantPathMatcher matcher
+                ? dirInode.iterator(entry -> entry.nameMatches(matcher))
+                : dirInode.iterator();
+        var pathFilter = filter instanceof AtlantPathMatcher ? null : filter;
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                return new Iterator<>() {
 
-                            @Override
-                            public Path next() {
-                                return getPath(dir.toString(), iterator.next().getName());
-                            }
+                    final Queue<Path> next = new ArrayDeque<>();
 
-                        };
+                    @Override
+                    public boolean hasNext() {
+                        while (next.isEmpty()) {
+                            var paths = withAttributes ? nextBlockWithAttributes() : nextBlock();
+                            if (paths.isEmpty()) {
+                                return false;
+                            }
+                            for (var path : paths) {
+                                try {
+                                    if (pathFilter == null || pathFilter.accept(path)) {
+                                        next.add(path);
+                                    }
+                                } catch (IOException e) {
+                                    throw new DirectoryIteratorException(e);
+                                }
+                            }
+                        }
+                        return true;
                     }
 
                     @Override
-                    public void close() throws IOException {
-                        atlant.close();
-                        dirInode.endWrite();
+                    public Path next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return next.remove();
+                    }
+
+                    private List<AtlantPath> nextBlock() {
+                        return listing.nextBlock().stream()
+                                .map(entry -> entryPath(dir, entry))
+                                .toList();
                     }
+
+                    /**
+                     * Entries are read with inodes under read lock of directory, so entries can't be removed and their
+                     * inodes can't be deleted meanwhile.
+                     */
+                    private List<AtlantPath> nextBlockWithAttributes() {
+                        dirInode.beginRead();
+                        try {
+                            var entries = listing.nextBlock();
+                            var inodes = inodeTableRegion.getAll(entries.stream()
+                                    .map(DirEntry::getInode)
+                                    .toList());
+                            return entries.stream()
+                                    .map(entry -> entryPath(dir, entry).withAttributes(AtlantFileAttributes.from(inodes.get(entry.getInode()))))
+                                    .toList();
+                        } finally {
+                            dirInode.endRead();
+                        }
+                    }
+
                 };
-            } catch (Exception | AssertionError e) {
-                dirInode.endWrite();
-                throw e;
             }
-        } catch (IOException e) {
-            atlant.close();
-            throw e;
-        }
+
+            @Override
+            public void close() {
+                listing.close();
+            }
+        };
+    }
+
+    private AtlantPath entryPath(AtlantPath dir, DirEntry entry) {
+        return (AtlantPath) getPath(dir.toString(), entry.getName());
     }
 
     private DirInode locateDir(AtlantPath path) throws NoSuchFileException, FileAlreadyExistsException, NotEnoughSpaceException {
@@ -148,13 +313,12 @@ public class AtlantFileSystem extends FileSystem {
         var parentInode = locateDir(path.getParent(), options);
         var fileName = path.getFileName().toString();
         try {
-            var dirEntry = parentInode.get(fileName);
-            return findDirInode(dirEntry.getInode());
+            return findDirInode(parentInode.lookup(fileName));
         } catch (NoSuchFileException e) {
             if (!options.contains(CREATE) && !options.contains(CREATE_NEW)) {
                 throw new NoSuchFileException(path.toString());
             }
-            var newInode = inodeTableRegion.createDirectory();
+            var newInode = inodeTableRegion.createDirectory(parentInode);
             var _ = parentInode.addDir(newInode.getId(), fileName);
             return newInode;
         }
@@ -164,16 +328,16 @@ public class AtlantFileSystem extends FileSystem {
         var parentInode = locateDir(path.getParent(), options);
         var fileName = path.getFileName().toString();
         try {
-            var dirEntry = parentInode.get(fileName);
+            var inodeId = parentInode.lookup(fileName);
             if (options.contains(CREATE_NEW)) {
                 throw new FileAlreadyExistsException(path.toString());
             }
-            return findFileInode(dirEntry.getInode());
+            return findFileInode(inodeId);
         } catch (NoSuchFileException e) {
             if (!options.contains(CREATE) && !options.contains(CREATE_NEW)) {
                 throw new NoSuchFileException(path.toString());
             }
-            var fileInode = inodeTableRegion.createFile();
+            var fileInode = inodeTableRegion.createFile(parentInode);
             var _ = parentInode.addFile(fileInode.getId(), fileName);
             return fileInode;
         }
@@ -185,17 +349,23 @@ public class AtlantFileSystem extends FileSystem {
         }
         var parentInode = locateDir(path.getParent());
         var fileName = path.getFileName().toString();
-        var dirEntry = parentInode.get(fileName);
-        return inodeTableRegion.get(dirEntry.getInode());
+        return inodeTableRegion.get(parentInode.lookup(fileName));
     }
 
     public SeekableByteChannel newByteChannel(AtlantPath absolutePath, Set<? extends OpenOption> options, FileAttribute<?>[] attrs) throws IOException {
-        var atlant = options.contains(WRITE) ? AtlantFileChannel.openForWrite(this.atlant) : AtlantFileChannel.openForRead(this.atlant);
         FileInode fileInode = null;
         try {
-            fileInode = locateFile(absolutePath, options);
+            beginHandle();
+            try {
+                fileInode = locateFile(absolutePath, options);
+            } finally {
+                endHandle();
+            }
             if (options.contains(WRITE) || options.contains(APPEND)) {
                 fileInode.beginWrite();
+                if (reservationWindowBlocks > 0) {
+                    fileInode.openWindow(new ReservationWindow(this, reservationWindowBlocks, maxReservationWindowBlocks));
+                }
             } else {
                 fileInode.beginRead();
             }
@@ -216,7 +386,12 @@ public class AtlantFileSystem extends FileSystem {
                 @Override
                 public int write(ByteBuffer src) throws IOException {
                     checkOpen();
-                    return finalInode.write(position, src);
+                    beginHandleHoldingLocks();
+                    try {
+                        return finalInode.write(position, src);
+                    } finally {
+                        endHandle();
+                    }
                 }
 
                 @Override
@@ -256,11 +431,16 @@ public class AtlantFileSystem extends FileSystem {
                     }
                     open = false;
                     if (options.contains(WRITE) || options.contains(APPEND)) {
-                        finalInode.endWrite();
+                        beginHandleHoldingLocks();
+                        try {
+                            finalInode.closeWindow();
+                        } finally {
+                            endHandle();
+                            finalInode.endWrite();
+                        }
                     } else {
                         finalInode.endRead();
                     }
-                    atlant.close();
                 }
 
                 private void checkOpen() throws ClosedChannelException {
@@ -271,9 +451,9 @@ public class AtlantFileSystem extends FileSystem {
 
             };
         } catch (IOException | AssertionError e) {
-            atlant.close();
             if (fileInode != null) {
                 if (options.contains(WRITE) || options.contains(APPEND)) {
+                    fileInode.closeWindow();
                     fileInode.endWrite();
                 } else {
                     fileInode.endRead();
@@ -283,20 +463,43 @@ public class AtlantFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * Delete file or empty directory. Parent and then deleted inode are locked before journal handle is started, so
+     * handle never waits for channel which holds lock of deleted inode and doesn't hold off commit of other handles.
+     */
     void delete(AtlantPath absolutePath) throws IOException {
-        try (var _ = AtlantFileChannel.openForWrite(atlant)) {
-            DirInode parent = locateDir(absolutePath.getParent());
+        DirInode parent = locateDir(absolutePath.getParent());
+        var fileName = absolutePath.getFileName().toString();
+        Inode<?> inode;
+        while (true) {
+            parent.beginWrite();
+            try {
+                inode = inodeTableRegion.get(parent.lookup(fileName));
+            } catch (IOException | RuntimeException e) {
+                parent.endWrite();
+                throw e;
+            }
+            if (inode.tryBeginWrite()) {
+                break;
+            }
+            // Inode is locked, e.g. by open channel, wait for it without lock of parent, entry can change meanwhile
+            parent.endWrite();
+            log.finer(() -> "Waiting for lock of [fileName=" + fileName + "] to delete it...");
+            inode.beginWrite();
+            inode.endWrite();
+        }
+        try {
+            beginHandleHoldingLocks();
             try {
-                parent.beginWrite();
-                var fileName = absolutePath.getFileName().toString();
-                var dirEntry = parent.get(fileName);
-                Inode<?> inode = inodeTableRegion.get(dirEntry.getInode());
                 inode.delete();
                 inodeTableRegion.delete(inode.getId());
                 parent.remove(fileName);
             } finally {
-                parent.endWrite();
+                endHandle();
             }
+        } finally {
+            inode.endWrite();
+            parent.endWrite();
         }
     }
 
@@ -306,16 +509,22 @@ public class AtlantFileSystem extends FileSystem {
     }
 
     @Override
-    public void close() {
+    public void close() throws IOException {
         if (!isOpen) {
             return;
         }
         log.finer(() -> "Closing Atlant file system [path=" + atlant.toAbsolutePath() + "]...");
-        assert AtlantFileChannel.notExists(); // TODO: Can be closed async?
         blockByteBuffer.remove();
         inodeByteBuffer.remove();
         isOpen = false;
         provider.removeFileSystem(atlant);
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } finally {
+            device.close();
+        }
         log.fine(() -> "Successfully closed Atlant file system [path=" + atlant.toAbsolutePath() + "]");
         statistics.print();
     }
@@ -325,6 +534,18 @@ public class AtlantFileSystem extends FileSystem {
         return isOpen;
     }
 
+    /**
+     * Write all changes kept in memory and force them to storage.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    public void force() throws IOException {
+        if (journal != null) {
+            journal.force();
+        }
+        device.force();
+    }
+
     @Override
     public boolean isReadOnly() {
         return false;
@@ -342,7 +563,7 @@ public class AtlantFileSystem extends FileSystem {
 
     @Override
     public Iterable<FileStore> getFileStores() {
-        return null;
+        return List.of(fileStore);
     }
 
     @Override
@@ -361,9 +582,13 @@ public class AtlantFileSystem extends FileSystem {
         return new AtlantPath(this, (first + getSeparator() + String.join(getSeparator(), more)).getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Matcher of {@code glob} or {@code regex} pattern, which is also {@link DirectoryStream.Filter} of file names
+     * applied while directory is read.
+     */
     @Override
     public PathMatcher getPathMatcher(String syntaxAndPattern) {
-        return null;
+        return AtlantPathMatcher.compile(syntaxAndPattern);
     }
 
     @Override
@@ -403,6 +628,22 @@ public class AtlantFileSystem extends FileSystem {
         return superBlock.inodeSize();
     }
 
+    int dirHashTreeBlocks() {
+        return dirHashTreeBlocks;
+    }
+
+    DentryCache dentryCache() {
+        return dentryCache;
+    }
+
+    int dirNameFilterBlocks() {
+        return dirNameFilterBlocks;
+    }
+
+    AtlantStatistics statistics() {
+        return statistics;
+    }
+
     int iblockSize() {
         return inodeSize() - Inode.MIN_LENGTH;
     }
@@ -441,6 +682,65 @@ public class AtlantFileSystem extends FileSystem {
         return reserved;
     }
 
+    /**
+     * Reserve block as close as possible after goal.
+     *
+     * @param goal the block to reserve near, null if there is no preference
+     * @return the reserved block
+     * @throws BitmapRegion.NotEnoughSpaceException if there is no free block
+     */
+    Block.Id reserveBlockNear(Block.Id goal) throws BitmapRegion.NotEnoughSpaceException {
+        if (goal == null) {
+            return reserveBlock();
+        }
+        log.finer(() -> "Reserving 1 block near [" + goal + "]...");
+        var reserved = dataBitmapRegion.reserveNear(goal);
+        log.fine(() -> "Successfully reserved 1 block [" + reserved + "] near [" + goal + "]");
+        return reserved;
+    }
+
+    /**
+     * Reserve blocks as close as possible after goal.
+     *
+     * @param goal the block to reserve near, null if there is no preference
+     * @param size the number of blocks
+     * @return the ranges of reserved blocks
+     * @throws BitmapRegion.NotEnoughSpaceException if there are not enough free blocks
+     */
+    List<Block.Range> reserveBlocksNear(Block.Id goal, int size) throws BitmapRegion.NotEnoughSpaceException {
+        if (goal == null) {
+            return reserveBlocks(size);
+        }
+        log.finer(() -> "Reserving [" + size + "] blocks near [" + goal + "]...");
+        var reserved = dataBitmapRegion.reserveNear(goal, size);
+        log.fine(() -> "Successfully reserved [" + size + "] block [" + reserved + "] near [" + goal + "]");
+        return reserved;
+    }
+
+    /**
+     * Claim blocks as close as possible after goal, claimed blocks are not written to bitmap until they are persisted.
+     *
+     * @param goal the block to claim near, null if there is no preference
+     * @param size the number of blocks
+     * @return the ranges of claimed blocks
+     * @throws BitmapRegion.NotEnoughSpaceException if there are not enough free blocks
+     * @see BitmapRegion#claimNear(Id, int)
+     */
+    List<Block.Range> claimBlocksNear(Block.Id goal, int size) throws BitmapRegion.NotEnoughSpaceException {
+        log.finer(() -> "Claiming [" + size + "] blocks near [" + goal + "]...");
+        var claimed = dataBitmapRegion.claimNear(goal, size);
+        log.fine(() -> "Successfully claimed [" + size + "] block [" + claimed + "] near [" + goal + "]");
+        return claimed;
+    }
+
+    void persistClaimedBlocks(List<Block.Range> ranges) {
+        dataBitmapRegion.persistClaimed(ranges);
+    }
+
+    void releaseClaimedBlocks(List<Block.Range> ranges) {
+        dataBitmapRegion.releaseClaimed(ranges);
+    }
+
     Inode.Id reserveInode() throws BitmapRegion.NotEnoughSpaceException {
         log.finer(() -> "Reserving 1 inode...");
         var reserved = inodeBitmapRegion.reserve();
@@ -448,6 +748,25 @@ public class AtlantFileSystem extends FileSystem {
         return reserved;
     }
 
+    long numberOfDataBlocks() {
+        return (long) dataBitmapRegion.numberOfBlocks() * blockSize() * 8;
+    }
+
+    long numberOfFreeBlocks() {
+        return dataBitmapRegion.totalFree();
+    }
+
+    int largestFreeExtent() {
+        return dataBitmapRegion.largestFreeExtent();
+    }
+
+    Inode.Id reserveInodeNear(Inode.Id goal) throws BitmapRegion.NotEnoughSpaceException {
+        log.finer(() -> "Reserving 1 inode near [" + goal + "]...");
+        var reserved = inodeBitmapRegion.reserveNear(goal);
+        log.fine(() -> "Successfully reserved 1 inode [" + reserved + "] near [" + goal + "]");
+        return reserved;
+    }
+
     void freeBlock(Block.Id inodeId) {
         dataBitmapRegion.free(inodeId);
     }
@@ -456,25 +775,41 @@ public class AtlantFileSystem extends FileSystem {
         dataBitmapRegion.free(inodeIds);
     }
 
+    void freeBlockRanges(List<Block.Range> ranges) {
+        dataBitmapRegion.freeRanges(ranges);
+    }
+
     void freeInode(Inode.Id inodeId) {
         inodeBitmapRegion.free(inodeId);
     }
 
     ByteBuffer readBlock(Block.Id blockId) {
+        if (journal != null) {
+            var buffer = getBlockByteBuffer();
+            if (journal.read(blockId, 0, buffer)) {
+                statistics.incrementReadCalls();
+                statistics.addReadBytes(buffer.position());
+                return buffer.flip();
+            }
+        }
+        if (device.isAddressable()) {
+            var blockPosition = blockPosition(blockId);
+            var blockSize = blockSize();
+            statistics.incrementReadCalls();
+            statistics.addReadBytes(blockSize);
+            return device.slice(blockPosition, blockSize).asReadOnlyBuffer();
+        }
         var buffer = getBlockByteBuffer();
-        var channel = AtlantFileChannel.get();
-        assert channel != null;
-        assert channel.isOpen();
+        assert device.isOpen();
         try {
             var blockPosition = blockPosition(blockId);
-            channel.position(blockPosition);
             log.finer(() -> "Reading from Atlant file [blockId=" + blockId + " (" + blockPosition + "), position=" + blockPosition + "]...");
-            var read = channel.read(buffer);
+            var read = device.read(buffer, blockPosition);
             statistics.incrementReadCalls();
             statistics.addReadBytes(read);
             var blockSize = blockSize();
             if (read < blockSize) {
-                // if the channel has reached end-of-stream
+                // if the device has reached its end
                 while (buffer.hasRemaining()) {
                     buffer.put((byte) 0);
                 }
@@ -490,17 +825,26 @@ public class AtlantFileSystem extends FileSystem {
     }
 
     Inode<?> readInode(Inode.Id inodeId) {
+        if (journal != null) {
+            var buffer = getInodeByteBuffer();
+            var inodePosition = inodePosition(inodeId);
+            if (journal.read(Block.Id.of((int) (inodePosition / blockSize())), (int) (inodePosition % blockSize()), buffer)) {
+                statistics.incrementReadCalls();
+                statistics.addReadBytes(buffer.position());
+                return Inode.read(this, buffer.flip(), inodeId);
+            }
+        }
+        if (device.isAddressable()) {
+            var inodeSize = inodeSize();
+            statistics.incrementReadCalls();
+            statistics.addReadBytes(inodeSize);
+            return Inode.read(this, device.slice(inodePosition(inodeId), inodeSize).asReadOnlyBuffer(), inodeId);
+        }
         var buffer = getInodeByteBuffer();
-        var channel = AtlantFileChannel.get();
-        assert channel != null;
-        assert channel.isOpen();
+        assert device.isOpen();
         try {
             var inodePosition = inodePosition(inodeId);
-            channel.position(inodePosition);
-            var read = channel.read(buffer);
-            if (read < 0) {
-                throw new IOException("Unexpected EOF");
-            }
+            var read = device.readFully(buffer, inodePosition);
             statistics.incrementReadCalls();
             statistics.addReadBytes(read);
             buffer.flip();
@@ -510,6 +854,33 @@ public class AtlantFileSystem extends FileSystem {
         return Inode.read(this, buffer, inodeId);
     }
 
+    /**
+     * Read inodes which share block of inode table by single read of the block. Inodes are read one by one while
+     * journal is on, as it can hold newer versions of single inodes, and from addressable device, as it reads them
+     * without copying.
+     *
+     * @param inodeIds the ids of inodes of the same block
+     * @return the inodes
+     */
+    List<Inode<?>> readInodes(List<Inode.Id> inodeIds) {
+        if (journal != null || device.isAddressable() || inodeIds.size() == 1) {
+            return inodeIds.stream()
+                    .<Inode<?>>map(this::readInode)
+                    .toList();
+        }
+        var blockSize = blockSize();
+        var blockId = Block.Id.of((int) (inodePosition(inodeIds.getFirst()) / blockSize));
+        // Reading of inode can read other blocks into shared buffer, so the block is copied
+        var block = ByteBuffer.allocate(blockSize).put(readBlock(blockId)).flip();
+        var result = new ArrayList<Inode<?>>(inodeIds.size());
+        for (var inodeId : inodeIds) {
+            var inodePosition = inodePosition(inodeId);
+            assert inodePosition / blockSize == blockId.value() : "Inode [id=" + inodeId + "] should be in [blockId=" + blockId + "]";
+            result.add(Inode.read(this, block.slice((int) (inodePosition % blockSize), inodeSize()), inodeId));
+        }
+        return result;
+    }
+
     int writeBlock(Block.Id blockId, Consumer<ByteBuffer> consumer) {
         return writeBlock(blockId, 0, consumer);
     }
@@ -517,18 +888,47 @@ public class AtlantFileSystem extends FileSystem {
     int writeBlock(Block.Id blockId, int offset, Consumer<ByteBuffer> consumer) {
         assert offset >= 0;
         assert offset < blockSize();
+        if (journal != null) {
+            var buffer = getBlockByteBuffer().limit(blockSize() - offset);
+            consumer.accept(buffer);
+            buffer.flip();
+            var written = journal.write(blockId, offset, buffer);
+            statistics.incrementWriteCalls();
+            statistics.addWriteBytes(written);
+            return written;
+        }
+        return writeToDevice(blockId, offset, consumer);
+    }
+
+    /**
+     * Write content of file directly to device, data blocks are not journaled.
+     */
+    int writeDataBlock(Block.Id blockId, Consumer<ByteBuffer> consumer) {
+        if (journal != null) {
+            journal.revoke(blockId);
+        }
+        return writeToDevice(blockId, 0, consumer);
+    }
+
+    private int writeToDevice(Block.Id blockId, int offset, Consumer<ByteBuffer> consumer) {
+        if (device.isAddressable()) {
+            var position = blockPosition(blockId) + offset;
+            var buffer = device.slice(position, blockSize() - offset);
+            consumer.accept(buffer);
+            var written = buffer.position();
+            statistics.incrementWriteCalls();
+            statistics.addWriteBytes(written);
+            return written;
+        }
         var buffer = getBlockByteBuffer();
         consumer.accept(buffer);
         buffer.flip();
-        var channel = AtlantFileChannel.get();
-        assert channel != null;
-        assert channel.isOpen();
+        assert device.isOpen();
         try {
             var blockPosition = blockPosition(blockId);
             var position = blockPosition + offset;
             log.finer(() -> "Writing into Atlant file [blockId=" + blockId + " (" + blockPosition + "), position=" + position + ", bytes=" + buffer.remaining() + "]...");
-            channel.position(position);
-            var written = channel.write(buffer);
+            var written = device.write(buffer, position);
             statistics.incrementWriteCalls();
             statistics.addWriteBytes(written);
             return written;
@@ -538,18 +938,34 @@ public class AtlantFileSystem extends FileSystem {
     }
 
     void writeInode(Inode<?> inode) {
+        if (journal != null) {
+            var buffer = getInodeByteBuffer();
+            inode.flush(buffer);
+            buffer.flip();
+            var inodePosition = inodePosition(inode.getId());
+            var written = journal.write(Block.Id.of((int) (inodePosition / blockSize())), (int) (inodePosition % blockSize()), buffer);
+            statistics.incrementWriteCalls();
+            statistics.addWriteBytes(written);
+            return;
+        }
+        if (device.isAddressable()) {
+            var inodePosition = inodePosition(inode.getId());
+            var buffer = device.slice(inodePosition, inodeSize());
+            inode.flush(buffer);
+            var written = buffer.position();
+            statistics.incrementWriteCalls();
+            statistics.addWriteBytes(written);
+            return;
+        }
         var buffer = getInodeByteBuffer();
         inode.flush(buffer);
         buffer.flip();
-        var channel = AtlantFileChannel.get();
-        assert channel != null;
-        assert channel.isOpen();
+        assert device.isOpen();
         try {
             var inodeId = inode.getId();
             var inodePosition = inodePosition(inodeId);
             log.finer(() -> "Writing into Atlant file [inodeId=" + inodeId + ", position=" + inodePosition + ", bytes=" + buffer.remaining() + "]...");
-            channel.position(inodePosition);
-            var written = channel.write(buffer);
+            var written = device.write(buffer, inodePosition);
             statistics.incrementWriteCalls();
             statistics.addWriteBytes(written);
         } catch (IOException e) {
@@ -571,11 +987,13 @@ public class AtlantFileSystem extends FileSystem {
     }
 
     public AtlantFileAttributes readAttributes(AtlantPath absolutePath, LinkOption[] options) throws IOException {
-        try (var _ = AtlantFileChannel.openForRead(atlant)) {
-            var inode = locateAny(absolutePath);
-            // TODO: Add lock
-            return AtlantFileAttributes.from(inode);
+        var carried = absolutePath.attributes();
+        if (carried != null && !carried.isStale()) {
+            return carried;
         }
+        var inode = locateAny(absolutePath);
+        // TODO: Add lock
+        return AtlantFileAttributes.from(inode);
     }
 
 }
@@ -144,7 +144,10 @@ public class AtlantFileSystemProvider extends FileSystemProvider {
 
     @Override
     public FileStore getFileStore(Path path) throws IOException {
-        return null;
+        if (!(path instanceof AtlantPath atlantPath)) {
+            throw new ProviderMismatchException();
+        }
+        return atlantPath.getFileSystem().getFileStores().iterator().next();
     }
 
     @Override
@@ -0,0 +1,69 @@
+package org.atlantfs;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.logging.Logger;
+
+/**
+ * Memory mapped Atlant file.
+ * <p>
+ * File is mapped by chunks, chunks are mapped on first access. Mapping beyond the end of file extends it, so on
+ * {@link #close()} file is truncated back to the end of last accessed region.
+ */
+class AtlantMappedFile extends SegmentBlockDevice {
+
+    private static final Logger log = Logger.getLogger(AtlantMappedFile.class.getName());
+
+    static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final AtlantFileChannel channel;
+
+    private AtlantMappedFile(AtlantFileChannel channel, long chunkSize, long size) {
+        super(chunkSize, size);
+        this.channel = channel;
+    }
+
+    /**
+     * Map Atlant file, mapped file takes ownership of channel and closes it on {@link #close()}.
+     *
+     * @param channel   the channel of Atlant file
+     * @param blockSize the block size of file system
+     * @return the mapped file
+     * @throws IOException if I/O error occurs
+     */
+    static AtlantMappedFile map(AtlantFileChannel channel, int blockSize) throws IOException {
+        return new AtlantMappedFile(channel, chunkSize(DEFAULT_CHUNK_SIZE, blockSize), channel.size());
+    }
+
+    @Override
+    protected MemorySegment allocate(long position) throws IOException {
+        return channel.map(position, chunkSize, arena);
+    }
+
+    @Override
+    protected void force(MemorySegment chunk) {
+        chunk.force();
+    }
+
+    @Override
+    public String toString() {
+        return "AtlantMappedFile{" +
+                "channel=" + channel +
+                '}';
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!isOpen()) {
+            return;
+        }
+        super.close();
+        var finalSize = size();
+        if (channel.size() > finalSize) {
+            log.finer(() -> "Truncating mapped Atlant file [size=" + finalSize + "]...");
+            channel.truncate(finalSize);
+        }
+        channel.close();
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.atlantfs;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Off-heap memory device.
+ * <p>
+ * Nothing is stored on disk, content is lost on {@link #close()}. Suitable for temporary file systems and tests.
+ */
+class AtlantMemoryDevice extends SegmentBlockDevice {
+
+    static final long DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private AtlantMemoryDevice(long chunkSize) {
+        super(chunkSize, 0);
+    }
+
+    static AtlantMemoryDevice create(int blockSize) {
+        return new AtlantMemoryDevice(chunkSize(DEFAULT_CHUNK_SIZE, blockSize));
+    }
+
+    @Override
+    protected MemorySegment allocate(long position) {
+        return arena.allocate(chunkSize, Long.BYTES);
+    }
+
+    @Override
+    protected void force(MemorySegment chunk) {
+        // Nothing to force
+    }
+
+    @Override
+    public String toString() {
+        return "AtlantMemoryDevice{" +
+                "size=" + size() +
+                ", chunkSize=" + chunkSize +
+                '}';
+    }
+
+}
@@ -20,9 +20,21 @@ public class AtlantPath implements Path {
     private volatile int hash = 0;
     private volatile byte[] resolved = null;
 
+    /**
+     * Attributes read together with listing of directory, null for other paths.
+     */
+    private final AtlantFileAttributes attributes;
+
     public AtlantPath(AtlantFileSystem fileSystem, byte[] path) {
         this.fileSystem = fileSystem;
         this.path = path;
+        this.attributes = null;
+    }
+
+    private AtlantPath(AtlantFileSystem fileSystem, byte[] path, AtlantFileAttributes attributes) {
+        this.fileSystem = fileSystem;
+        this.path = path;
+        this.attributes = attributes;
     }
 
     public AtlantPath(AtlantFileSystem fileSystem, byte[] path, boolean normalized) {
@@ -32,6 +44,7 @@ public class AtlantPath implements Path {
         } else {
             this.path = normalize(path);
         }
+        this.attributes = null;
     }
 
     @Override
@@ -39,6 +52,27 @@ public class AtlantPath implements Path {
         return new String(path, StandardCharsets.UTF_8);
     }
 
+    /**
+     * UTF-8 bytes of path, should not be changed.
+     */
+    byte[] bytes() {
+        return path;
+    }
+
+    /**
+     * The same path carrying attributes of its file.
+     *
+     * @param attributes the attributes
+     * @return the path with attributes
+     */
+    AtlantPath withAttributes(AtlantFileAttributes attributes) {
+        return new AtlantPath(fileSystem, path, attributes);
+    }
+
+    AtlantFileAttributes attributes() {
+        return attributes;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj instanceof AtlantPath
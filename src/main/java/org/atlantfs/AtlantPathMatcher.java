@@ -0,0 +1,343 @@
+package org.atlantfs;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matcher of {@code glob} and {@code regex} patterns, see {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+ * <p>
+ * Glob is compiled into sequences of tokens matched against UTF-8 bytes of name, so names of directory entries are
+ * matched without decoding them. Every alternative of group becomes its own sequence. Sequence is matched by moving set
+ * of possible positions in name token by token, so matching takes {@code O(tokens * bytes)} without backtracking.
+ * Regex is matched by {@link Pattern} against decoded name.
+ * <p>
+ * Matcher is also {@link DirectoryStream.Filter} of file names, passed to
+ * {@link java.nio.file.Files#newDirectoryStream(Path, DirectoryStream.Filter)} it is applied to entries while directory
+ * is read, so paths are created only for matching entries.
+ * <p>
+ * Thread safe.
+ */
+final class AtlantPathMatcher implements PathMatcher, DirectoryStream.Filter<Path> {
+
+    private static final String GLOB = "glob";
+    private static final String REGEX = "regex";
+
+    private final String syntaxAndPattern;
+    private final List<Token[]> glob;
+    private final Pattern regex;
+
+    private AtlantPathMatcher(String syntaxAndPattern, List<Token[]> glob, Pattern regex) {
+        this.syntaxAndPattern = syntaxAndPattern;
+        this.glob = glob;
+        this.regex = regex;
+    }
+
+    static AtlantPathMatcher compile(String syntaxAndPattern) {
+        var colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Pattern should be of form [syntax:pattern], but actual [" + syntaxAndPattern + "]");
+        }
+        var syntax = syntaxAndPattern.substring(0, colon);
+        var pattern = syntaxAndPattern.substring(colon + 1);
+        if (syntax.equalsIgnoreCase(GLOB)) {
+            return new AtlantPathMatcher(syntaxAndPattern, Glob.compile(pattern), null);
+        }
+        if (syntax.equalsIgnoreCase(REGEX)) {
+            return new AtlantPathMatcher(syntaxAndPattern, null, Pattern.compile(pattern));
+        }
+        throw new UnsupportedOperationException("Syntax [" + syntax + "] is not supported");
+    }
+
+    @Override
+    public boolean matches(Path path) {
+        var bytes = path instanceof AtlantPath atlantPath
+                ? atlantPath.bytes()
+                : path.toString().getBytes(StandardCharsets.UTF_8);
+        return matches(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Accept entry of directory by its file name.
+     */
+    @Override
+    public boolean accept(Path entry) {
+        var fileName = entry.getFileName();
+        return fileName != null && matches(fileName);
+    }
+
+    /**
+     * Match UTF-8 bytes of name.
+     *
+     * @param bytes  the array with name
+     * @param offset the offset of name
+     * @param length the length of name
+     * @return true if name matches pattern
+     */
+    boolean matches(byte[] bytes, int offset, int length) {
+        if (regex != null) {
+            return regex.matcher(new String(bytes, offset, length, StandardCharsets.UTF_8)).matches();
+        }
+        for (var tokens : glob) {
+            if (Glob.matches(tokens, bytes, offset, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "AtlantPathMatcher{" +
+                "syntaxAndPattern=" + syntaxAndPattern +
+                '}';
+    }
+
+    /**
+     * Part of glob: literal bytes, {@code ?}, {@code *}, {@code **} or bracket expression.
+     *
+     * @param literal the bytes of literal, null for other kinds
+     * @param kind    the kind of token
+     * @param ranges  the pairs of the first and the last code point of bracket expression
+     * @param negated true if bracket expression starts with {@code !}
+     */
+    private record Token(byte[] literal, Kind kind, int[] ranges, boolean negated) {
+
+        enum Kind {LITERAL, CHAR, STAR, DOUBLE_STAR, BRACKET}
+
+        static Token literal(String value) {
+            return new Token(value.getBytes(StandardCharsets.UTF_8), Kind.LITERAL, null, false);
+        }
+
+        static Token of(Kind kind) {
+            return new Token(null, kind, null, false);
+        }
+
+        boolean matchesCodePoint(int codePoint) {
+            if (codePoint == '/') {
+                return false;
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (codePoint >= ranges[i] && codePoint <= ranges[i + 1]) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+
+    }
+
+    private static final class Glob {
+
+        private Glob() {
+        }
+
+        /**
+         * Compile glob into sequences of tokens, one for every combination of alternatives of groups.
+         */
+        static List<Token[]> compile(String glob) {
+            List<List<Token>> sequences = new ArrayList<>();
+            sequences.add(new ArrayList<>());
+            var literal = new StringBuilder();
+            for (int i = 0; i < glob.length(); ) {
+                var c = glob.charAt(i);
+                switch (c) {
+                    case '\\' -> {
+                        if (i + 1 >= glob.length()) {
+                            throw new PatternSyntaxException("No character to escape", glob, i);
+                        }
+                        literal.append(glob.charAt(i + 1));
+                        i += 2;
+                    }
+                    case '*', '?', '[' -> {
+                        flush(literal, sequences);
+                        Token token;
+                        if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                            token = Token.of(Token.Kind.DOUBLE_STAR);
+                            i += 2;
+                        } else if (c == '*') {
+                            token = Token.of(Token.Kind.STAR);
+                            i++;
+                        } else if (c == '?') {
+                            token = Token.of(Token.Kind.CHAR);
+                            i++;
+                        } else {
+                            var end = bracketEnd(glob, i);
+                            token = bracket(glob, i + 1, end);
+                            i = end + 1;
+                        }
+                        sequences.forEach(sequence -> sequence.add(token));
+                    }
+                    case '{' -> {
+                        flush(literal, sequences);
+                        var end = glob.indexOf('}', i);
+                        if (end < 0) {
+                            throw new PatternSyntaxException("Missing '}'", glob, i);
+                        }
+                        var group = glob.substring(i + 1, end);
+                        if (group.indexOf('{') >= 0) {
+                            throw new PatternSyntaxException("Groups cannot be nested", glob, i);
+                        }
+                        List<List<Token>> combined = new ArrayList<>();
+                        for (var alternative : group.split(",", -1)) {
+                            var tokens = compile(alternative);
+                            assert tokens.size() == 1 : "Alternative should have no groups";
+                            for (var sequence : sequences) {
+                                var result = new ArrayList<>(sequence);
+                                result.addAll(List.of(tokens.getFirst()));
+                                combined.add(result);
+                            }
+                        }
+                        sequences = combined;
+                        i = end + 1;
+                    }
+                    default -> {
+                        literal.append(c);
+                        i++;
+                    }
+                }
+            }
+            flush(literal, sequences);
+            return sequences.stream()
+                    .map(sequence -> sequence.toArray(Token[]::new))
+                    .toList();
+        }
+
+        private static void flush(StringBuilder literal, List<List<Token>> sequences) {
+            if (literal.isEmpty()) {
+                return;
+            }
+            var token = Token.literal(literal.toString());
+            sequences.forEach(sequence -> sequence.add(token));
+            literal.setLength(0);
+        }
+
+        private static int bracketEnd(String glob, int start) {
+            var i = start + 1;
+            if (i < glob.length() && glob.charAt(i) == '!') {
+                i++;
+            }
+            if (i < glob.length() && glob.charAt(i) == ']') {
+                i++;
+            }
+            var end = glob.indexOf(']', i);
+            if (end < 0) {
+                throw new PatternSyntaxException("Missing ']'", glob, start);
+            }
+            return end;
+        }
+
+        private static Token bracket(String glob, int from, int to) {
+            var negated = from < to && glob.charAt(from) == '!';
+            var codePoints = glob.substring(negated ? from + 1 : from, to).codePoints().toArray();
+            var ranges = new ArrayList<Integer>();
+            for (int i = 0; i < codePoints.length; i++) {
+                var first = codePoints[i];
+                var last = first;
+                if (i + 2 < codePoints.length && codePoints[i + 1] == '-') {
+                    last = codePoints[i + 2];
+                    if (last < first) {
+                        throw new PatternSyntaxException("Invalid range", glob, from + i);
+                    }
+                    i += 2;
+                }
+                ranges.add(first);
+                ranges.add(last);
+            }
+            return new Token(null, Token.Kind.BRACKET, ranges.stream().mapToInt(Integer::intValue).toArray(), negated);
+        }
+
+        /**
+         * Match bytes by set of positions, bit {@code i} is set when tokens matched so far can end before byte
+         * {@code offset + i}.
+         */
+        static boolean matches(Token[] tokens, byte[] bytes, int offset, int length) {
+            var positions = new long[(length >>> 6) + 1];
+            positions[0] = 1;
+            for (var token : tokens) {
+                switch (token.kind()) {
+                    case STAR, DOUBLE_STAR -> {
+                        for (int i = 0; i < length; i++) {
+                            if (isSet(positions, i) && (token.kind() == Token.Kind.DOUBLE_STAR || bytes[offset + i] != '/')) {
+                                set(positions, i + 1);
+                            }
+                        }
+                    }
+                    default -> {
+                        var any = false;
+                        for (int i = length; i >= 0; i--) {
+                            if (!isSet(positions, i)) {
+                                continue;
+                            }
+                            clear(positions, i);
+                            var next = advance(token, bytes, offset + i, offset + length);
+                            if (next >= 0) {
+                                set(positions, next - offset);
+                                any = true;
+                            }
+                        }
+                        if (!any) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return isSet(positions, length);
+        }
+
+        /**
+         * Match single token which is not star at position.
+         *
+         * @return the position after token or -1 if token doesn't match
+         */
+        private static int advance(Token token, byte[] bytes, int position, int end) {
+            if (token.kind() == Token.Kind.LITERAL) {
+                var literal = token.literal();
+                if (end - position < literal.length) {
+                    return -1;
+                }
+                for (int i = 0; i < literal.length; i++) {
+                    if (bytes[position + i] != literal[i]) {
+                        return -1;
+                    }
+                }
+                return position + literal.length;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            var lead = bytes[position] & 0xff;
+            var length = lead < 0x80 ? 1 : lead >= 0xf0 ? 4 : lead >= 0xe0 ? 3 : lead >= 0xc0 ? 2 : -1;
+            if (length < 0 || position + length > end) {
+                return -1;
+            }
+            if (token.kind() == Token.Kind.CHAR) {
+                return lead == '/' ? -1 : position + length;
+            }
+            var codePoint = length == 1 ? lead : lead & (0xff >>> (length + 1));
+            for (int i = 1; i < length; i++) {
+                codePoint = codePoint << 6 | bytes[position + i] & 0x3f;
+            }
+            return token.matchesCodePoint(codePoint) ? position + length : -1;
+        }
+
+        private static boolean isSet(long[] positions, int i) {
+            return (positions[i >>> 6] & 1L << i) != 0;
+        }
+
+        private static void set(long[] positions, int i) {
+            positions[i >>> 6] |= 1L << i;
+        }
+
+        private static void clear(long[] positions, int i) {
+            positions[i >>> 6] &= ~(1L << i);
+        }
+
+    }
+
+}
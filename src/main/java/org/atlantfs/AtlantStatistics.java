@@ -11,6 +11,17 @@ public class AtlantStatistics {
     private final LongAdder readBytes = new LongAdder();
     private final LongAdder writeCalls = new LongAdder();
     private final LongAdder writeBytes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+    private final LongAdder cacheFlushes = new LongAdder();
+    private final LongAdder journalHandles = new LongAdder();
+    private final LongAdder journalCommits = new LongAdder();
+    private final LongAdder journalBlocks = new LongAdder();
+    private final LongAdder dentryHits = new LongAdder();
+    private final LongAdder dentryMisses = new LongAdder();
+    private final LongAdder nameFilterNegatives = new LongAdder();
+    private final LongAdder nameFilterFalsePositives = new LongAdder();
 
     void incrementReadCalls() {
         readCalls.increment();
@@ -28,8 +39,111 @@ public class AtlantStatistics {
         writeBytes.add(bytes);
     }
 
+    void incrementCacheHits() {
+        cacheHits.increment();
+    }
+
+    void incrementCacheMisses() {
+        cacheMisses.increment();
+    }
+
+    void incrementCacheEvictions() {
+        cacheEvictions.increment();
+    }
+
+    void incrementCacheFlushes() {
+        cacheFlushes.increment();
+    }
+
+    void incrementJournalHandles() {
+        journalHandles.increment();
+    }
+
+    void incrementJournalCommits() {
+        journalCommits.increment();
+    }
+
+    void addJournalBlocks(long blocks) {
+        journalBlocks.add(blocks);
+    }
+
+    void incrementDentryHits() {
+        dentryHits.increment();
+    }
+
+    void incrementDentryMisses() {
+        dentryMisses.increment();
+    }
+
+    void incrementNameFilterNegatives() {
+        nameFilterNegatives.increment();
+    }
+
+    void incrementNameFilterFalsePositives() {
+        nameFilterFalsePositives.increment();
+    }
+
+    long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    long cacheEvictions() {
+        return cacheEvictions.sum();
+    }
+
+    long cacheFlushes() {
+        return cacheFlushes.sum();
+    }
+
+    long journalHandles() {
+        return journalHandles.sum();
+    }
+
+    long journalCommits() {
+        return journalCommits.sum();
+    }
+
+    long journalBlocks() {
+        return journalBlocks.sum();
+    }
+
+    long dentryHits() {
+        return dentryHits.sum();
+    }
+
+    long dentryMisses() {
+        return dentryMisses.sum();
+    }
+
+    long nameFilterNegatives() {
+        return nameFilterNegatives.sum();
+    }
+
+    long nameFilterFalsePositives() {
+        return nameFilterFalsePositives.sum();
+    }
+
+    /**
+     * Share of missing names which passed name filter and were searched in directory.
+     *
+     * @return the rate from 0 to 1
+     */
+    double nameFilterFalsePositiveRate() {
+        var falsePositives = nameFilterFalsePositives.sum();
+        var total = falsePositives + nameFilterNegatives.sum();
+        return total == 0 ? 0 : (double) falsePositives / total;
+    }
+
     void print() {
-        log.info(() -> "Statistics: [readCalls=" + readCalls.sum() + ", readBytes=" + readBytes.sum() + ", writeCalls=" + writeCalls.sum() + ", writeBytes=" + writeBytes.sum() + "]");
+        log.info(() -> "Statistics: [readCalls=" + readCalls.sum() + ", readBytes=" + readBytes.sum() + ", writeCalls=" + writeCalls.sum() + ", writeBytes=" + writeBytes.sum()
+                + ", cacheHits=" + cacheHits.sum() + ", cacheMisses=" + cacheMisses.sum() + ", cacheEvictions=" + cacheEvictions.sum() + ", cacheFlushes=" + cacheFlushes.sum()
+                + ", journalHandles=" + journalHandles.sum() + ", journalCommits=" + journalCommits.sum() + ", journalBlocks=" + journalBlocks.sum()
+                + ", dentryHits=" + dentryHits.sum() + ", dentryMisses=" + dentryMisses.sum()
+                + ", nameFilterNegatives=" + nameFilterNegatives.sum() + ", nameFilterFalsePositiveRate=" + nameFilterFalsePositiveRate() + "]");
     }
 
 }
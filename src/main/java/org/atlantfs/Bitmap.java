@@ -1,61 +1,132 @@
 package org.atlantfs;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
+/**
+ * Bitmap of single block, kept as array of words.
+ * <p>
+ * Bit {@code i} is stored in byte {@code i / 8} of block at position {@code i % 8}, so the block is little-endian
+ * sequence of words. Search works on whole words, the word of last reservation is remembered as hint and all words
+ * before it are known to be full. Only range of changed words is encoded back into block.
+ * <p>
+ * Claimed bits are set in words, so search skips them, but they are encoded as clear until they are persisted.
+ */
 class Bitmap {
 
     private static final Logger log = Logger.getLogger(Bitmap.class.getName());
 
     static final int NOT_FOUND = -1;
 
+    private static final int WORD_BITS = Long.SIZE;
+    private static final int WORD_BYTES = Long.BYTES;
+    private static final long FULL = -1L;
+
     private final Block.Id blockId;
-    private final BitSet bitset;
+    private final long[] words;
     private final int length;
+    private final int bits;
     private final ReentrantLock lock = new ReentrantLock();
     private int dirtyMin = Integer.MAX_VALUE;
     private int dirtyMax = Integer.MIN_VALUE;
     private boolean dirty;
+    /**
+     * Index of the first word which may contain clear bit.
+     */
+    private int hint;
+    private int freeCount;
+    /**
+     * Length of the longest run of clear bits, negative if it should be recalculated.
+     */
+    private int longestFreeRun = -1;
+    /**
+     * Bits which are reserved only in memory, null until the first claim.
+     */
+    private long[] claimed;
 
-    Bitmap(Block.Id blockId, BitSet bitset, int length) {
+    Bitmap(Block.Id blockId, long[] words, int length) {
+        assert words.length == wordsOf(length) : "Bitmap [length=" + length + "] should have [words=" + wordsOf(length) + "]";
         this.blockId = blockId;
-        this.bitset = bitset;
+        this.words = words;
         this.length = length;
+        this.bits = byteToBits(length);
+        this.freeCount = bits - Arrays.stream(words).map(Long::bitCount).mapToInt(Math::toIntExact).sum();
         checkInvariant();
     }
 
     static Bitmap read(ByteBuffer buffer, Block.Id blockId) {
-        var bitSet = BitSet.valueOf(buffer);
-        return new Bitmap(blockId, bitSet, buffer.capacity());
+        var length = buffer.capacity();
+        var words = new long[wordsOf(length)];
+        var littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        var fullWords = length / WORD_BYTES;
+        for (int i = 0; i < fullWords; i++) {
+            var word = buffer.getLong(i * WORD_BYTES);
+            words[i] = littleEndian ? word : Long.reverseBytes(word);
+        }
+        for (int i = fullWords * WORD_BYTES; i < length; i++) {
+            words[i / WORD_BYTES] |= (buffer.get(i) & 0xFFL) << ((i % WORD_BYTES) * 8);
+        }
+        return new Bitmap(blockId, words, length);
     }
 
+    /**
+     * Encode changed words into buffer positioned at {@link #dirtyOffset()} of block.
+     *
+     * @param buffer the buffer
+     */
     void write(ByteBuffer buffer) {
+        var from = dirtyOffset();
+        var to = dirtyEnd();
         var remaining = buffer.remaining();
-        if (remaining < length) {
-            throw new IllegalArgumentException("Buffer size [" + remaining + "] mismatch with bitmap size [" + length + "]");
+        if (remaining < to - from) {
+            throw new IllegalArgumentException("Buffer size [" + remaining + "] mismatch with dirty bitmap size [" + (to - from) + "]");
         }
-        buffer.put(bitset.toByteArray());
-        var written = remaining - buffer.remaining();
-        for (var i = written; i <= (dirtyMax / 8); i++) { // In case of setting free it shrinks, need to write manually
-            buffer.put((byte) 0);
+        var littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        var index = from;
+        for (; index + WORD_BYTES <= to; index += WORD_BYTES) {
+            var word = persistedWord(index / WORD_BYTES);
+            buffer.putLong(littleEndian ? word : Long.reverseBytes(word));
+        }
+        for (; index < to; index++) {
+            buffer.put((byte) (persistedWord(index / WORD_BYTES) >>> ((index % WORD_BYTES) * 8)));
         }
         resetDirty();
         checkInvariant();
     }
 
+    /**
+     * Offset in bytes of the first changed word.
+     *
+     * @return the offset, 0 if bitmap is not dirty
+     */
+    int dirtyOffset() {
+        return dirty ? (dirtyMin / WORD_BITS) * WORD_BYTES : 0;
+    }
+
+    private long persistedWord(int index) {
+        return claimed == null ? words[index] : words[index] & ~claimed[index];
+    }
+
+    private int dirtyEnd() {
+        return dirty ? Math.min(length, (dirtyMax / WORD_BITS + 1) * WORD_BYTES) : 0;
+    }
+
     int reserve() {
         log.fine(() -> "Reserving [1] bit...");
-        var bit = bitset.nextClearBit(0);
-        if (bit > length * 8 - 1) {
+        var bit = nextClearBit(0);
+        if (bit >= bits) {
             log.finer(() -> "Next clear bit is out of bounds, nothing found");
             return NOT_FOUND;
         }
         log.finer(() -> "Next clear bit is [" + bit + "]");
-        bitset.set(bit);
+        shrinkRun(nextSetBit(bit) - bit);
+        setWord(bit / WORD_BITS, 1L << bit);
+        hint = bit / WORD_BITS;
         markDirty(bit);
         checkInvariant();
         return bit;
@@ -66,41 +137,127 @@ class Bitmap {
         var ranges = new ArrayList<Range>();
         var allocatedSize = 0;
         var currentIndex = 0;
-        while (allocatedSize < size && currentIndex < byteToBits(length)) {
-            var clearBit = bitset.nextClearBit(currentIndex);
+        while (allocatedSize < size && currentIndex < bits) {
+            var clearBit = nextClearBit(currentIndex);
             log.finer(() -> "Found clear bit [" + clearBit + "]");
-            if (clearBit > byteToBits(length) - 1) {
+            if (clearBit >= bits) {
                 break;
             }
-            var setBit = bitset.nextSetBit(clearBit);
-            if (setBit < 0) {
-                log.finer(() -> "No more set bits, can allocate up to the end bit [" + byteToBits(length) + "]");
-                setBit = byteToBits(length);
-            } else {
-                var setBitFinal = setBit;
-                log.finer(() -> "Found set bit [" + setBitFinal + "]");
-            }
+            var setBit = nextSetBit(clearBit);
             var rangeSize = Math.min(setBit - clearBit, size - allocatedSize);
             var range = Range.of(clearBit, rangeSize);
             ranges.add(range);
             log.fine(() -> "Found free range [" + range + "]...");
-            bitset.set(clearBit, clearBit + range.length);
+            shrinkRun(setBit - clearBit);
+            set(clearBit, clearBit + range.length);
             allocatedSize += range.length;
             currentIndex = clearBit + range.length;
         }
-        log.fine(() -> "Successfully found [ranges=" + ranges.size() + "] of total [blocks=" + ranges.stream().mapToInt(Range::length).sum() + "]...");
-        ranges.forEach(this::markDirty);
+        var allocatedSizeFinal = allocatedSize;
+        log.fine(() -> "Successfully found [ranges=" + ranges.size() + "] of total [blocks=" + allocatedSizeFinal + "]...");
+        if (!ranges.isEmpty()) {
+            hint = (currentIndex - 1) / WORD_BITS;
+            ranges.forEach(this::markDirty);
+        }
         checkInvariant();
         return ranges;
     }
 
+    /**
+     * Reserve contiguous run of bits, the first run long enough is taken.
+     *
+     * @param size the number of bits
+     * @return the range or null if there is no free run of specified size
+     */
+    Range reserveRun(int size) {
+        return reserveRun(0, size);
+    }
+
+    /**
+     * Reserve contiguous run of bits, the first run long enough starting at or after specified bit is taken, then the
+     * first one before it.
+     *
+     * @param from the bit to start from
+     * @param size the number of bits
+     * @return the range or null if there is no free run of specified size
+     */
+    Range reserveRun(int from, int size) {
+        log.fine(() -> "Reserving run of [" + size + "] bits from [" + from + "]...");
+        if (size > freeCount || longestFreeRun >= 0 && size > longestFreeRun) {
+            return null;
+        }
+        var longest = 0;
+        for (var start : from > 0 ? new int[]{from, 0} : new int[]{0}) {
+            var end = start == 0 && from > 0 ? from : bits;
+            var clearBit = nextClearBit(start);
+            while (clearBit < end) {
+                var setBit = nextSetBit(clearBit);
+                longest = Math.max(longest, setBit - clearBit);
+                if (setBit - clearBit >= size) {
+                    var range = Range.of(clearBit, size);
+                    log.fine(() -> "Found free run [" + range + "]...");
+                    shrinkRun(setBit - clearBit);
+                    set(range.from, range.from + range.length);
+                    markDirty(range);
+                    checkInvariant();
+                    return range;
+                }
+                clearBit = setBit < bits ? nextClearBit(setBit) : bits;
+            }
+        }
+        log.finer(() -> "There is no free run of [" + size + "] bits");
+        longestFreeRun = longest;
+        return null;
+    }
+
+    /**
+     * Reserve exactly specified range if all its bits are clear.
+     *
+     * @param range the range
+     * @return true if range was reserved, false if any of its bits is already set
+     */
+    boolean reserve(Range range) {
+        log.fine(() -> "Reserving [range=" + range + "]...");
+        var end = range.from + range.length;
+        if (nextSetBit(range.from) < end) {
+            log.finer(() -> "Range [range=" + range + "] is not free");
+            return false;
+        }
+        shrinkRun((end < bits ? nextSetBit(end) : bits) - previousSetBit(range.from) - 1);
+        set(range.from, end);
+        markDirty(range);
+        checkInvariant();
+        return true;
+    }
+
+    /**
+     * Find all runs of clear bits.
+     *
+     * @return the runs in ascending order
+     */
+    List<Range> freeRuns() {
+        var result = new ArrayList<Range>();
+        var clearBit = nextClearBit(0);
+        while (clearBit < bits) {
+            var setBit = nextSetBit(clearBit);
+            result.add(Range.of(clearBit, setBit - clearBit));
+            clearBit = setBit < bits ? nextClearBit(setBit) : bits;
+        }
+        return result;
+    }
+
     boolean free(int position) {
         log.finer(() -> "Setting free [position=" + position + "] bit...");
-        if (!bitset.get(position)) {
+        if (position >= bits || (words[position / WORD_BITS] & (1L << position)) == 0) {
             log.fine(() -> "Bit [position=" + position + "] already unset");
             return false;
         }
-        bitset.set(position, false);
+        clearWord(position / WORD_BITS, 1L << position);
+        if (claimed != null) {
+            claimed[position / WORD_BITS] &= ~(1L << position);
+        }
+        growRun(position, position + 1);
+        hint = Math.min(hint, position / WORD_BITS);
         markDirty(position);
         checkInvariant();
         log.fine(() -> "Successfully set free [position=" + position + "] bit");
@@ -108,11 +265,76 @@ class Bitmap {
     }
 
     void free(Range range) {
-        bitset.set(range.from, range.from + range.length, false);
+        clear(range.from, range.from + range.length);
+        if (claimed != null) {
+            unclaim(range.from, range.from + range.length);
+        }
+        growRun(range.from, range.from + range.length);
+        hint = Math.min(hint, range.from / WORD_BITS);
         markDirty(range);
         checkInvariant();
     }
 
+    /**
+     * Keep reserved range only in memory, it is encoded as clear until {@link #persist(Range)}.
+     *
+     * @param range the reserved range
+     */
+    void claim(Range range) {
+        if (claimed == null) {
+            claimed = new long[words.length];
+        }
+        var first = range.from / WORD_BITS;
+        var last = (range.from + range.length - 1) / WORD_BITS;
+        for (int i = first; i <= last; i++) {
+            claimed[i] |= mask(i, range.from, range.from + range.length);
+        }
+    }
+
+    /**
+     * Encode claimed range as reserved on next write.
+     *
+     * @param range the claimed range
+     */
+    void persist(Range range) {
+        unclaim(range.from, range.from + range.length);
+        markDirty(range);
+        checkInvariant();
+    }
+
+    /**
+     * Free claimed range, nothing has to be written as it was never encoded as reserved.
+     *
+     * @param range the claimed range
+     */
+    void release(Range range) {
+        unclaim(range.from, range.from + range.length);
+        clear(range.from, range.from + range.length);
+        growRun(range.from, range.from + range.length);
+        hint = Math.min(hint, range.from / WORD_BITS);
+        checkInvariant();
+    }
+
+    private void unclaim(int from, int to) {
+        for (int i = from / WORD_BITS; i <= (to - 1) / WORD_BITS; i++) {
+            claimed[i] &= ~mask(i, from, to);
+        }
+    }
+
+    /**
+     * Mask of bits from the range which belong to word.
+     */
+    private static long mask(int index, int from, int to) {
+        var mask = FULL;
+        if (index == from / WORD_BITS) {
+            mask &= FULL << from;
+        }
+        if (index == (to - 1) / WORD_BITS) {
+            mask &= FULL >>> -to;
+        }
+        return mask;
+    }
+
     void lock() {
         log.fine(() -> "Locking bitmap [blockId=" + blockId + "]...");
         this.lock.lock();
@@ -123,6 +345,140 @@ class Bitmap {
         this.lock.unlock();
     }
 
+    /**
+     * Find the first clear bit starting from specified one, words before hint are skipped.
+     *
+     * @param from the bit to start from
+     * @return the clear bit or number of bits if not found
+     */
+    private int nextClearBit(int from) {
+        var index = Math.max(from / WORD_BITS, hint);
+        if (index >= words.length) {
+            return bits;
+        }
+        var word = ~words[index] & (index == from / WORD_BITS ? FULL << from : FULL);
+        while (word == 0) {
+            if (++index == words.length) {
+                return bits;
+            }
+            word = ~words[index];
+        }
+        return Math.min(bits, index * WORD_BITS + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Find the first set bit starting from specified one.
+     *
+     * @param from the bit to start from
+     * @return the set bit or number of bits if not found
+     */
+    private int nextSetBit(int from) {
+        var index = from / WORD_BITS;
+        var word = words[index] & (FULL << from);
+        while (word == 0) {
+            if (++index == words.length) {
+                return bits;
+            }
+            word = words[index];
+        }
+        return Math.min(bits, index * WORD_BITS + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Find the last set bit before specified one.
+     *
+     * @param to the bit to start from, exclusive
+     * @return the set bit or -1 if not found
+     */
+    private int previousSetBit(int to) {
+        if (to <= 0) {
+            return -1;
+        }
+        var index = (to - 1) / WORD_BITS;
+        var word = words[index] & (FULL >>> -to);
+        while (word == 0) {
+            if (--index < 0) {
+                return -1;
+            }
+            word = words[index];
+        }
+        return index * WORD_BITS + WORD_BITS - 1 - Long.numberOfLeadingZeros(word);
+    }
+
+    private void set(int from, int to) {
+        var first = from / WORD_BITS;
+        var last = (to - 1) / WORD_BITS;
+        if (first == last) {
+            setWord(first, (FULL << from) & (FULL >>> -to));
+            return;
+        }
+        setWord(first, FULL << from);
+        for (int i = first + 1; i < last; i++) {
+            setWord(i, FULL);
+        }
+        setWord(last, FULL >>> -to);
+    }
+
+    private void clear(int from, int to) {
+        var first = from / WORD_BITS;
+        var last = (to - 1) / WORD_BITS;
+        if (first == last) {
+            clearWord(first, (FULL << from) & (FULL >>> -to));
+            return;
+        }
+        clearWord(first, FULL << from);
+        for (int i = first + 1; i < last; i++) {
+            clearWord(i, FULL);
+        }
+        clearWord(last, FULL >>> -to);
+    }
+
+    private void setWord(int index, long mask) {
+        freeCount -= Long.bitCount(mask & ~words[index]);
+        words[index] |= mask;
+    }
+
+    private void clearWord(int index, long mask) {
+        freeCount += Long.bitCount(mask & words[index]);
+        words[index] &= ~mask;
+    }
+
+    /**
+     * Longest run is recalculated only if bits are taken from run of the same length.
+     *
+     * @param length the length of run bits are taken from
+     */
+    private void shrinkRun(int length) {
+        if (length >= longestFreeRun) {
+            longestFreeRun = -1;
+        }
+    }
+
+    /**
+     * Freed bits may only join neighbour runs, so only the run around them is measured.
+     *
+     * @param from the first freed bit
+     * @param to   the bit after the last freed one
+     */
+    private void growRun(int from, int to) {
+        if (longestFreeRun < 0) {
+            return;
+        }
+        var end = to < bits ? nextSetBit(to) : bits;
+        longestFreeRun = Math.max(longestFreeRun, end - previousSetBit(from) - 1);
+    }
+
+    private int calculateLongestFreeRun() {
+        var result = 0;
+        var clearBit = nextClearBit(0);
+        while (clearBit < bits) {
+            var setBit = nextSetBit(clearBit);
+            result = Math.max(result, setBit - clearBit);
+            clearBit = setBit < bits ? nextClearBit(setBit) : bits;
+        }
+        return result;
+    }
+
     private void resetDirty() {
         dirtyMin = Integer.MAX_VALUE;
         dirtyMax = Integer.MIN_VALUE;
@@ -142,7 +498,13 @@ class Bitmap {
     }
 
     private void checkInvariant() {
-        assert bitset.length() <= length * 8 : "Bitmap length [bits=" + bitset.length() + "] should be not more then total [bits=" + length * 8 + "]";
+        assert hint >= 0 && hint <= words.length;
+        assert freeCount >= 0 && freeCount <= bits;
+        assert bits % WORD_BITS == 0 || (words[words.length - 1] & (FULL << bits)) == 0 : "Bits after total [bits=" + bits + "] should be clear";
+    }
+
+    private static int wordsOf(int length) {
+        return (length + WORD_BYTES - 1) / WORD_BYTES;
     }
 
     private static int byteToBits(int b) {
@@ -150,8 +512,8 @@ class Bitmap {
     }
 
     //region getters/setters
-    BitSet getBitset() {
-        return bitset;
+    long[] getWords() {
+        return words;
     }
 
     int getLength() {
@@ -161,6 +523,21 @@ class Bitmap {
     boolean isDirty() {
         return dirty;
     }
+
+    int freeCount() {
+        return freeCount;
+    }
+
+    int claimedCount() {
+        return claimed == null ? 0 : Arrays.stream(claimed).map(Long::bitCount).mapToInt(Math::toIntExact).sum();
+    }
+
+    int longestFreeRun() {
+        if (longestFreeRun < 0) {
+            longestFreeRun = calculateLongestFreeRun();
+        }
+        return longestFreeRun;
+    }
     //endregion
 
     record Range(int from, int length) {
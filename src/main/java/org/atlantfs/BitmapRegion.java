@@ -1,9 +1,12 @@
 package org.atlantfs;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -18,6 +21,12 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
 
     private static final Logger log = Logger.getLogger(BitmapRegion.class.getName());
 
+    /**
+     * Requests of at least this number of items take the smallest free extent which fits, so large holes are not split
+     * by them and large files stay contiguous.
+     */
+    static final int LARGE_REQUEST = 64;
+
     /**
      * File system.
      */
@@ -29,11 +38,29 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
     private final Cache<Block.Id, Bitmap> cache = new Cache<>();
 
     /**
-     * The number of first bitmap with free space.
-     * <p>
-     * Bitmaps before assumed to be full.
+     * Bitmaps with claimed items, claims are not written to disk, so these bitmaps are never dropped from cache.
+     */
+    private final Map<Integer, Bitmap> claimedBitmaps = new ConcurrentHashMap<>();
+
+    /**
+     * Allocation groups with free space of each bitmap, built on first use.
+     */
+    private volatile AllocationGroup[] groups;
+
+    /**
+     * Counter to assign preferred groups to threads in round-robin.
+     */
+    private final AtomicInteger nextGroup = new AtomicInteger();
+
+    /**
+     * Allocation group preferred by current thread.
+     */
+    private final ThreadLocal<Integer> preferredGroup = ThreadLocal.withInitial(() -> nextGroup.getAndIncrement());
+
+    /**
+     * Free extents across all bitmaps, built together with groups.
      */
-    private final AtomicInteger current = new AtomicInteger();
+    private final FreeExtentIndex freeExtents = new FreeExtentIndex();
 
     BitmapRegion(AtlantFileSystem fileSystem) {
         this.fileSystem = fileSystem;
@@ -57,13 +84,15 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
      */
     K reserve() throws BitmapRegion.NotEnoughSpaceException {
         log.fine(() -> "Reserving single...");
-        var cur = current.get();
-        while (cur < numberOfBlocks()) {
-            var id = reserveSingle(cur);
-            if (id.isPresent()) {
-                return id.get();
+        for (var group : preferredGroups()) {
+            var bitmapNumber = group.preferred(1);
+            while (bitmapNumber >= 0) {
+                var id = reserveSingle(bitmapNumber);
+                if (id.isPresent()) {
+                    return id.get();
+                }
+                bitmapNumber = group.preferred(1);
             }
-            cur++;
         }
         throw new BitmapRegion.NotEnoughSpaceException();
     }
@@ -76,61 +105,280 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
      * @throws BitmapRegion.NotEnoughSpaceException if not enough space to reserve
      */
     List<R> reserve(int size) throws BitmapRegion.NotEnoughSpaceException {
-        log.fine(() -> "Reserving multiple of [size=" + size + "]...");
-        var ranges = reserveMultiple(current.get(), size);
+        return reserve(size, false);
+    }
+
+    private List<R> reserve(int size, boolean claim) throws BitmapRegion.NotEnoughSpaceException {
+        log.fine(() -> "Reserving multiple of [size=" + size + ", claim=" + claim + "]...");
+        if (totalFree() < size) {
+            throw new BitmapRegion.NotEnoughSpaceException();
+        }
+        if (size >= LARGE_REQUEST) {
+            var bestFit = reserveBestFit(size, claim);
+            if (bestFit.isPresent()) {
+                return bestFit.get();
+            }
+        }
+        var preferredGroups = preferredGroups();
+        for (var group : preferredGroups) {
+            var bitmapNumber = group.preferred(size);
+            while (bitmapNumber >= 0) {
+                var range = reserveRun(bitmapNumber, 0, size, claim);
+                if (range.isPresent()) {
+                    log.finer(() -> "Successfully reserved run of [size=" + size + ", range=" + range.get() + "]");
+                    return List.of(range.get());
+                }
+                bitmapNumber = group.preferred(size);
+            }
+        }
+        var bestFit = reserveBestFit(size, claim);
+        if (bestFit.isPresent()) {
+            return bestFit.get();
+        }
+        var ranges = reserveSpilled(preferredGroups.getFirst(), size, claim);
         assert ranges.stream().mapToInt(R::length).sum() == size;
         log.finer(() -> "Successfully reserved multiple of [size=" + size + ", ranges=" + ranges + "]");
         return ranges;
     }
 
+    /**
+     * Reserve the smallest free extent which fits, extent may continue across several bitmaps.
+     *
+     * @param size  the number of items
+     * @param claim true to keep reservation only in memory
+     * @return the ranges, one per bitmap, or empty if there is no free extent of specified size
+     */
+    private Optional<List<R>> reserveBestFit(int size, boolean claim) {
+        var position = freeExtents().bestFit(size);
+        while (position >= 0) {
+            var ranges = reserveAt(position, size, claim);
+            if (ranges.isPresent()) {
+                log.finer(() -> "Successfully reserved best fit of [size=" + size + ", ranges=" + ranges.get() + "]");
+                return ranges;
+            }
+            position = freeExtents().bestFit(size);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reserve exactly specified items, bitmaps are locked in ascending order.
+     *
+     * @param position the first item from the start of region
+     * @param size     the number of items
+     * @param claim    true to keep reservation only in memory
+     * @return the ranges, one per bitmap, or empty if any of items is already reserved, nothing is reserved then
+     */
+    private Optional<List<R>> reserveAt(int position, int size, boolean claim) {
+        var bitsPerBitmap = bitsPerBitmap();
+        var first = position / bitsPerBitmap;
+        var last = (position + size - 1) / bitsPerBitmap;
+        var bitmaps = new ArrayList<Bitmap>();
+        try {
+            for (int i = first; i <= last; i++) {
+                var bitmap = loadBitmap(i);
+                bitmap.lock();
+                bitmaps.add(bitmap);
+            }
+            var parts = new ArrayList<Bitmap.Range>();
+            for (int i = first; i <= last; i++) {
+                var from = Math.max(position, i * bitsPerBitmap);
+                var to = Math.min(position + size, (i + 1) * bitsPerBitmap);
+                parts.add(Bitmap.Range.of(from - i * bitsPerBitmap, to - from));
+            }
+            for (int i = 0; i < parts.size(); i++) {
+                if (!bitmaps.get(i).reserve(parts.get(i))) {
+                    for (int j = 0; j < i; j++) {
+                        bitmaps.get(j).free(parts.get(j));
+                        update(first + j, bitmaps.get(j));
+                    }
+                    return Optional.empty();
+                }
+                update(first + i, bitmaps.get(i));
+            }
+            freeExtents.reserved(position, size);
+            var result = new ArrayList<R>();
+            for (int i = 0; i < parts.size(); i++) {
+                reserved(first + i, bitmaps.get(i), parts.get(i), claim);
+                result.add(applyOffset(first + i, parts.get(i)));
+            }
+            return Optional.of(result);
+        } finally {
+            bitmaps.forEach(Bitmap::unlock);
+        }
+    }
+
+    /**
+     * Reserve single {@link K} as close as possible after goal.
+     *
+     * @param goal the item to reserve near
+     * @return single id of reserved item
+     * @throws BitmapRegion.NotEnoughSpaceException if not enough space to reserve
+     * @see #reserveNear(Id, int)
+     */
+    K reserveNear(K goal) throws BitmapRegion.NotEnoughSpaceException {
+        return reserveNear(goal, 1).getFirst().from();
+    }
+
+    /**
+     * Reserve contiguous run of {@link K} as close as possible after goal, so items of one owner stay together even
+     * when several owners are allocating at the same time.
+     * <p>
+     * Run is searched in bitmap of goal starting from goal, then in following bitmaps of the same group. If there is
+     * no such run, reservation falls back to {@link #reserve(int)}.
+     *
+     * @param goal the item to reserve near
+     * @param size the number of items
+     * @return the list of ranges of reserved items
+     * @throws BitmapRegion.NotEnoughSpaceException if not enough space to reserve
+     */
+    List<R> reserveNear(K goal, int size) throws BitmapRegion.NotEnoughSpaceException {
+        return reserveNear(goal, size, false);
+    }
+
+    /**
+     * Claim contiguous run of {@link K} as close as possible after goal, like {@link #reserveNear(Id, int)}.
+     * <p>
+     * Claimed items are skipped by other reservations, but they are not written to disk, so nothing leaks after
+     * crash. Claimed items should be either persisted by {@link #persistClaimed(List)} once they are used or released
+     * by {@link #releaseClaimed(List)}.
+     *
+     * @param goal the item to claim near, null if there is no preference
+     * @param size the number of items
+     * @return the list of ranges of claimed items
+     * @throws BitmapRegion.NotEnoughSpaceException if not enough space to claim
+     */
+    List<R> claimNear(K goal, int size) throws BitmapRegion.NotEnoughSpaceException {
+        return goal == null ? reserve(size, true) : reserveNear(goal, size, true);
+    }
+
+    private List<R> reserveNear(K goal, int size, boolean claim) throws BitmapRegion.NotEnoughSpaceException {
+        log.fine(() -> "Reserving [size=" + size + ", claim=" + claim + "] near [goal=" + goal + "]...");
+        var goalBitmap = toBitmapNumber(goal);
+        if (goalBitmap < 0 || goalBitmap >= numberOfBlocks()) {
+            log.finer(() -> "Goal [goal=" + goal + "] is out of region, reserving without goal...");
+            return reserve(size, claim);
+        }
+        var group = group(goalBitmap);
+        var bitmapNumber = group.first(goalBitmap, size);
+        while (bitmapNumber >= 0) {
+            var range = reserveRun(bitmapNumber, bitmapNumber == goalBitmap ? toBitmapOffset(goal) : 0, size, claim);
+            if (range.isPresent()) {
+                log.finer(() -> "Successfully reserved run of [size=" + size + ", range=" + range.get() + "] near [goal=" + goal + "]");
+                return List.of(range.get());
+            }
+            bitmapNumber = group.first(bitmapNumber, size);
+        }
+        log.finer(() -> "There is no run of [size=" + size + "] near [goal=" + goal + "], reserving without goal...");
+        return reserve(size, claim);
+    }
+
+    /**
+     * Reserve free items of bitmaps in ascending order, starting from vacant bitmap of preferred group and then from the
+     * first vacant bitmap.
+     * <p>
+     * Bitmaps are locked in ascending order only, so spill never wraps around.
+     */
+    private List<R> reserveSpilled(AllocationGroup preferred, int size, boolean claim) throws BitmapRegion.NotEnoughSpaceException {
+        var start = nextVacant(preferred.firstBitmap());
+        if (start >= 0) {
+            try {
+                return reserveMultiple(start, size, claim);
+            } catch (BitmapRegion.NotEnoughSpaceException e) {
+                log.fine(() -> "Not enough space after [bitmapNumber=" + start + "], searching from the first bitmap...");
+            }
+        }
+        var first = nextVacant(0);
+        if (first < 0 || first == start) {
+            throw new BitmapRegion.NotEnoughSpaceException();
+        }
+        return reserveMultiple(first, size, claim);
+    }
+
     protected Optional<K> reserveSingle(int bitmapNumber) {
         var bitmap = loadBitmap(bitmapNumber);
         try {
             bitmap.lock();
             log.fine(() -> "Reserving [1] item in [bitmapNumber=" + bitmapNumber + "]...");
             var reserved = bitmap.reserve();
+            update(bitmapNumber, bitmap);
             if (reserved < 0) {
                 log.fine(() -> "Bitmap [bitmapNumber=" + bitmapNumber + "] of [numberOfBlocks=" + numberOfBlocks() + "] is full, search on next bitmap...");
-                // If current not decreased
-                markAsOccupied(bitmapNumber);
                 return Optional.empty();
             }
-            checkInvariant();
+            freeExtents.reserved(position(bitmapNumber, reserved), 1);
             write(bitmapNumber, bitmap);
+            group(bitmapNumber).moveCursor(bitmapNumber);
             return Optional.of(applyOffset(bitmapNumber, reserved));
         } finally {
             bitmap.unlock();
         }
     }
 
-    protected List<R> reserveMultiple(int bitmapNumber, int size) throws BitmapRegion.NotEnoughSpaceException {
+    protected Optional<R> reserveRun(int bitmapNumber, int size) {
+        return reserveRun(bitmapNumber, 0, size, false);
+    }
+
+    protected Optional<R> reserveRun(int bitmapNumber, int from, int size, boolean claim) {
+        var bitmap = loadBitmap(bitmapNumber);
+        try {
+            bitmap.lock();
+            log.fine(() -> "Reserving run of [" + size + "] items in [bitmapNumber=" + bitmapNumber + ", from=" + from + "]...");
+            var range = bitmap.reserveRun(from, size);
+            update(bitmapNumber, bitmap);
+            if (range == null) {
+                return Optional.empty();
+            }
+            freeExtents.reserved(position(bitmapNumber, range.from()), range.length());
+            reserved(bitmapNumber, bitmap, range, claim);
+            group(bitmapNumber).moveCursor(bitmapNumber);
+            return Optional.of(applyOffset(bitmapNumber, range));
+        } finally {
+            bitmap.unlock();
+        }
+    }
+
+    /**
+     * Reserve first free items of bitmap, rest of them is reserved in next bitmaps with free space.
+     *
+     * @param bitmapNumber the number of bitmap
+     * @param size         the number of items
+     * @param claim        true to keep reservation only in memory
+     * @return the ranges
+     * @throws BitmapRegion.NotEnoughSpaceException if not enough space, nothing is reserved then
+     */
+    protected List<R> reserveMultiple(int bitmapNumber, int size, boolean claim) throws BitmapRegion.NotEnoughSpaceException {
         List<Bitmap.Range> ranges = List.of();
         var bitmap = loadBitmap(bitmapNumber);
         try {
             bitmap.lock();
             log.fine(() -> "Reserving [" + size + "] items in [bitmapNumber=" + bitmapNumber + "]...");
             ranges = bitmap.reserve(size);
+            update(bitmapNumber, bitmap);
+            ranges.forEach(range -> freeExtents.reserved(position(bitmapNumber, range.from()), range.length()));
             if (ranges.isEmpty()) {
                 log.fine(() -> "Bitmap [bitmapNumber=" + bitmapNumber + "] of [numberOfBlocks=" + numberOfBlocks() + "] is full, search on next bitmap...");
-                // If current not decreased
-                markAsOccupied(bitmapNumber);
             }
             var reservedSize = ranges.stream().mapToInt(Bitmap.Range::length).sum();
             var remainingSize = size - reservedSize;
-            if (remainingSize > 0 && bitmapNumber >= numberOfBlocks() - 1) {
-                throw new BitmapRegion.NotEnoughSpaceException();
-            }
             var converted = new ArrayList<>(applyOffset(bitmapNumber, ranges));
             if (remainingSize > 0) {
-                log.fine(() -> "Reserved [reservedSize=" + reservedSize + ", remainingSize=" + remainingSize + "], searching in next bitmap block...");
-                var nextReserved = reserveMultiple(bitmapNumber + 1, remainingSize);
+                var next = nextVacant(bitmapNumber + 1);
+                if (next < 0) {
+                    throw new BitmapRegion.NotEnoughSpaceException();
+                }
+                log.fine(() -> "Reserved [reservedSize=" + reservedSize + ", remainingSize=" + remainingSize + "], searching in next [bitmapNumber=" + next + "]...");
+                var nextReserved = reserveMultiple(next, remainingSize, claim);
                 converted.addAll(nextReserved);
             }
-            checkInvariant();
-            write(bitmapNumber, bitmap);
+            for (var range : ranges) {
+                reserved(bitmapNumber, bitmap, range, claim);
+            }
             return converted;
         } catch (BitmapRegion.NotEnoughSpaceException e) {
             ranges.forEach(bitmap::free);
+            update(bitmapNumber, bitmap);
+            ranges.forEach(range -> freeExtents.freed(position(bitmapNumber, range.from()), range.length()));
             throw e;
         } finally {
             bitmap.unlock();
@@ -153,8 +401,8 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
             if (!changed) {
                 return;
             }
-            markAsVacant(bitmapNumber);
-            checkInvariant();
+            update(bitmapNumber, bitmap);
+            freeExtents.freed(position(bitmapNumber, toBitmapOffset(id)), 1);
             write(bitmapNumber, bitmap);
         } finally {
             bitmap.unlock();
@@ -182,8 +430,8 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
                             var bitmapOffset = toBitmapOffset(id);
                             bitmap.free(bitmapOffset);
                         });
-                        markAsVacant(bitmapNumber);
-                        checkInvariant();
+                        update(bitmapNumber, bitmap);
+                        localIds.forEach(id -> freeExtents.freed(position(bitmapNumber, toBitmapOffset(id)), 1));
                         write(bitmapNumber, bitmap);
                     } finally {
                         bitmap.unlock();
@@ -203,27 +451,115 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
      * @param ranges the list of ranges to free
      */
     void freeRanges(List<R> ranges) {
-        ranges.stream()
-                .collect(Collectors.groupingBy(
-                        range -> toBitmapNumber(range.from()),
-                        TreeMap::new,
-                        Collectors.toList()))
-                .forEach((bitmapNumber, localRanges) -> {
-                    var bitmap = loadBitmap(bitmapNumber);
-                    try {
-                        bitmap.lock();
-                        localRanges.forEach(range -> bitmap.free(Bitmap.Range.of(toBitmapOffset(range.from()), range.length())));
-                        markAsVacant(bitmapNumber);
-                        checkInvariant();
-                        write(bitmapNumber, bitmap);
-                    } finally {
-                        bitmap.unlock();
-                    }
-                });
+        split(ranges).forEach((bitmapNumber, localRanges) -> {
+            var bitmap = loadBitmap(bitmapNumber);
+            try {
+                bitmap.lock();
+                localRanges.forEach(bitmap::free);
+                update(bitmapNumber, bitmap);
+                localRanges.forEach(range -> freeExtents.freed(position(bitmapNumber, range.from()), range.length()));
+                write(bitmapNumber, bitmap);
+            } finally {
+                bitmap.unlock();
+            }
+        });
+    }
+
+    /**
+     * Write claimed ranges {@link R} to disk as reserved.
+     *
+     * @param ranges the list of claimed ranges
+     * @see #claimNear(Id, int)
+     */
+    void persistClaimed(List<R> ranges) {
+        split(ranges).forEach((bitmapNumber, localRanges) -> {
+            var bitmap = loadBitmap(bitmapNumber);
+            try {
+                bitmap.lock();
+                localRanges.forEach(bitmap::persist);
+                unpinIfNotClaimed(bitmapNumber, bitmap);
+                write(bitmapNumber, bitmap);
+            } finally {
+                bitmap.unlock();
+            }
+        });
+    }
+
+    /**
+     * Mark claimed ranges {@link R} as free, nothing is written to disk.
+     *
+     * @param ranges the list of claimed ranges
+     * @see #claimNear(Id, int)
+     */
+    void releaseClaimed(List<R> ranges) {
+        split(ranges).forEach((bitmapNumber, localRanges) -> {
+            var bitmap = loadBitmap(bitmapNumber);
+            try {
+                bitmap.lock();
+                localRanges.forEach(bitmap::release);
+                unpinIfNotClaimed(bitmapNumber, bitmap);
+                update(bitmapNumber, bitmap);
+                localRanges.forEach(range -> freeExtents.freed(position(bitmapNumber, range.from()), range.length()));
+            } finally {
+                bitmap.unlock();
+            }
+        });
+    }
+
+    private void unpinIfNotClaimed(int bitmapNumber, Bitmap bitmap) {
+        if (bitmap.claimedCount() == 0) {
+            claimedBitmaps.remove(bitmapNumber);
+        }
     }
 
+    /**
+     * Split ranges into parts of bitmaps, range may continue into next bitmaps, e.g. extent merged across bitmap
+     * boundary. Bitmaps are in ascending order, so they are locked in the same order as by reservations.
+     *
+     * @param ranges the ranges
+     * @return the parts of ranges by number of bitmap
+     */
+    private TreeMap<Integer, List<Bitmap.Range>> split(List<R> ranges) {
+        var bitsPerBitmap = bitsPerBitmap();
+        var result = new TreeMap<Integer, List<Bitmap.Range>>();
+        for (var range : ranges) {
+            var bitmapNumber = toBitmapNumber(range.from());
+            var offset = toBitmapOffset(range.from());
+            var remaining = range.length();
+            while (remaining > 0) {
+                var length = Math.min(remaining, bitsPerBitmap - offset);
+                result.computeIfAbsent(bitmapNumber, _ -> new ArrayList<>()).add(Bitmap.Range.of(offset, length));
+                remaining -= length;
+                bitmapNumber++;
+                offset = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write reserved range, claimed range is kept only in memory and nothing is written.
+     */
+    private void reserved(int bitmapNumber, Bitmap bitmap, Bitmap.Range range, boolean claim) {
+        if (claim) {
+            bitmap.claim(range);
+            claimedBitmaps.put(bitmapNumber, bitmap);
+        } else {
+            write(bitmapNumber, bitmap);
+        }
+    }
+
+    /**
+     * Write changed part of bitmap, nothing is written if bitmap is not dirty.
+     *
+     * @param bitmapNumber the number of bitmap
+     * @param bitmap       the bitmap
+     */
     void write(int bitmapNumber, Bitmap bitmap) {
-        fileSystem.writeBlock(firstBlock().plus(bitmapNumber), bitmap::write);
+        if (!bitmap.isDirty()) {
+            return;
+        }
+        fileSystem.writeBlock(firstBlock().plus(bitmapNumber), bitmap.dirtyOffset(), bitmap::write);
     }
 
     private Bitmap loadBitmap(int bitmapNumber) {
@@ -236,12 +572,130 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
         });
     }
 
-    private void markAsOccupied(int bitmapNumber) {
-        current.compareAndSet(bitmapNumber, bitmapNumber + 1);
+    /**
+     * Groups are built by reading all bitmaps once, then summary of group is updated on every change.
+     *
+     * @return the allocation groups
+     */
+    AllocationGroup[] groups() {
+        var result = groups;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (groups == null) {
+                var numberOfGroups = numberOfGroups();
+                var groupSize = (numberOfBlocks() + numberOfGroups - 1) / numberOfGroups;
+                log.fine(() -> "Building [groups=" + numberOfGroups + "] of [numberOfBlocks=" + numberOfBlocks() + "]...");
+                var built = new AllocationGroup[(numberOfBlocks() + groupSize - 1) / groupSize];
+                for (int i = 0; i < built.length; i++) {
+                    var firstBitmap = i * groupSize;
+                    built[i] = new AllocationGroup(i, firstBitmap, Math.min(groupSize, numberOfBlocks() - firstBitmap));
+                    for (int j = firstBitmap; j < built[i].end(); j++) {
+                        var bitmap = loadBitmap(j);
+                        try {
+                            bitmap.lock();
+                            built[i].update(j, bitmap);
+                            for (var range : bitmap.freeRuns()) {
+                                freeExtents.freed(position(j, range.from()), range.length());
+                            }
+                        } finally {
+                            bitmap.unlock();
+                        }
+                    }
+                }
+                log.fine(() -> "Successfully built [groups=" + Arrays.toString(built) + ", freeExtents=" + freeExtents + "]");
+                groups = built;
+            }
+            return groups;
+        }
+    }
+
+    /**
+     * Number of allocation groups is the number of available processors, but not more than number of bitmaps.
+     *
+     * @return the number of groups
+     */
+    int numberOfGroups() {
+        return Math.max(1, Math.min(numberOfBlocks(), Runtime.getRuntime().availableProcessors()));
+    }
+
+    private AllocationGroup group(int bitmapNumber) {
+        var groups = groups();
+        var groupSize = groups[0].end();
+        return groups[bitmapNumber / groupSize];
+    }
+
+    /**
+     * Groups in order of preference for current thread: preferred group first, then following ones.
+     *
+     * @return the groups
+     */
+    private List<AllocationGroup> preferredGroups() {
+        var groups = groups();
+        var preferred = Math.floorMod(preferredGroup.get(), groups.length);
+        var result = new ArrayList<AllocationGroup>(groups.length);
+        for (int i = 0; i < groups.length; i++) {
+            result.add(groups[(preferred + i) % groups.length]);
+        }
+        return result;
+    }
+
+    /**
+     * Update summary of group, should be called under lock of bitmap after it was changed.
+     */
+    private void update(int bitmapNumber, Bitmap bitmap) {
+        group(bitmapNumber).update(bitmapNumber, bitmap);
+    }
+
+    /**
+     * Find the first bitmap with free space starting from specified one.
+     *
+     * @param from the number of bitmap to start from
+     * @return the number of bitmap or -1 if bitmaps are full
+     */
+    private int nextVacant(int from) {
+        if (from >= numberOfBlocks()) {
+            return -1;
+        }
+        var groups = groups();
+        for (int i = group(from).number(); i < groups.length; i++) {
+            var result = groups[i].first(from, 1);
+            if (result >= 0) {
+                return result;
+            }
+        }
+        return -1;
+    }
+
+    long totalFree() {
+        return Arrays.stream(groups()).mapToLong(AllocationGroup::totalFree).sum();
+    }
+
+    int longestFreeRun() {
+        return Arrays.stream(groups()).mapToInt(AllocationGroup::longestFreeRun).max().orElse(0);
+    }
+
+    /**
+     * Length of the largest free extent, unlike {@link #longestFreeRun()} it may continue across several bitmaps.
+     *
+     * @return the number of items
+     */
+    int largestFreeExtent() {
+        return freeExtents().largest();
     }
 
-    private void markAsVacant(int bitmapNumber) {
-        current.updateAndGet(v -> Math.min(bitmapNumber, v));
+    FreeExtentIndex freeExtents() {
+        groups();
+        return freeExtents;
+    }
+
+    private int position(int bitmapNumber, int offset) {
+        return bitmapNumber * bitsPerBitmap() + offset;
+    }
+
+    private int bitsPerBitmap() {
+        return blockSize() * 8;
     }
 
     abstract int toBitmapNumber(K id);
@@ -258,19 +712,15 @@ abstract class BitmapRegion<K extends Id, R extends Range<K>> implements Region
 
     abstract K applyOffset(int bitmapNumber, int position);
 
-    private void checkInvariant() {
-        assert current.get() >= 0;
-        assert current.get() < numberOfBlocks();
-    }
-
     // -----------------------------------------------------------------------------------------------------------------
 
-    int getCurrent() {
-        return current.get();
-    }
-
-    void setCurrent(int value) {
-        current.set(value);
+    /**
+     * The number of first bitmap with free space.
+     *
+     * @return the number of bitmap or -1 if all bitmaps are full
+     */
+    int firstVacant() {
+        return nextVacant(0);
     }
 
     static class NotEnoughSpaceException extends org.atlantfs.NotEnoughSpaceException {
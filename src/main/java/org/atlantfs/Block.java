@@ -83,7 +83,7 @@ interface Block {
     class Pointer<B extends Block> {
 
         private final Id id;
-        private SoftReference<B> reference;
+        private volatile SoftReference<B> reference;
 
         Pointer(Id id) {
             this.id = id;
@@ -111,14 +111,22 @@ interface Block {
             return id;
         }
 
+        /**
+         * Get block, reading it if it was not read yet or was collected, concurrent callers get the same block.
+         */
         B computeIfAbsent(Function<Id, B> reader) {
             var result = reference.get();
             if (result != null) {
                 return result;
             }
-            result = reader.apply(id);
-            reference = new SoftReference<>(result);
-            return result;
+            synchronized (this) {
+                result = reference.get();
+                if (result == null) {
+                    result = reader.apply(id);
+                    reference = new SoftReference<>(result);
+                }
+                return result;
+            }
         }
 
         @Override
@@ -0,0 +1,531 @@
+package org.atlantfs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of blocks in front of {@link BlockDevice}.
+ * <p>
+ * Blocks are kept as heap copies keyed by {@link Block.Id}, the number of cached blocks is limited by memory budget.
+ * Eviction uses 2Q policy, so single pass over many blocks doesn't flush blocks which are accessed repeatedly:
+ * <ul>
+ *     <li>{@code in} - FIFO of blocks seen once, takes up to quarter of capacity</li>
+ *     <li>{@code out} - ids of blocks recently evicted from {@code in}, without content</li>
+ *     <li>{@code main} - LRU of blocks requested again while their id is in {@code out}</li>
+ * </ul>
+ * Pinned blocks are kept outside of queues and never evicted, they are not counted in budget.
+ * <p>
+ * By default writes go through to device and update cached copy. In write-back mode writes only update cached copy
+ * and mark block as dirty, dirty blocks are never evicted. Background flusher writes dirty blocks in order of block
+ * ids when they become older than expire time or when dirty blocks take more than dirty ratio of capacity. If all
+ * cached blocks are dirty writer flushes oldest blocks itself. Everything is flushed on {@link #force()} and
+ * {@link #close()}.
+ * <p>
+ * Each block is guarded by striped lock, so loading of missed block, writing and flushing of the same block are
+ * serialized.
+ */
+class BlockCache implements BlockDevice {
+
+    private static final Logger log = Logger.getLogger(BlockCache.class.getName());
+
+    private static final int NUMBER_OF_STRIPES = 64;
+
+    private final BlockDevice device;
+    private final int blockSize;
+    private final int capacity;
+    private final int inCapacity;
+    private final int outCapacity;
+    private final AtlantStatistics statistics;
+    private final AtomicLong size;
+    private final ReentrantLock[] stripes = new ReentrantLock[NUMBER_OF_STRIPES];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Block.Id> pinnedIds = new HashSet<>();
+    private final Map<Block.Id, byte[]> pinned = new LinkedHashMap<>();
+    private final LinkedHashMap<Block.Id, byte[]> in = new LinkedHashMap<>();
+    private final LinkedHashSet<Block.Id> out = new LinkedHashSet<>();
+    private final LinkedHashMap<Block.Id, byte[]> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final WriteBack writeBack;
+    private final LinkedHashMap<Block.Id, Dirty> dirty = new LinkedHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    BlockCache(BlockDevice device, int blockSize, long cacheSizeBytes, AtlantStatistics statistics) throws IOException {
+        this(device, blockSize, cacheSizeBytes, statistics, null);
+    }
+
+    /**
+     * Create cache.
+     *
+     * @param device         the device to cache
+     * @param blockSize      the size of block
+     * @param cacheSizeBytes the memory budget
+     * @param statistics     the statistics
+     * @param writeBack      the write-back thresholds, null for write-through cache
+     * @throws IOException if I/O error occurs
+     */
+    BlockCache(BlockDevice device, int blockSize, long cacheSizeBytes, AtlantStatistics statistics, WriteBack writeBack) throws IOException {
+        assert cacheSizeBytes >= blockSize;
+        this.device = device;
+        this.blockSize = blockSize;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, cacheSizeBytes / blockSize);
+        this.inCapacity = Math.max(1, capacity / 4);
+        this.outCapacity = Math.max(1, capacity / 2);
+        this.statistics = statistics;
+        this.size = new AtomicLong(device.size());
+        for (int i = 0; i < NUMBER_OF_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.writeBack = writeBack;
+        if (writeBack != null) {
+            var period = Math.max(10, writeBack.expireMillis() / 4);
+            this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("atlant-flusher").factory());
+            this.flusher.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Keep block in cache regardless of budget.
+     *
+     * @param id the block id
+     */
+    void pin(Block.Id id) {
+        lock.lock();
+        try {
+            pinnedIds.add(id);
+            var data = in.containsKey(id) ? in.remove(id) : main.remove(id);
+            if (data != null) {
+                pinned.put(id, data);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException {
+        var total = (int) Math.max(0, Math.min(buffer.remaining(), size.get() - position));
+        var done = 0;
+        while (done < total) {
+            var current = position + done;
+            var id = Block.Id.of((int) (current / blockSize));
+            var offset = (int) (current % blockSize);
+            var length = Math.min(total - done, blockSize - offset);
+            var stripe = stripe(id);
+            stripe.lock();
+            try {
+                var data = get(id);
+                if (data == null) {
+                    data = load(id);
+                }
+                buffer.put(data, offset, length);
+            } finally {
+                stripe.unlock();
+            }
+            done += length;
+        }
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer buffer, long position) throws IOException {
+        var total = buffer.remaining();
+        var done = 0;
+        while (done < total) {
+            var current = position + done;
+            var id = Block.Id.of((int) (current / blockSize));
+            var offset = (int) (current % blockSize);
+            var length = Math.min(total - done, blockSize - offset);
+            var part = buffer.slice(buffer.position(), length);
+            var stripe = stripe(id);
+            stripe.lock();
+            try {
+                if (writeBack == null) {
+                    device.write(part.duplicate(), current);
+                    update(id, offset, part);
+                } else {
+                    writeBack(id, offset, part);
+                }
+            } finally {
+                stripe.unlock();
+            }
+            buffer.position(buffer.position() + length);
+            done += length;
+        }
+        size.accumulateAndGet(position + total, Math::max);
+        if (writeBack != null) {
+            throttle();
+        }
+        return total;
+    }
+
+    private byte[] get(Block.Id id) {
+        lock.lock();
+        try {
+            var data = lookup(id);
+            if (data != null) {
+                statistics.incrementCacheHits();
+            }
+            return data;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] lookup(Block.Id id) {
+        var data = pinned.get(id);
+        if (data == null) {
+            data = main.get(id);
+        }
+        if (data == null) {
+            data = in.get(id);
+        }
+        return data;
+    }
+
+    private byte[] load(Block.Id id) throws IOException {
+        var data = readFromDevice(id);
+        put(id, data);
+        return data;
+    }
+
+    private byte[] readFromDevice(Block.Id id) throws IOException {
+        log.finer(() -> "Loading block into cache [blockId=" + id + "]...");
+        statistics.incrementCacheMisses();
+        var data = new byte[blockSize];
+        var _ = device.read(ByteBuffer.wrap(data), (long) id.value() * blockSize);
+        return data;
+    }
+
+    private void update(Block.Id id, int offset, ByteBuffer part) {
+        lock.lock();
+        try {
+            var data = lookup(id);
+            if (data != null) {
+                part.get(0, data, offset, part.remaining());
+            } else if (offset == 0 && part.remaining() == blockSize) {
+                data = new byte[blockSize];
+                part.get(0, data);
+                put(id, data);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeBack(Block.Id id, int offset, ByteBuffer part) throws IOException {
+        lock.lock();
+        try {
+            var data = lookup(id);
+            if (data != null) {
+                writeDirty(id, data, offset, part);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        var data = offset == 0 && part.remaining() == blockSize ? new byte[blockSize] : readFromDevice(id);
+        lock.lock();
+        try {
+            assert lookup(id) == null : "Block [" + id + "] can't be loaded concurrently as stripe is locked";
+            writeDirty(id, data, offset, part);
+            put(id, data);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark block as dirty before modification, so it can't be evicted in between.
+     */
+    private void writeDirty(Block.Id id, byte[] data, int offset, ByteBuffer part) {
+        assert lock.isHeldByCurrentThread();
+        dirty.putIfAbsent(id, new Dirty(data, System.nanoTime()));
+        part.get(0, data, offset, part.remaining());
+        if (dirty.size() > capacity * writeBack.dirtyRatio() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushOverRatio);
+        }
+    }
+
+    /**
+     * Flush oldest dirty blocks by writer if all cached blocks are dirty.
+     */
+    private void throttle() throws IOException {
+        while (true) {
+            Block.Id oldest;
+            lock.lock();
+            try {
+                if (dirty.size() < capacity) {
+                    return;
+                }
+                oldest = dirty.firstEntry().getKey();
+            } finally {
+                lock.unlock();
+            }
+            flush(oldest);
+        }
+    }
+
+    private void flushExpired() {
+        var threshold = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(writeBack.expireMillis());
+        var expired = new ArrayList<Block.Id>();
+        lock.lock();
+        try {
+            for (var entry : dirty.entrySet()) {
+                if (entry.getValue().since() > threshold) {
+                    break;
+                }
+                expired.add(entry.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushQuietly(expired);
+    }
+
+    private void flushOverRatio() {
+        flushRequested.set(false);
+        var oldest = new ArrayList<Block.Id>();
+        lock.lock();
+        try {
+            var target = (int) (capacity * writeBack.dirtyRatio() / 2);
+            var iterator = dirty.sequencedKeySet().iterator();
+            while (dirty.size() - oldest.size() > target && iterator.hasNext()) {
+                oldest.add(iterator.next());
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushQuietly(oldest);
+    }
+
+    private void flushQuietly(List<Block.Id> ids) {
+        try {
+            flush(ids);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.SEVERE, "Failed to flush dirty blocks [device=" + device + "]", e);
+        }
+    }
+
+    /**
+     * Write all dirty blocks to device.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    void flush() throws IOException {
+        List<Block.Id> ids;
+        lock.lock();
+        try {
+            ids = new ArrayList<>(dirty.keySet());
+        } finally {
+            lock.unlock();
+        }
+        flush(ids);
+    }
+
+    private void flush(List<Block.Id> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        log.finer(() -> "Flushing dirty blocks [count=" + ids.size() + "]...");
+        var sorted = new ArrayList<>(ids);
+        sorted.sort((a, b) -> Integer.compare(a.value(), b.value()));
+        for (var id : sorted) {
+            flush(id);
+        }
+    }
+
+    private void flush(Block.Id id) throws IOException {
+        var stripe = stripe(id);
+        stripe.lock();
+        try {
+            Dirty entry;
+            lock.lock();
+            try {
+                entry = dirty.remove(id);
+            } finally {
+                lock.unlock();
+            }
+            if (entry == null) {
+                return;
+            }
+            try {
+                device.write(ByteBuffer.wrap(entry.data()), (long) id.value() * blockSize);
+                statistics.incrementCacheFlushes();
+            } catch (IOException | RuntimeException e) {
+                lock.lock();
+                try {
+                    dirty.putIfAbsent(id, entry);
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private void put(Block.Id id, byte[] data) {
+        lock.lock();
+        try {
+            if (pinnedIds.contains(id)) {
+                pinned.put(id, data);
+            } else if (out.remove(id)) {
+                main.put(id, data);
+            } else {
+                in.put(id, data);
+            }
+            reclaim();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reclaim() {
+        while (in.size() + main.size() > capacity) {
+            var evicted = in.size() > inCapacity || main.isEmpty()
+                    ? evictFromIn() || evictFromMain()
+                    : evictFromMain() || evictFromIn();
+            if (!evicted) {
+                // Everything is dirty, wait for flush
+                return;
+            }
+            statistics.incrementCacheEvictions();
+        }
+    }
+
+    private boolean evictFromIn() {
+        var evicted = evictClean(in);
+        if (evicted == null) {
+            return false;
+        }
+        out.add(evicted);
+        if (out.size() > outCapacity) {
+            out.removeFirst();
+        }
+        return true;
+    }
+
+    private boolean evictFromMain() {
+        return evictClean(main) != null;
+    }
+
+    private Block.Id evictClean(LinkedHashMap<Block.Id, byte[]> queue) {
+        var iterator = queue.keySet().iterator();
+        while (iterator.hasNext()) {
+            var id = iterator.next();
+            if (!dirty.containsKey(id)) {
+                iterator.remove();
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private ReentrantLock stripe(Block.Id id) {
+        return stripes[Math.floorMod(id.hashCode(), NUMBER_OF_STRIPES)];
+    }
+
+    int cachedBlocks() {
+        lock.lock();
+        try {
+            return pinned.size() + in.size() + main.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int dirtyBlocks() {
+        lock.lock();
+        try {
+            return dirty.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void force() throws IOException {
+        flush();
+        device.force();
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void grow(long size) throws IOException {
+        device.grow(size);
+        this.size.accumulateAndGet(size, Math::max);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return device.isOpen();
+    }
+
+    @Override
+    public String toString() {
+        return "BlockCache{" +
+                "device=" + device +
+                ", capacity=" + capacity +
+                '}';
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                var _ = flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+        lock.lock();
+        try {
+            pinned.clear();
+            in.clear();
+            out.clear();
+            main.clear();
+        } finally {
+            lock.unlock();
+        }
+        device.close();
+    }
+
+    /**
+     * Thresholds of write-back mode.
+     *
+     * @param expireMillis the age of dirty block after which it's flushed
+     * @param dirtyRatio   the part of capacity which dirty blocks can take before flush
+     */
+    record WriteBack(long expireMillis, double dirtyRatio) {
+
+    }
+
+    private record Dirty(byte[] data, long since) {
+
+    }
+
+}
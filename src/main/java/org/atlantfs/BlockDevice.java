@@ -0,0 +1,111 @@
+package org.atlantfs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage of Atlant file system.
+ * <p>
+ * Device is a flat range of bytes addressed by absolute position, file system places blocks and inodes on it. Reads
+ * beyond the end of device return fewer bytes, writes beyond the end of device grow it.
+ * <p>
+ * Implementations:
+ * <ul>
+ *     <li>{@link AtlantFileChannel} - positional reads and writes of Atlant file</li>
+ *     <li>{@link AtlantMappedFile} - memory mapped Atlant file</li>
+ *     <li>{@link AtlantMemoryDevice} - off-heap memory, content is lost on close</li>
+ * </ul>
+ */
+interface BlockDevice extends AutoCloseable {
+
+    /**
+     * Read bytes starting from specified position until buffer is full or end of device is reached.
+     *
+     * @param buffer   the buffer to read into
+     * @param position the absolute position on device
+     * @return the number of bytes read, can be less than buffer remaining in case of end of device
+     * @throws IOException if I/O error occurs
+     */
+    int read(ByteBuffer buffer, long position) throws IOException;
+
+    /**
+     * Read bytes starting from specified position until buffer is full.
+     *
+     * @param buffer   the buffer to read into
+     * @param position the absolute position on device
+     * @return the number of bytes read
+     * @throws EOFException if end of device is reached before buffer is full
+     * @throws IOException  if I/O error occurs
+     */
+    default int readFully(ByteBuffer buffer, long position) throws IOException {
+        var expected = buffer.remaining();
+        var read = read(buffer, position);
+        if (read < expected) {
+            throw new EOFException("Unexpected EOF [device=" + this + ", position=" + position + ", expected=" + expected + ", read=" + read + "]");
+        }
+        return read;
+    }
+
+    /**
+     * Write all remaining bytes of buffer starting from specified position.
+     *
+     * @param buffer   the buffer to write from
+     * @param position the absolute position on device
+     * @return the number of bytes written
+     * @throws IOException if I/O error occurs
+     */
+    int write(ByteBuffer buffer, long position) throws IOException;
+
+    /**
+     * Check if device content can be accessed directly with {@link #slice(long, int)}.
+     *
+     * @return true if device is addressable
+     */
+    default boolean isAddressable() {
+        return false;
+    }
+
+    /**
+     * Get view of device region, reads and writes of view go directly to device without copying.
+     * <p>
+     * Device is grown to contain region. Region should not cross block boundaries.
+     *
+     * @param position the absolute position on device
+     * @param length   the length of region
+     * @return the byte buffer with zero position and limit equal to length
+     * @throws UnsupportedOperationException if device is not addressable
+     */
+    default ByteBuffer slice(long position, int length) {
+        throw new UnsupportedOperationException("Device [" + getClass().getSimpleName() + "] is not addressable");
+    }
+
+    /**
+     * Force all written content to storage.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    void force() throws IOException;
+
+    /**
+     * Get current size of device.
+     *
+     * @return the size in bytes
+     * @throws IOException if I/O error occurs
+     */
+    long size() throws IOException;
+
+    /**
+     * Grow device to specified size, do nothing if device is already bigger.
+     *
+     * @param size the new size in bytes
+     * @throws IOException if I/O error occurs
+     */
+    void grow(long size) throws IOException;
+
+    boolean isOpen();
+
+    @Override
+    void close() throws IOException;
+
+}
@@ -122,6 +122,13 @@ abstract class BlockMapping<B extends Block> implements Iblock {
 
     @Override
     public void delete() throws IOException {
+        freeBlocks();
+    }
+
+    /**
+     * Free all data and indirect blocks of mapping.
+     */
+    void freeBlocks() {
         var directIds = directs.stream()
                 .map(Block.Pointer::id)
                 .toList();
@@ -134,6 +141,11 @@ abstract class BlockMapping<B extends Block> implements Iblock {
         }
     }
 
+    @Override
+    public Block.Id goal() {
+        return blocksCount > 0 ? get(blocksCount - 1).id().plus(1) : null;
+    }
+
     abstract B readBlock(Block.Id id);
 
     IndirectBlock<B> readIndirectBlock(Block.Id blockId, int depth) {
@@ -8,6 +8,11 @@ import java.util.function.Function;
 class Cache<K, V> {
 
     static class NoOp<K, V> extends Cache<K, V> {
+        @Override
+        V get(K key) {
+            return null;
+        }
+
         @Override
         V computeIfAbsent(K key, Function<? super K, ? extends V> remappingFunction) {
             return remappingFunction.apply(key);
@@ -45,6 +50,11 @@ class Cache<K, V> {
         return (V) hardRefs[0];
     }
 
+    V get(K key) {
+        var ref = cache.get(key);
+        return ref != null ? ref.get() : null;
+    }
+
     void put(K key, V inode) {
         cache.put(key, new SoftReference<>(inode));
     }
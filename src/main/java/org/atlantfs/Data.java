@@ -19,13 +19,7 @@ class Data implements FileOperations {
 
     static Data read(ByteBuffer buffer, int length) {
         byte[] array = new byte[buffer.remaining()];
-        var i = 0;
-        while (buffer.hasRemaining()) {
-            array[i++] = buffer.get();
-            if (i == length) {
-                break;
-            }
-        }
+        buffer.get(array, 0, Math.min(length, array.length));
         return new Data(array, length);
     }
 
@@ -40,13 +34,11 @@ class Data implements FileOperations {
         if (targetLength > data.length) {
             throw new Data.NotEnoughSpaceException();
         }
-        var i = 0;
-        while (buffer.hasRemaining()) {
-            data[(int) (position + i++)] = buffer.get();
-        }
+        var written = buffer.remaining();
+        buffer.get(data, (int) position, written);
         length = (int) targetLength;
         checkInvariant();
-        return i;
+        return written;
     }
 
     @Override
@@ -55,9 +47,7 @@ class Data implements FileOperations {
             return 0;
         }
         var bound = Math.min(buffer.remaining(), data.length - (int) position);
-        for (int i = 0; i < bound; i++) {
-            buffer.put(data[(int) (position + i)]);
-        }
+        buffer.put(data, (int) position, bound);
         return bound;
     }
 
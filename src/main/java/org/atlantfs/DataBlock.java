@@ -22,24 +22,51 @@ class DataBlock implements Block, FileOperations {
     }
 
     static DataBlock init(AtlantFileSystem fileSystem) throws BitmapRegion.NotEnoughSpaceException {
-        return initInternal(fileSystem, Data.init(fileSystem.blockSize()));
+        return init(fileSystem, fileSystem.reserveBlock());
+    }
+
+    /**
+     * Create empty block in already reserved place.
+     *
+     * @param fileSystem the file system
+     * @param reserved   the reserved block id
+     * @return the data block
+     */
+    static DataBlock init(AtlantFileSystem fileSystem, Block.Id reserved) {
+        return initInternal(fileSystem, reserved, Data.init(fileSystem.blockSize()));
     }
 
     static DataBlock init(AtlantFileSystem fileSystem, byte[] bytes) throws BitmapRegion.NotEnoughSpaceException {
+        return init(fileSystem, fileSystem.reserveBlock(), bytes);
+    }
+
+    static DataBlock init(AtlantFileSystem fileSystem, Block.Id reserved, byte[] bytes) {
         assert bytes.length <= fileSystem.blockSize();
         var blockBytes = new byte[fileSystem.blockSize()];
         System.arraycopy(bytes, 0, blockBytes, 0, Math.min(bytes.length, blockBytes.length));
-        return initInternal(fileSystem, new Data(blockBytes, bytes.length));
+        return initInternal(fileSystem, reserved, new Data(blockBytes, bytes.length));
     }
 
     static DataBlock init(AtlantFileSystem fileSystem, Data data) throws BitmapRegion.NotEnoughSpaceException {
+        return init(fileSystem, data, null);
+    }
+
+    /**
+     * Create block with data in place reserved near goal.
+     *
+     * @param fileSystem the file system
+     * @param data       the data
+     * @param goal       the block to reserve near, null if there is no preference
+     * @return the data block
+     * @throws BitmapRegion.NotEnoughSpaceException if there is no free block
+     */
+    static DataBlock init(AtlantFileSystem fileSystem, Data data, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException {
         var bytes = new byte[fileSystem.blockSize()];
         System.arraycopy(data.bytes(), 0, bytes, 0, Math.min(bytes.length, data.bytes().length));
-        return initInternal(fileSystem, new Data(bytes, data.size()));
+        return initInternal(fileSystem, fileSystem.reserveBlockNear(goal), new Data(bytes, data.size()));
     }
 
-    private static DataBlock initInternal(AtlantFileSystem fileSystem, Data data) throws BitmapRegion.NotEnoughSpaceException {
-        var reserved = fileSystem.reserveBlock();
+    private static DataBlock initInternal(AtlantFileSystem fileSystem, Block.Id reserved, Data data) {
         var dataBlock = new DataBlock(fileSystem, reserved, data);
         dataBlock.dirty = true;
         return dataBlock;
@@ -50,13 +77,15 @@ class DataBlock implements Block, FileOperations {
         if (!isDirty()) {
             return;
         }
-        fileSystem.writeBlock(id, data::flush);
+        fileSystem.writeDataBlock(id, data::flush);
         dirty = false;
     }
 
     @Override
     public int write(long position, ByteBuffer buffer) throws BitmapRegion.NotEnoughSpaceException, Data.NotEnoughSpaceException {
-        return data.write(position, buffer);
+        var written = data.write(position, buffer);
+        dirty = true;
+        return written;
     }
 
     @Override
@@ -0,0 +1,134 @@
+package org.atlantfs;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Inodes of names resolved in directories, keyed by inode of directory and name.
+ * <p>
+ * Inspired by {@code dcache} of Linux. Names which were not found are kept too as negative entries with
+ * {@link Inode.Id#NULL} inode, so repeated checks of missing files don't scan directory. Entries are filled by
+ * {@link DirInode} under its read lock and updated by every change of directory, so cache is never stale.
+ * <p>
+ * When cache is full, run of entries starting at random position of map is evicted, so hits don't contend on shared
+ * order of entries. Order of map is fixed by hashes of keys, without random start the same names would be evicted
+ * every time.
+ * <p>
+ * Thread safe.
+ */
+final class DentryCache {
+
+    private static final Logger log = Logger.getLogger(DentryCache.class.getName());
+
+    private final Map<Key, Inode.Id> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final AtlantStatistics statistics;
+
+    DentryCache(int maxSize, AtlantStatistics statistics) {
+        this.maxSize = maxSize;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Find cached inode of name.
+     *
+     * @param dir  the inode of directory
+     * @param name the name of entry
+     * @return the inode, {@link Inode.Id#NULL} if name is known to be missing or null if name is not cached
+     */
+    Inode.Id get(Inode.Id dir, String name) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        var result = entries.get(new Key(dir, name));
+        if (result == null) {
+            statistics.incrementDentryMisses();
+        } else {
+            statistics.incrementDentryHits();
+        }
+        return result;
+    }
+
+    /**
+     * Remember inode of name, should be called under lock of directory.
+     *
+     * @param dir   the inode of directory
+     * @param name  the name of entry
+     * @param inode the inode of entry, {@link Inode.Id#NULL} if there is no such entry
+     */
+    void put(Inode.Id dir, String name, Inode.Id inode) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (entries.put(new Key(dir, name), inode) == null && entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Remember that directory has no entry with name, should be called under lock of directory.
+     *
+     * @param dir  the inode of directory
+     * @param name the name of entry
+     */
+    void putNegative(Inode.Id dir, String name) {
+        put(dir, name, Inode.Id.NULL);
+    }
+
+    /**
+     * Forget that name is missing, other entries of name are kept.
+     *
+     * @param dir  the inode of directory
+     * @param name the name of entry
+     */
+    void removeNegative(Inode.Id dir, String name) {
+        entries.remove(new Key(dir, name), Inode.Id.NULL);
+    }
+
+    /**
+     * Forget name, should be called under write lock of directory.
+     *
+     * @param dir  the inode of directory
+     * @param name the name of entry
+     */
+    void remove(Inode.Id dir, String name) {
+        entries.remove(new Key(dir, name));
+    }
+
+    private void evict() {
+        var size = entries.size();
+        var excess = size - maxSize + maxSize / 16;
+        var start = ThreadLocalRandom.current().nextInt(size);
+        log.finer(() -> "Evicting [excess=" + excess + ", start=" + start + "] dentries...");
+        Iterator<Key> iterator = entries.keySet().iterator();
+        for (int i = 0; i < start && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        var evicted = evict(iterator, excess);
+        if (evicted < excess) {
+            // Wrap around to the beginning of map
+            evict(entries.keySet().iterator(), excess - evicted);
+        }
+    }
+
+    private static int evict(Iterator<Key> iterator, int count) {
+        var evicted = 0;
+        while (evicted < count && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    record Key(Inode.Id dir, String name) {
+    }
+
+}
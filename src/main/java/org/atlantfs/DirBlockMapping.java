@@ -5,12 +5,23 @@ import java.nio.ByteBuffer;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.NoSuchFileException;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 class DirBlockMapping extends BlockMapping<DirListBlock> implements DirIblock {
 
     private static final Logger log = Logger.getLogger(DirBlockMapping.class.getName());
 
+    /**
+     * Largest free space of every block, new entry is added directly to the first block where it fits.
+     * <p>
+     * Built on first add by reading all blocks once, kept in memory only. Values are only hints when entries are added
+     * concurrently, block is checked under its lock.
+     */
+    private volatile AtomicIntegerArray freeSpace;
+
     DirBlockMapping(AtlantFileSystem inode) {
         super(inode);
     }
@@ -19,9 +30,9 @@ class DirBlockMapping extends BlockMapping<DirListBlock> implements DirIblock {
         return BlockMapping.read(inode, buffer, DirBlockMapping::new);
     }
 
-    static DirBlockMapping init(AtlantFileSystem inode, DirList dirList) throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
+    static DirBlockMapping init(AtlantFileSystem inode, DirList dirList, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
         var result = new DirBlockMapping(inode);
-        result.add(DirListBlock.init(inode, dirList));
+        result.add(DirListBlock.init(inode, dirList, goal));
         result.dirty = true;
         return result;
     }
@@ -55,31 +66,100 @@ class DirBlockMapping extends BlockMapping<DirListBlock> implements DirIblock {
         };
     }
 
+    /**
+     * List block with number of cursor, entries never move between blocks, so block number is stable cursor.
+     */
+    @Override
+    public long list(long cursor, Predicate<? super DirEntry> filter, Consumer<DirEntry> consumer) {
+        if (cursor >= blocksCount) {
+            return END;
+        }
+        get((int) cursor).copyEntries(filter, consumer);
+        return cursor + 1;
+    }
+
     @Override
     public DirEntry add(Inode.Id id, FileType fileType, String name) throws BitmapRegion.NotEnoughSpaceException, DirList.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
-        for (int i = 0; i < blocksCount(); i++) {
-            try {
-                var entryList = get(i);
-                var add = entryList.add(id, fileType, name);
-                entryList.flush();
-                return add;
-            } catch (DirList.NotEnoughSpaceException _) {
-                // continue
-            }
+        var result = addConcurrently(id, fileType, name);
+        if (result != null) {
+            return result;
         }
-        var entryList = DirListBlock.init(fileSystem);
+        log.finer(() -> "No block has enough space for [name=" + name + "], adding new block...");
+        var entryList = DirListBlock.init(fileSystem, goal());
         var add = entryList.add(id, fileType, name);
         add(entryList);
         entryList.flush();
+        var freeSpace = freeSpace();
+        var grown = new AtomicIntegerArray(freeSpace.length() + 1);
+        for (int i = 0; i < freeSpace.length(); i++) {
+            grown.set(i, freeSpace.get(i));
+        }
+        grown.set(freeSpace.length(), entryList.largestFreeSpace());
+        this.freeSpace = grown;
         return add;
     }
 
+    @Override
+    public DirEntry addConcurrently(Inode.Id id, FileType fileType, String name) {
+        var freeSpace = freeSpace();
+        var required = DirEntry.aligned(name);
+        for (int i = 0; i < freeSpace.length(); i++) {
+            if (freeSpace.get(i) >= required) {
+                var entryList = get(i);
+                try {
+                    var add = entryList.add(id, fileType, name);
+                    entryList.flush();
+                    return add;
+                } catch (DirList.NotEnoughSpaceException _) {
+                    log.finer(() -> "Block was filled concurrently, trying next one...");
+                } finally {
+                    freeSpace.set(i, entryList.largestFreeSpace());
+                }
+            }
+        }
+        return null;
+    }
+
+    private AtomicIntegerArray freeSpace() {
+        var result = freeSpace;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (freeSpace == null) {
+                log.fine(() -> "Building free space map of [blocksCount=" + blocksCount + "] blocks...");
+                var built = new AtomicIntegerArray(blocksCount);
+                for (int i = 0; i < blocksCount; i++) {
+                    built.set(i, get(i).largestFreeSpace());
+                }
+                freeSpace = built;
+            }
+            return freeSpace;
+        }
+    }
+
+    /**
+     * Largest free space of block as kept by free space map.
+     *
+     * @param blockNumber the number of block
+     * @return the number of bytes
+     */
+    int largestFreeSpace(int blockNumber) {
+        return freeSpace().get(blockNumber);
+    }
+
+    private void updateFreeSpace(int blockNumber, DirListBlock entryList) {
+        var result = freeSpace;
+        if (result != null) {
+            result.set(blockNumber, entryList.largestFreeSpace());
+        }
+    }
+
     @Override
     public DirEntry get(String name) throws NoSuchFileException {
         for (int i = 0; i < blocksCount; i++) {
             try {
-                var entryList = get(i);
-                return entryList.dirList().get(name);
+                return get(i).get(name);
             } catch (NoSuchFileException _) {
                 // continue
             }
@@ -92,8 +172,9 @@ class DirBlockMapping extends BlockMapping<DirListBlock> implements DirIblock {
         for (int i = 0; i < blocksCount; i++) {
             try {
                 var entryList = get(i);
-                entryList.dirList().rename(name, newName);
+                entryList.rename(name, newName);
                 entryList.flush();
+                updateFreeSpace(i, entryList);
                 return;
             } catch (NoSuchFileException _) {
                 // continue
@@ -107,8 +188,9 @@ class DirBlockMapping extends BlockMapping<DirListBlock> implements DirIblock {
         for (int i = 0; i < blocksCount; i++) {
             try {
                 var entryList = get(i);
-                entryList.dirList().remove(name);
+                entryList.remove(name);
                 entryList.flush();
+                updateFreeSpace(i, entryList);
                 return;
             } catch (NoSuchFileException _) {
                 // continue
@@ -2,6 +2,8 @@ package org.atlantfs;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +29,9 @@ import java.util.logging.Logger;
  * </ol>
  * <p>
  * Max length of entry is {@code 4 + 2 + 1 + 1 + 255 = 263}.
+ * <p>
+ * Name is kept as UTF-8 bytes, entry read from array-backed buffer refers to bytes of that array without copy. Name is
+ * decoded to string only when it is requested, lookups compare bytes with encoded key.
  *
  * @see <a href="https://blogs.oracle.com/linux/post/understanding-ext4-disk-layout-part-2">Understanding Ext4 Disk Layout, Part 2</a>
  * @see <a href="https://blogs.oracle.com/linux/post/space-management-with-large-directories-in-ext4">Space Management With Large Directories in Ext4</a>
@@ -59,6 +64,8 @@ class DirEntry {
      */
     static final String DEFAULT_NAME = "";
 
+    private static final byte[] EMPTY = new byte[0];
+
     /**
      * Position in block.
      * <p>
@@ -82,9 +89,33 @@ class DirEntry {
     private FileType fileType;
 
     /**
-     * File name.
+     * Array holding UTF-8 bytes of file name, can be shared with other entries of the same block.
+     */
+    private byte[] nameBytes;
+
+    /**
+     * Offset of file name in array.
+     */
+    private int nameOffset;
+
+    /**
+     * Length of file name in bytes.
+     */
+    private int nameLength;
+
+    /**
+     * File name, decoded on first request.
+     * <p>
+     * Value is not persisted.
+     */
+    private transient String name;
+
+    /**
+     * Hash of file name bytes, zero if not calculated yet.
+     * <p>
+     * Value is not persisted.
      */
-    private String name;
+    private transient int nameHash;
 
     /**
      * Flag indicating that Dir entry should be written on disk.
@@ -93,15 +124,22 @@ class DirEntry {
      */
     private transient boolean dirty;
 
-    private DirEntry(int position, short length, Inode.Id inode, FileType fileType, String name) {
+    private DirEntry(int position, short length, Inode.Id inode, FileType fileType, byte[] nameBytes, int nameOffset, int nameLength) {
         this.inode = inode;
         this.length = length;
         this.fileType = fileType;
-        this.name = name;
+        this.nameBytes = nameBytes;
+        this.nameOffset = nameOffset;
+        this.nameLength = nameLength;
         this.position = position;
         checkInvariant();
     }
 
+    private DirEntry(int position, short length, Inode.Id inode, FileType fileType, String name) {
+        this(position, length, inode, fileType, encode(name), 0, encodedLength(name));
+        this.name = name;
+    }
+
     static DirEntry create(int position, Inode.Id inode, FileType fileType, String name) {
         return new DirEntry(position, aligned(name), inode, fileType, name);
     }
@@ -140,19 +178,27 @@ class DirEntry {
                 throw new IllegalArgumentException("Too small Dir entry [length=" + length + "]");
             }
             FileType fileType;
-            String name;
+            byte[] nameBytes = EMPTY;
+            var nameOffset = 0;
+            var nameLength = 0;
             if (inode.equals(Inode.Id.NULL)) {
                 fileType = FileType.UNKNOWN;
-                name = DEFAULT_NAME;
             } else {
-                var nameLength = buffer.get();
+                nameLength = Byte.toUnsignedInt(buffer.get());
                 fileType = FileType.read(buffer);
-                var chars = new byte[nameLength];
-                buffer.get(chars);
-                name = new String(chars);
+                if (nameLength > length - ENTRY_MIN_LENGTH) {
+                    throw new IllegalArgumentException("Name [nameLength=" + nameLength + "] doesn't fit into Dir entry [length=" + length + "]");
+                }
+                if (buffer.hasArray()) {
+                    nameBytes = buffer.array();
+                    nameOffset = buffer.arrayOffset() + buffer.position();
+                } else {
+                    nameBytes = new byte[nameLength];
+                    buffer.get(buffer.position(), nameBytes);
+                }
             }
             buffer.position(initial + length);
-            var entry = new DirEntry(initial, length, inode, fileType, name);
+            var entry = new DirEntry(initial, length, inode, fileType, nameBytes, nameOffset, nameLength);
             log.finer(() -> "Successfully read Dir entry [entry=" + entry + "]");
             return entry;
         } catch (Exception e) {
@@ -166,22 +212,23 @@ class DirEntry {
         log.fine(() -> "Writing Dir entry [position=" + initial + "]...");
         buffer.putInt(inode.value());
         buffer.putShort(length);
-        buffer.put((byte) name.length());
+        buffer.put((byte) nameLength);
         fileType.write(buffer);
-        buffer.put(name.getBytes());
+        buffer.put(nameBytes, nameOffset, nameLength);
         buffer.position(initial + length);
         log.finer(() -> "Successfully written Dir entry [entry=" + this + "]");
         dirty = false;
     }
 
     boolean rename(String newName) {
-        if (newName.length() > NAME_MAX_LENGTH) {
+        var newNameLength = encodedLength(newName);
+        if (newNameLength > NAME_MAX_LENGTH) {
             throw new IllegalArgumentException("Name is too long");
         }
-        if (newName.length() > name.length() + padding()) {
+        if (newNameLength > nameLength + padding()) {
             return false;
         }
-        name = newName;
+        setName(newName);
         dirty = true;
         checkInvariant();
         return true;
@@ -195,7 +242,7 @@ class DirEntry {
             throw new IllegalArgumentException("Not enough space to split");
         }
         var oldLength = length;
-        length = aligned(name);
+        length = aligned((short) nameLength);
         var another = new DirEntry(position + length, (short) (oldLength - length), anotherInode, anotherFileType, anotherName);
         another.dirty = true;
         dirty = true;
@@ -212,7 +259,7 @@ class DirEntry {
      * @see #canBeSplit(short)
      */
     boolean canBeSplit(String anotherName) {
-        return canBeSplit((short) anotherName.length());
+        return canBeSplit((short) encodedLength(anotherName));
     }
 
     /**
@@ -223,7 +270,7 @@ class DirEntry {
      * @see #canBeSplit(String)
      */
     boolean canBeSplit(short anotherNameLength) {
-        return length - aligned(name) >= aligned(anotherNameLength);
+        return length - aligned((short) nameLength) >= aligned(anotherNameLength);
     }
 
     /**
@@ -257,11 +304,11 @@ class DirEntry {
             throw new IllegalStateException("Dir entry already initialized");
         }
         if (length < aligned(anotherName)) {
-            throw new DirList.NotEnoughSpaceException("Directory name [name=" + name + "] doesn't fit into [" + aligned(name) + "] bytes");
+            throw new DirList.NotEnoughSpaceException("Directory name [name=" + anotherName + "] doesn't fit into [" + length + "] bytes");
         }
         inode = anotherInode;
         fileType = anotherFileType;
-        name = anotherName;
+        setName(anotherName);
         dirty = true;
         checkInvariant();
     }
@@ -278,7 +325,7 @@ class DirEntry {
             return;
         }
         inode = Inode.Id.NULL;
-        name = DEFAULT_NAME;
+        setName(DEFAULT_NAME);
         dirty = true;
         checkInvariant();
     }
@@ -289,19 +336,115 @@ class DirEntry {
      * @return padding of the Dir entry
      */
     short padding() {
-        return (short) (length - ENTRY_MIN_LENGTH - name.length());
+        return (short) (length - ENTRY_MIN_LENGTH - nameLength);
+    }
+
+    private void setName(String newName) {
+        nameBytes = encode(newName);
+        nameOffset = 0;
+        nameLength = nameBytes.length;
+        name = newName;
+        nameHash = 0;
+    }
+
+    /**
+     * Match name by its bytes without decoding it.
+     *
+     * @param matcher the matcher
+     * @return true if name matches
+     */
+    boolean nameMatches(AtlantPathMatcher matcher) {
+        return matcher.matches(nameBytes, nameOffset, nameLength);
+    }
+
+    /**
+     * Compare name with encoded key without decoding name.
+     *
+     * @param key the UTF-8 bytes of name
+     * @return true if name has the same bytes
+     */
+    boolean nameEquals(byte[] key) {
+        return Arrays.equals(nameBytes, nameOffset, nameOffset + nameLength, key, 0, key.length);
+    }
+
+    /**
+     * Hash of name bytes, the same as {@link #hash(byte[])} of encoded name.
+     *
+     * @return the hash
+     */
+    int nameHash() {
+        var result = nameHash;
+        if (result == 0) {
+            result = hash(nameBytes, nameOffset, nameLength);
+            nameHash = result;
+        }
+        return result;
+    }
+
+    static int hash(byte[] bytes) {
+        return hash(bytes, 0, bytes.length);
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        var result = 1;
+        for (int i = offset; i < offset + length; i++) {
+            result = 31 * result + bytes[i];
+        }
+        return result;
+    }
+
+    static byte[] encode(String name) {
+        return name.isEmpty() ? EMPTY : name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Calculate length of name in UTF-8 without encoding it.
+     *
+     * @param name the name
+     * @return the number of bytes
+     */
+    static int encodedLength(String name) {
+        var result = 0;
+        for (int i = 0; i < name.length(); i++) {
+            var c = name.charAt(i);
+            if (c < 0x80) {
+                result += 1;
+            } else if (c < 0x800) {
+                result += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < name.length() && Character.isLowSurrogate(name.charAt(i + 1))) {
+                result += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                result += 1; // Malformed, encoded as replacement byte
+            } else {
+                result += 3;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy of entry which doesn't change together with entry, name bytes are shared as they are never changed in place.
+     *
+     * @return the copy
+     */
+    DirEntry copy() {
+        var result = new DirEntry(position, length, inode, fileType, nameBytes, nameOffset, nameLength);
+        result.name = name;
+        result.nameHash = nameHash;
+        return result;
     }
 
     void checkInvariant() {
-        assert length >= aligned(name) : "Length [" + length + "] should be not less than actual data length [" + ENTRY_MIN_LENGTH + " + " + name.length() + "]";
+        assert length >= aligned((short) nameLength) : "Length [" + length + "] should be not less than actual data length [" + ENTRY_MIN_LENGTH + " + " + nameLength + "]";
         assert length % ALIGNMENT == 0 : "Length [" + length + "] should be aligned by [" + ALIGNMENT + "]";
         assert fileType != null : "File type should be specified";
-        assert name.length() <= NAME_MAX_LENGTH : "Name should be [" + NAME_MAX_LENGTH + "] symbols max";
-        assert inode != Inode.Id.NULL || name.isEmpty() : "Name should be empty for empty record";
+        assert nameLength <= NAME_MAX_LENGTH : "Name should be [" + NAME_MAX_LENGTH + "] bytes max";
+        assert !inode.equals(Inode.Id.NULL) || nameLength == 0 : "Name should be empty for empty record";
     }
 
     static short aligned(String name) {
-        return aligned((short) name.length());
+        return aligned((short) encodedLength(name));
     }
 
     static short aligned(short nameSize) {
@@ -317,7 +460,16 @@ class DirEntry {
     }
 
     String getName() {
-        return name;
+        var result = name;
+        if (result == null) {
+            result = new String(nameBytes, nameOffset, nameLength, StandardCharsets.UTF_8);
+            name = result;
+        }
+        return result;
+    }
+
+    int nameLength() {
+        return nameLength;
     }
 
     Inode.Id getInode() {
@@ -346,7 +498,7 @@ class DirEntry {
                 "inode=" + inode +
                 ", length=" + length +
                 ", fileType=" + fileType +
-                ", name='" + name + '\'' +
+                ", name='" + getName() + '\'' +
                 ", position=" + position +
                 ", dirty=" + dirty +
                 '}';
@@ -1,4 +1,34 @@
 package org.atlantfs;
 
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
 interface DirIblock extends Iblock, DirOperations {
+
+    /**
+     * Cursor returned by {@link #list(long, Predicate, Consumer)} when all entries were listed.
+     */
+    long END = -1;
+
+    /**
+     * List part of directory at cursor, usually one block, should be called under read lock of inode. Listing starts
+     * with cursor 0 and continues with returned cursor, so entries which were not changed meanwhile are listed once.
+     *
+     * @param cursor   the cursor returned by previous call or 0
+     * @param filter   the filter of entries, applied before copying
+     * @param consumer the consumer of copies of entries
+     * @return the cursor of next part or {@link #END}
+     */
+    long list(long cursor, Predicate<? super DirEntry> filter, Consumer<DirEntry> consumer);
+
+    /**
+     * Add entry into one of existing blocks, locking only the block being changed, so entries can be added
+     * concurrently under read lock of inode. Iblock itself is not changed.
+     *
+     * @return the entry or null if iblock has to be changed to fit entry, then it should be added under write lock
+     */
+    default DirEntry addConcurrently(Inode.Id id, FileType fileType, String name) {
+        return null;
+    }
+
 }
@@ -1,13 +1,44 @@
 package org.atlantfs;
 
+import java.io.Closeable;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
+/**
+ * Directory inode.
+ * <p>
+ * Entries which fit into existing blocks are added under read lock of inode and lock of block only, so threads creating
+ * files in the same directory don't wait for each other. Lookups run concurrently with such adds. Adds which change
+ * iblock, renames and removes take write lock of inode. Listing holds no lock between blocks, see {@link Listing}.
+ */
 class DirInode extends Inode<DirIblock> implements DirOperations {
 
     private static final Logger log = Logger.getLogger(DirInode.class.getName());
 
+    /**
+     * Names of large directory, built on first lookup.
+     */
+    private volatile NameFilter nameFilter;
+
+    /**
+     * Number of entries added under read lock, lookup doesn't cache missing name if entries were added meanwhile.
+     */
+    private final AtomicLong concurrentAdds = new AtomicLong();
+
+    /**
+     * Number of listings which are not closed yet, upgrade to hash tree is postponed while there are any.
+     */
+    private final AtomicInteger openListings = new AtomicInteger();
+
     DirInode(AtlantFileSystem fileSystem, Id id, DirIblock iblock) {
         super(fileSystem, id, iblock);
         checkInvariant();
@@ -18,27 +49,53 @@ class DirInode extends Inode<DirIblock> implements DirOperations {
         return new DirInode(fileSystem, id, dirEntryListIblock);
     }
 
+    /**
+     * Lazy listing of copies of entries, it should be closed unless iterated to the end.
+     */
+    @Override
+    public Listing iterator() {
+        return new Listing(_ -> true);
+    }
+
+    /**
+     * Lazy listing of copies of entries accepted by filter, entries are filtered under lock of block before copying.
+     *
+     * @param filter the filter of entries
+     * @return the listing, it should be closed unless iterated to the end
+     */
+    Listing iterator(Predicate<? super DirEntry> filter) {
+        return new Listing(filter);
+    }
+
     @Override
-    public Iterator<DirEntry> iterator() {
+    public DirEntry add(Inode.Id id, FileType fileType, String name) throws NotEnoughSpaceException {
         try {
             beginRead();
-            return iblock.iterator();
+            var result = iblock.addConcurrently(id, fileType, name);
+            if (result != null) {
+                nameAdded(name);
+                concurrentAdds.incrementAndGet();
+                fileSystem.dentryCache().put(this.id, name, id);
+                return result;
+            }
         } finally {
             endRead();
         }
-    }
-
-    @Override
-    public DirEntry add(Inode.Id id, FileType fileType, String name) throws NotEnoughSpaceException {
         try {
             beginWrite();
             var result = iblock.add(id, fileType, name);
+            upgradeLargeBlockMapping();
             flush();
+            fileSystem.dentryCache().put(this.id, name, id);
+            nameAdded(name);
             return result;
         } catch (DirList.NotEnoughSpaceException e) {
             upgradeInlineDirList();
             var result = iblock.add(id, fileType, name);
+            upgradeLargeBlockMapping();
             flush();
+            fileSystem.dentryCache().put(this.id, name, id);
+            nameAdded(name);
             return result;
         } finally {
             endWrite();
@@ -49,7 +106,42 @@ class DirInode extends Inode<DirIblock> implements DirOperations {
     public DirEntry get(String name) throws NoSuchFileException {
         try {
             beginRead();
-            return iblock.get(name);
+            return find(name);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Find inode of entry, cached names are resolved without reading directory.
+     *
+     * @param name the name of entry
+     * @return the inode of entry
+     * @throws NoSuchFileException if there is no entry with such name
+     */
+    Inode.Id lookup(String name) throws NoSuchFileException {
+        var dentryCache = fileSystem.dentryCache();
+        var cached = dentryCache.get(id, name);
+        if (cached != null) {
+            if (cached.equals(Inode.Id.NULL)) {
+                throw new NoSuchFileException("File [" + name + "] was not found");
+            }
+            return cached;
+        }
+        try {
+            beginRead();
+            var adds = concurrentAdds.get();
+            try {
+                var result = find(name).getInode();
+                dentryCache.put(id, name, result);
+                return result;
+            } catch (NoSuchFileException e) {
+                dentryCache.putNegative(id, name);
+                if (concurrentAdds.get() != adds) {
+                    dentryCache.removeNegative(id, name);
+                }
+                throw e;
+            }
         } finally {
             endRead();
         }
@@ -60,11 +152,21 @@ class DirInode extends Inode<DirIblock> implements DirOperations {
         try {
             beginWrite();
             iblock.rename(name, newName);
+            upgradeLargeBlockMapping();
             flush();
+            fileSystem.dentryCache().putNegative(id, name);
+            fileSystem.dentryCache().remove(id, newName);
+            nameAdded(newName);
+            nameRemoved();
         } catch (DirList.NotEnoughSpaceException e) {
             upgradeInlineDirList();
             iblock.rename(name, newName);
+            upgradeLargeBlockMapping();
             flush();
+            fileSystem.dentryCache().putNegative(id, name);
+            fileSystem.dentryCache().remove(id, newName);
+            nameAdded(newName);
+            nameRemoved();
         } finally {
             endWrite();
         }
@@ -76,18 +178,172 @@ class DirInode extends Inode<DirIblock> implements DirOperations {
             beginWrite();
             iblock.remove(name);
             flush();
+            fileSystem.dentryCache().putNegative(id, name);
+            nameRemoved();
         } finally {
             endWrite();
         }
     }
 
+    /**
+     * Find entry, names missing from filter are not searched in directory, should be called under lock.
+     */
+    private DirEntry find(String name) throws NoSuchFileException {
+        var filter = nameFilter();
+        if (filter != null && !filter.mightContain(name)) {
+            fileSystem.statistics().incrementNameFilterNegatives();
+            throw new NoSuchFileException("File [" + name + "] was not found");
+        }
+        try {
+            return iblock.get(name);
+        } catch (NoSuchFileException e) {
+            if (filter != null) {
+                fileSystem.statistics().incrementNameFilterFalsePositives();
+            }
+            throw e;
+        }
+    }
+
+    private NameFilter nameFilter() {
+        var threshold = fileSystem.dirNameFilterBlocks();
+        if (threshold <= 0 || iblock.blocksCount() < threshold) {
+            return null;
+        }
+        var result = nameFilter;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (nameFilter == null) {
+                nameFilter = NameFilter.build(iterator());
+                log.fine(() -> "Built name filter of inode [id=" + id + ", filter=" + nameFilter + "]");
+            }
+            return nameFilter;
+        }
+    }
+
+    /**
+     * Add name into filter, synchronized with building of filter, so name added concurrently is never missed.
+     */
+    private synchronized void nameAdded(String name) {
+        var filter = nameFilter;
+        if (filter != null) {
+            filter.add(name);
+            if (filter.isStale()) {
+                nameFilter = null;
+            }
+        }
+    }
+
+    private synchronized void nameRemoved() {
+        var filter = nameFilter;
+        if (filter != null) {
+            filter.remove();
+            if (filter.isStale()) {
+                nameFilter = null;
+            }
+        }
+    }
+
     private void upgradeInlineDirList() throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
         log.fine(() -> "Upgrading inode [id=" + id + "] from inline dir list to block mapping...");
         assert iblock instanceof DirListIblock : "Only DIR_INLINE_LIST can be upgraded";
         var dirEntryList = (DirListIblock) iblock;
-        iblock = DirBlockMapping.init(fileSystem, dirEntryList.dirList());
+        iblock = DirBlockMapping.init(fileSystem, dirEntryList.dirList(), goal());
+        dirty = true;
+        checkInvariant();
+    }
+
+    private void upgradeLargeBlockMapping() throws BitmapRegion.NotEnoughSpaceException, DirTree.NotEnoughSpaceException {
+        var threshold = fileSystem.dirHashTreeBlocks();
+        if (!(iblock instanceof DirBlockMapping blockMapping) || threshold <= 0 || blockMapping.blocksCount() <= threshold) {
+            return;
+        }
+        if (openListings.get() > 0) {
+            log.finer(() -> "Postponing upgrade of inode [id=" + id + "] to hash tree until listings are closed...");
+            return;
+        }
+        log.fine(() -> "Upgrading inode [id=" + id + "] from block mapping to hash tree...");
+        var dirTree = DirTree.init(fileSystem, goal());
+        for (var iterator = blockMapping.iterator(); iterator.hasNext(); ) {
+            var entry = iterator.next();
+            if (!entry.isEmpty()) {
+                dirTree.add(entry.getInode(), entry.getFileType(), entry.getName());
+            }
+        }
+        blockMapping.freeBlocks();
+        iblock = dirTree;
         dirty = true;
         checkInvariant();
     }
 
+    /**
+     * Listing of directory which reads one block at a time under read lock of inode and lock of block, then returns
+     * copies of its entries without holding any lock, so slow consumer doesn't block changes of directory.
+     * <p>
+     * Entries which are not added or removed while listing are returned exactly once, entries added or removed meanwhile
+     * may be returned or not. Upgrade to hash tree would move entries already returned, so it is postponed until all
+     * listings are closed or iterated to the end.
+     */
+    final class Listing implements Iterator<DirEntry>, Closeable {
+
+        private final Queue<DirEntry> entries = new ArrayDeque<>();
+        private final Predicate<? super DirEntry> filter;
+        private long cursor = 0;
+        private boolean closed;
+
+        private Listing(Predicate<? super DirEntry> filter) {
+            this.filter = filter;
+            openListings.incrementAndGet();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (entries.isEmpty() && !closed) {
+                if (cursor == DirIblock.END) {
+                    close();
+                    break;
+                }
+                try {
+                    beginRead();
+                    cursor = iblock.list(cursor, filter, entries::add);
+                } finally {
+                    endRead();
+                }
+            }
+            return !entries.isEmpty();
+        }
+
+        @Override
+        public DirEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return entries.remove();
+        }
+
+        /**
+         * Remaining entries of current block or entries of the next block which has any.
+         *
+         * @return the entries, empty when listing is over
+         */
+        List<DirEntry> nextBlock() {
+            if (!hasNext()) {
+                return List.of();
+            }
+            var result = new ArrayList<>(entries);
+            entries.clear();
+            return result;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                openListings.decrementAndGet();
+            }
+        }
+
+    }
+
 }
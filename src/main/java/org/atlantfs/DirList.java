@@ -6,12 +6,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 
 /**
  * Represent a list of {@link DirEntry}.
+ * <p>
+ * Entries are indexed by name and entries with free space after their name are indexed by size of that space, so
+ * lookup and insert don't scan all entries of block.
  */
 final class DirList implements DirOperations {
 
@@ -29,44 +34,60 @@ final class DirList implements DirOperations {
      */
     private final List<DirEntry> entries;
 
+    /**
+     * Non-empty entries by name.
+     */
+    private final NameIndex names = new NameIndex();
+
+    /**
+     * Entries which can be split by key packed as free space in high and position in low half of long.
+     */
+    private final TreeMap<Long, DirEntry> freeSpace = new TreeMap<>();
+
     DirList(int length, List<DirEntry> entries) {
         this.length = length;
         this.entries = entries;
+        entries.forEach(this::track);
         checkInvariant();
     }
 
     DirList(int length) {
-        List<DirEntry> entries = new ArrayList<>();
-        entries.add(DirEntry.empty((short) length));
-        this.length = length;
-        this.entries = entries;
-        checkInvariant();
+        this(length, new ArrayList<>(List.of(DirEntry.empty((short) length))));
     }
 
     static DirList init(int length) {
         return new DirList(length);
     }
 
+    /**
+     * Read entries of list, bytes are copied once and names of entries refer to the copy.
+     *
+     * @param buffer the buffer with all bytes of list
+     * @return the list
+     */
     static DirList read(ByteBuffer buffer) {
         List<DirEntry> entries = new ArrayList<>();
         var length = buffer.remaining();
-        while (buffer.hasRemaining()) {
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        var source = ByteBuffer.wrap(bytes);
+        while (source.hasRemaining()) {
             try {
-                entries.add(DirEntry.read(buffer));
+                entries.add(DirEntry.read(source));
             } catch (Exception e) {
-                var position = buffer.position();
-                var remaining = (short) buffer.remaining();
+                var position = source.position();
+                var remaining = (short) source.remaining();
                 log.log(Level.SEVERE, "Failed to read Dir entry on position [" + position + "]", e);
                 if (entries.isEmpty()) {
                     entries.add(DirEntry.empty(remaining));
                 } else {
                     entries.getLast().growAfter(remaining);
                 }
-                buffer.position(position + remaining);
+                source.position(position + remaining);
                 break;
             }
         }
-        assert !buffer.hasRemaining();
+        assert !source.hasRemaining();
         var block = new DirList(length, entries);
         block.checkInvariant();
         return block;
@@ -78,9 +99,26 @@ final class DirList implements DirOperations {
         assert !buffer.hasRemaining();
     }
 
+    /**
+     * Iterator over entries of list without copying them, list should not be changed while iterating.
+     */
     @Override
     public Iterator<DirEntry> iterator() {
-        return isEmpty() ? Collections.emptyIterator() : new ArrayList<>(entries).iterator();
+        return isEmpty() ? Collections.emptyIterator() : Collections.unmodifiableList(entries).iterator();
+    }
+
+    /**
+     * Pass copies of non-empty entries accepted by filter to consumer, copies don't change together with list.
+     *
+     * @param filter   the filter of entries, applied before copying
+     * @param consumer the consumer of copies
+     */
+    void copyEntries(Predicate<? super DirEntry> filter, Consumer<DirEntry> consumer) {
+        for (var entry : entries) {
+            if (!entry.isEmpty() && filter.test(entry)) {
+                consumer.accept(entry.copy());
+            }
+        }
     }
 
     @Override
@@ -91,9 +129,13 @@ final class DirList implements DirOperations {
             newEntry.init(id, fileType, name);
         } else {
             var index = findByAvailableSpace(name);
-            newEntry = entries.get(index).split(id, fileType, name);
+            var entry = entries.get(index);
+            untrack(entry);
+            newEntry = entry.split(id, fileType, name);
+            track(entry);
             entries.add(index + 1, newEntry);
         }
+        track(newEntry);
         checkInvariant();
         return newEntry;
     }
@@ -109,7 +151,9 @@ final class DirList implements DirOperations {
         var index = findByName(name);
         log.finer(() -> "Found entry to rename [index=" + index + "]");
         var entry = entries.get(index);
+        untrack(entry);
         boolean renamed = entry.rename(newName);
+        track(entry);
         if (renamed) {
             return;
         }
@@ -132,6 +176,7 @@ final class DirList implements DirOperations {
     void delete(int index) {
         log.fine(() -> "Deleting entry [index=" + index + "]...");
         var entry = entries.get(index);
+        untrack(entry);
         if (entries.size() == 1) {
             log.finer(() -> "Marking entry as empty...");
             entry.delete();
@@ -140,10 +185,16 @@ final class DirList implements DirOperations {
         }
         if (index > 0) {
             log.finer(() -> "Increasing size of previous entry...");
-            entries.get(index - 1).growAfter(entry.getLength());
+            var previous = entries.get(index - 1);
+            untrack(previous);
+            previous.growAfter(entry.getLength());
+            track(previous);
         } else {
             log.finer(() -> "Increasing size of next entry...");
-            entries.get(index + 1).growBefore(entry.getLength());
+            var next = entries.get(index + 1);
+            untrack(next);
+            next.growBefore(entry.getLength());
+            track(next);
         }
         entries.remove(index);
         checkInvariant();
@@ -151,27 +202,103 @@ final class DirList implements DirOperations {
     }
 
     int findByName(String name) throws NoSuchFileException {
-        if (isEmpty()) {
+        var entry = names.get(name);
+        if (entry == null) {
             throw new NoSuchFileException("File [" + name + "] was not found");
         }
-        return IntStream.range(0, entries.size())
-                .filter(i -> entries.get(i).getName().equals(name))
-                .findAny()
-                .orElseThrow(() -> new NoSuchFileException("File [" + name + "] was not found"));
+        return indexOf(entry);
     }
 
+    /**
+     * Find entry with the smallest free space enough for new entry, the first one if there are several.
+     *
+     * @param newName the name of new entry
+     * @return the index of entry
+     * @throws DirList.NotEnoughSpaceException if no entry can be split
+     */
     int findByAvailableSpace(String newName) throws DirList.NotEnoughSpaceException {
-        return IntStream.range(0, entries.size())
-                .filter(i -> entries.get(i).canBeSplit(newName))
-                .findFirst()
-                .orElseThrow(() -> new DirList.NotEnoughSpaceException("Not enough space"));
+        var found = freeSpace.ceilingEntry(pack(DirEntry.aligned(newName), 0));
+        if (found == null) {
+            throw new DirList.NotEnoughSpaceException("Not enough space");
+        }
+        assert found.getValue().canBeSplit(newName);
+        return indexOf(found.getValue());
+    }
+
+    /**
+     * Find index of entry by binary search of its position, entries are sorted by position.
+     */
+    private int indexOf(DirEntry entry) {
+        var low = 0;
+        var high = entries.size() - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var position = entries.get(middle).getPosition();
+            if (position < entry.getPosition()) {
+                low = middle + 1;
+            } else if (position > entry.getPosition()) {
+                high = middle - 1;
+            } else {
+                assert entries.get(middle) == entry;
+                return middle;
+            }
+        }
+        throw new IllegalStateException("Entry [" + entry + "] is not in list");
+    }
+
+    /**
+     * Add entry to indexes, should be called after every change of entry.
+     */
+    private void track(DirEntry entry) {
+        if (entry.isEmpty()) {
+            return;
+        }
+        names.put(entry);
+        var available = availableSpace(entry);
+        if (available >= DirEntry.aligned((short) 1)) {
+            freeSpace.put(pack(available, entry.getPosition()), entry);
+        }
+    }
+
+    /**
+     * Remove entry from indexes, should be called before every change of entry.
+     */
+    private void untrack(DirEntry entry) {
+        if (entry.isEmpty()) {
+            return;
+        }
+        names.remove(entry);
+        freeSpace.remove(pack(availableSpace(entry), entry.getPosition()));
+    }
+
+    private static int availableSpace(DirEntry entry) {
+        return entry.getLength() - DirEntry.aligned((short) entry.nameLength());
+    }
+
+    private static long pack(int available, int position) {
+        return (long) available << 32 | position;
+    }
+
+    /**
+     * Largest space available for new entry.
+     *
+     * @return the number of bytes, new entry fits if its aligned length is not greater
+     */
+    int largestFreeSpace() {
+        if (isEmpty()) {
+            return length;
+        }
+        return freeSpace.isEmpty() ? 0 : (int) (freeSpace.lastKey() >>> 32);
     }
 
     public void resize(int newLength) {
         if (newLength < length) {
             throw new IllegalArgumentException("Can't reduce length");
         }
-        entries.getLast().growAfter((short) (newLength - length));
+        var last = entries.getLast();
+        untrack(last);
+        last.growAfter((short) (newLength - length));
+        track(last);
         this.length = newLength;
     }
 
@@ -188,6 +315,7 @@ final class DirList implements DirOperations {
         assert !entries.isEmpty() : "Entries list should not be empty";
         assert entries.stream().mapToInt(DirEntry::getLength).sum() == length : "Entries should occupy all bytes";
         assert !hasGaps() : "Entries should have no gaps between";
+        assert names.size() == entries.stream().filter(entry -> !entry.isEmpty()).count() : "All entries should be indexed by name";
     }
 
     boolean hasGaps() {
@@ -212,6 +340,82 @@ final class DirList implements DirOperations {
         return entries;
     }
 
+    /**
+     * Hash table of entries by name with open addressing and linear probing, names are compared as UTF-8 bytes.
+     */
+    private static final class NameIndex {
+
+        private DirEntry[] slots = new DirEntry[16];
+        private int size;
+
+        DirEntry get(String name) {
+            var key = DirEntry.encode(name);
+            var mask = slots.length - 1;
+            for (var i = home(DirEntry.hash(key), mask); slots[i] != null; i = (i + 1) & mask) {
+                if (slots[i].nameEquals(key)) {
+                    return slots[i];
+                }
+            }
+            return null;
+        }
+
+        void put(DirEntry entry) {
+            if ((size + 1) * 2 > slots.length) {
+                var old = slots;
+                slots = new DirEntry[old.length * 2];
+                size = 0;
+                for (var slot : old) {
+                    if (slot != null) {
+                        insert(slot);
+                    }
+                }
+            }
+            insert(entry);
+        }
+
+        private void insert(DirEntry entry) {
+            var mask = slots.length - 1;
+            var i = home(entry.nameHash(), mask);
+            while (slots[i] != null) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = entry;
+            size++;
+        }
+
+        /**
+         * Remove entry and shift following entries of the same probe sequence back, so no tombstones are needed.
+         */
+        void remove(DirEntry entry) {
+            var mask = slots.length - 1;
+            var i = home(entry.nameHash(), mask);
+            while (slots[i] != entry) {
+                assert slots[i] != null : "Entry [" + entry + "] should be indexed";
+                i = (i + 1) & mask;
+            }
+            slots[i] = null;
+            size--;
+            for (var j = (i + 1) & mask; slots[j] != null; j = (j + 1) & mask) {
+                var k = home(slots[j].nameHash(), mask);
+                if (i <= j ? i < k && k <= j : i < k || k <= j) {
+                    continue;
+                }
+                slots[i] = slots[j];
+                slots[j] = null;
+                i = j;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int home(int hash, int mask) {
+            return (hash ^ hash >>> 16) & mask;
+        }
+
+    }
+
     static class NotEnoughSpaceException extends org.atlantfs.NotEnoughSpaceException {
 
         NotEnoughSpaceException() {
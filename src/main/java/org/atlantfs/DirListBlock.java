@@ -3,12 +3,21 @@ package org.atlantfs;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.NoSuchFileException;
 import java.util.Iterator;
-
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Block of directory entries.
+ * <p>
+ * Operations lock only this block, so entries can be added into different blocks of directory concurrently.
+ */
 class DirListBlock implements Block, DirOperations {
 
     private final Id id;
     private final DirList dirList;
     private final AtlantFileSystem fileSystem;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     private DirListBlock(Id id, AtlantFileSystem fileSystem, DirList dirList) {
         this.id = id;
@@ -16,13 +25,13 @@ class DirListBlock implements Block, DirOperations {
         this.dirList = dirList;
     }
 
-    static DirListBlock init(AtlantFileSystem fileSystem) throws BitmapRegion.NotEnoughSpaceException {
+    static DirListBlock init(AtlantFileSystem fileSystem, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException {
         var dirEntryList = DirList.init(fileSystem.blockSize());
-        return init(fileSystem, dirEntryList);
+        return init(fileSystem, dirEntryList, goal);
     }
 
-    static DirListBlock init(AtlantFileSystem fileSystem, DirList dirList) throws BitmapRegion.NotEnoughSpaceException {
-        var reserved = fileSystem.reserveBlock();
+    static DirListBlock init(AtlantFileSystem fileSystem, DirList dirList, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException {
+        var reserved = fileSystem.reserveBlockNear(goal);
         dirList.resize(fileSystem.blockSize());
         return new DirListBlock(reserved, fileSystem, dirList);
     }
@@ -40,44 +49,104 @@ class DirListBlock implements Block, DirOperations {
 
     @Override
     public boolean isDirty() {
-        return dirList.isDirty();
+        try {
+            lock.readLock().lock();
+            return dirList.isDirty();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void flush() {
-        if (!isDirty()) {
-            return;
+        try {
+            lock.writeLock().lock();
+            if (!dirList.isDirty()) {
+                return;
+            }
+            fileSystem.writeBlock(id, dirList::flush);
+        } finally {
+            lock.writeLock().unlock();
         }
-        fileSystem.writeBlock(id, dirList::flush);
     }
 
+    /**
+     * Entries of block, access without lock of block is allowed only under write lock of directory inode.
+     */
     DirList dirList() {
         return dirList;
     }
 
+    int largestFreeSpace() {
+        try {
+            lock.readLock().lock();
+            return dirList.largestFreeSpace();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Iterator over entries without lock of block, should be used only under write lock of directory inode.
+     */
     @Override
     public Iterator<DirEntry> iterator() {
         return dirList.iterator();
     }
 
+    /**
+     * Pass copies of non-empty entries accepted by filter to consumer, copies are taken under lock of block.
+     *
+     * @param filter   the filter of entries, applied before copying
+     * @param consumer the consumer of copies
+     */
+    void copyEntries(Predicate<? super DirEntry> filter, Consumer<DirEntry> consumer) {
+        try {
+            lock.readLock().lock();
+            dirList.copyEntries(filter, consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public DirEntry add(Inode.Id id, FileType fileType, String name) throws DirList.NotEnoughSpaceException {
-        return dirList.add(id, fileType, name);
+        try {
+            lock.writeLock().lock();
+            return dirList.add(id, fileType, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public DirEntry get(String name) throws NoSuchFileException {
-        return dirList.get(name);
+        try {
+            lock.readLock().lock();
+            return dirList.get(name);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void rename(String name, String newName) throws NoSuchFileException, DirList.NotEnoughSpaceException {
-        dirList.rename(name, newName);
+        try {
+            lock.writeLock().lock();
+            dirList.rename(name, newName);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void remove(String name) throws NoSuchFileException {
-        dirList.remove(name);
+        try {
+            lock.writeLock().lock();
+            dirList.remove(name);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
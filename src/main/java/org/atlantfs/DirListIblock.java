@@ -4,6 +4,8 @@ import java.nio.ByteBuffer;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.NoSuchFileException;
 import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 class DirListIblock implements DirIblock {
 
@@ -42,6 +44,12 @@ class DirListIblock implements DirIblock {
         return dirList.iterator();
     }
 
+    @Override
+    public long list(long cursor, Predicate<? super DirEntry> filter, Consumer<DirEntry> consumer) {
+        dirList.copyEntries(filter, consumer);
+        return END;
+    }
+
     @Override
     public DirEntry add(Inode.Id id, FileType fileType, String name) throws DirList.NotEnoughSpaceException {
         return dirList.add(id, fileType, name);
@@ -1,53 +1,405 @@
 package org.atlantfs;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
 
-class DirTree implements DirOperations {
+/**
+ * Directory as tree of {@link DirTreeNode} indexed by hash of name, leaves are {@link DirListBlock}.
+ * <p>
+ * Inspired by {@code htree} of ext4. All names with the same hash are kept in single leaf, so lookup reads one block
+ * per level of tree and one leaf, insert and remove take {@code O(log n)} of entries too. Full leaf is split in halves
+ * by hash. Root of tree is kept inside of iblock together with seed of hash, seed is random for every directory, so
+ * names colliding in one directory don't collide in another.
+ * <p>
+ * Entries are added concurrently into different leaves under lock of leaf only, leaves are split and nodes are changed
+ * under write lock of inode.
+ * <pre>
+ * | seed (4) | root node |
+ * </pre>
+ */
+class DirTree implements DirIblock {
+
+    private static final Logger log = Logger.getLogger(DirTree.class.getName());
+
+    static final int HEADER_LENGTH = 4;
 
-    private DirTreeNode root;
     private final AtlantFileSystem fileSystem;
+    private final Map<Block.Id, DirTreeNode> nodes = new ConcurrentHashMap<>();
+    private final Map<Block.Id, Block.Pointer<DirListBlock>> leaves = new ConcurrentHashMap<>();
+    private final Map<Block.Id, DirListBlock> dirtyLeaves = new LinkedHashMap<>();
+    private final Set<Block> dirtyBlocks = new LinkedHashSet<>();
+    private final int seed;
+    private final DirTreeNode root;
+    private int blocksCount;
 
-    DirTree(AtlantFileSystem fileSystem) {
+    DirTree(AtlantFileSystem fileSystem, int seed, DirTreeNode root, int blocksCount) {
         this.fileSystem = fileSystem;
+        this.seed = seed;
+        this.root = root;
+        this.blocksCount = blocksCount;
     }
 
-    static DirTree read(AtlantFileSystem fileSystem, ByteBuffer buffer) {
-        throw new UnsupportedOperationException();
+    static DirTree read(AtlantFileSystem fileSystem, ByteBuffer buffer, int blocksCount) {
+        var initial = buffer.position();
+        var seed = buffer.getInt();
+        var root = DirTreeNode.read(fileSystem, Block.Id.ZERO, buffer.slice(buffer.position(), fileSystem.iblockSize() - HEADER_LENGTH));
+        buffer.position(initial + fileSystem.iblockSize());
+        return new DirTree(fileSystem, seed, root, blocksCount);
+    }
+
+    static DirTree init(AtlantFileSystem fileSystem, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException {
+        assert rootCapacity(fileSystem.iblockSize()) > 1 : "Iblock should fit at least two entries";
+        var leaf = DirListBlock.init(fileSystem, goal);
+        var root = DirTreeNode.init(fileSystem, Block.Id.ZERO, 0);
+        root.add(0, new DirTreeNode.DxEntry(Integer.MIN_VALUE, leaf.id()));
+        var result = new DirTree(fileSystem, ThreadLocalRandom.current().nextInt(), root, 1);
+        result.leaves.put(leaf.id(), Block.Pointer.of(leaf));
+        result.dirtyLeaves.put(leaf.id(), leaf);
+        return result;
+    }
+
+    static int rootCapacity(int iblockSize) {
+        return DirTreeNode.capacity(iblockSize - HEADER_LENGTH);
+    }
+
+    @Override
+    public void flush(ByteBuffer buffer) {
+        var iblockLength = fileSystem.iblockSize();
+        assert buffer.remaining() >= iblockLength;
+        var initial = buffer.position();
+        buffer.putInt(seed);
+        root.write(buffer);
+        assert buffer.position() - initial <= iblockLength;
+        buffer.position(initial + iblockLength);
+        dirtyBlocks.forEach(Block::flush);
+        dirtyBlocks.clear();
+        dirtyLeaves.values().forEach(Block::flush);
+        dirtyLeaves.clear();
     }
 
     @Override
     public Iterator<DirEntry> iterator() {
-        throw new UnsupportedOperationException();
+        var leaves = new ArrayList<Block.Id>();
+        collect(root, leaves);
+        return new Iterator<>() {
+
+            int currentLeaf = 0;
+            Iterator<DirEntry> currentIterator = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!currentIterator.hasNext()) {
+                    if (currentLeaf >= leaves.size()) {
+                        return false;
+                    }
+                    currentIterator = leaf(leaves.get(currentLeaf++)).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public DirEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return currentIterator.next();
+            }
+
+        };
     }
 
+    /**
+     * List leaf which covers hash of cursor, next cursor is the lowest hash of the next leaf. Split leaf keeps the lowest
+     * hash of its range and the new leaf starts with hash above it, so leaves split after listing are not listed again.
+     */
     @Override
-    public DirEntry add(Inode.Id id, FileType fileType, String name) {
-        throw new UnsupportedOperationException();
+    public long list(long cursor, Predicate<? super DirEntry> filter, Consumer<DirEntry> consumer) {
+        var hash = (int) (cursor + Integer.MIN_VALUE);
+        var path = path(hash);
+        var parent = path.getLast();
+        leaf(parent.get(parent.search(hash)).block()).copyEntries(filter, consumer);
+        for (int level = path.size() - 1; level >= 0; level--) {
+            var node = path.get(level);
+            var next = node.search(hash) + 1;
+            if (next < node.size()) {
+                return (long) node.get(next).hash() - Integer.MIN_VALUE;
+            }
+        }
+        return END;
     }
 
     @Override
-    public DirEntry get(String name) throws NoSuchFileException {
-        var block = root.get(name);
-        for (var i = 0; i < root.getDepth(); i++) {
-            var buffer = fileSystem.readBlock(block);
-            var dirTreeNode = DirTreeNode.read(buffer);
-            block = dirTreeNode.get(name);
+    public DirEntry add(Inode.Id id, FileType fileType, String name) throws BitmapRegion.NotEnoughSpaceException, DirTree.NotEnoughSpaceException {
+        var hash = hash(name);
+        while (true) {
+            var path = path(hash);
+            var parent = path.getLast();
+            var index = parent.search(hash);
+            var leaf = leaf(parent.get(index).block());
+            try {
+                var result = leaf.add(id, fileType, name);
+                dirtyLeaves.put(leaf.id(), leaf);
+                return result;
+            } catch (DirList.NotEnoughSpaceException _) {
+                split(path, index, leaf);
+            }
+        }
+    }
+
+    @Override
+    public DirEntry addConcurrently(Inode.Id id, FileType fileType, String name) {
+        var hash = hash(name);
+        var parent = path(hash).getLast();
+        var leaf = leaf(parent.get(parent.search(hash)).block());
+        try {
+            var result = leaf.add(id, fileType, name);
+            leaf.flush();
+            return result;
+        } catch (DirList.NotEnoughSpaceException _) {
+            log.finer(() -> "Leaf [id=" + leaf.id() + "] is full, it should be split");
+            return null;
+        }
+    }
+
+    /**
+     * Move upper half of names of leaf by hash into new leaf and split nodes of path which become full.
+     *
+     * @param path  the nodes from root to parent of leaf
+     * @param index the index of leaf in parent
+     * @param leaf  the full leaf
+     */
+    private void split(List<DirTreeNode> path, int index, DirListBlock leaf) throws BitmapRegion.NotEnoughSpaceException, DirTree.NotEnoughSpaceException {
+        var boundary = boundary(leaf);
+        log.fine(() -> "Splitting leaf [id=" + leaf.id() + ", boundary=" + boundary + "]...");
+        var right = DirListBlock.init(fileSystem, leaf.id().plus(1));
+        leaves.put(right.id(), Block.Pointer.of(right));
+        blocksCount++;
+        for (var entry : List.copyOf(leaf.dirList().getEntries())) {
+            if (!entry.isEmpty() && hash(entry.getName()) >= boundary) {
+                try {
+                    right.add(entry.getInode(), entry.getFileType(), entry.getName());
+                    leaf.remove(entry.getName());
+                } catch (DirList.NotEnoughSpaceException | NoSuchFileException e) {
+                    throw new IllegalStateException("Entry [name=" + entry.getName() + "] should be moved to empty leaf", e);
+                }
+            }
+        }
+        dirtyLeaves.put(leaf.id(), leaf);
+        dirtyLeaves.put(right.id(), right);
+        var newEntry = new DirTreeNode.DxEntry(boundary, right.id());
+        for (int level = path.size() - 1; level >= 0; level--) {
+            var node = path.get(level);
+            node.add(node.search(newEntry.hash()) + 1, newEntry);
+            if (node == root) {
+                break;
+            }
+            dirtyBlocks.add(node);
+            if (node.size() <= DirTreeNode.capacity(fileSystem.blockSize())) {
+                return;
+            }
+            var rightNode = DirTreeNode.init(fileSystem, fileSystem.reserveBlockNear(node.id().plus(1)), node.depth());
+            blocksCount++;
+            node.splitInto(rightNode);
+            nodes.put(rightNode.id(), rightNode);
+            dirtyBlocks.add(rightNode);
+            newEntry = new DirTreeNode.DxEntry(rightNode.get(0).hash(), rightNode.id());
+        }
+        if (root.size() > rootCapacity(fileSystem.iblockSize())) {
+            var child = DirTreeNode.init(fileSystem, fileSystem.reserveBlockNear(goal()), root.depth());
+            blocksCount++;
+            root.pushDown(child);
+            nodes.put(child.id(), child);
+            dirtyBlocks.add(child);
+            log.fine(() -> "Dir tree has grown [depth=" + root.depth() + "]");
+        }
+    }
+
+    /**
+     * Find hash to split leaf by, it is the closest to median, so all names with the same hash stay in one leaf.
+     *
+     * @param leaf the full leaf
+     * @return the lowest hash of names to move into new leaf
+     * @throws DirTree.NotEnoughSpaceException if all names of leaf have the same hash
+     */
+    private int boundary(DirListBlock leaf) throws DirTree.NotEnoughSpaceException {
+        var hashes = leaf.dirList().getEntries().stream()
+                .filter(entry -> !entry.isEmpty())
+                .mapToInt(entry -> hash(entry.getName()))
+                .sorted()
+                .toArray();
+        var middle = hashes.length / 2;
+        for (int i = 0; middle - i > 0 || middle + i < hashes.length; i++) {
+            if (middle + i < hashes.length && middle + i > 0 && hashes[middle + i] != hashes[middle + i - 1]) {
+                return hashes[middle + i];
+            }
+            if (middle - i > 0 && hashes[middle - i] != hashes[middle - i - 1]) {
+                return hashes[middle - i];
+            }
         }
-        var buffer = fileSystem.readBlock(block);
-        var dirEntryList = DirList.read(buffer);
-        return dirEntryList.get(name);
+        throw new DirTree.NotEnoughSpaceException("Leaf [id=" + leaf.id() + "] is full of names with the same hash");
     }
 
     @Override
-    public void rename(String name, String newName) throws NoSuchFileException {
-        throw new UnsupportedOperationException();
+    public DirEntry get(String name) throws NoSuchFileException {
+        var hash = hash(name);
+        var parent = path(hash).getLast();
+        return leaf(parent.get(parent.search(hash)).block()).get(name);
+    }
+
+    @Override
+    public void rename(String name, String newName) throws NoSuchFileException, BitmapRegion.NotEnoughSpaceException, DirTree.NotEnoughSpaceException {
+        log.fine(() -> "Renaming entry [oldName=" + name + ", newName=" + newName + "]...");
+        var entry = get(name);
+        add(entry.getInode(), entry.getFileType(), newName);
+        remove(name);
     }
 
     @Override
     public void remove(String name) throws NoSuchFileException {
-        throw new UnsupportedOperationException();
+        var hash = hash(name);
+        var parent = path(hash).getLast();
+        var leaf = leaf(parent.get(parent.search(hash)).block());
+        leaf.remove(name);
+        dirtyLeaves.put(leaf.id(), leaf);
+    }
+
+    /**
+     * Nodes from root down to node of zero depth which covers hash.
+     *
+     * @param hash the hash of name
+     * @return the path, starts with root
+     */
+    private List<DirTreeNode> path(int hash) {
+        var result = new ArrayList<DirTreeNode>(root.depth() + 1);
+        var node = root;
+        result.add(node);
+        while (!node.isLeaf()) {
+            node = child(node.get(node.search(hash)));
+            result.add(node);
+        }
+        return result;
+    }
+
+    private DirTreeNode child(DirTreeNode.DxEntry entry) {
+        return nodes.computeIfAbsent(entry.block(), id -> DirTreeNode.read(fileSystem, id));
+    }
+
+    /**
+     * Leaf shared by all threads, dirty leaves are held by {@link #dirtyLeaves} until flush, so they are not collected.
+     */
+    private DirListBlock leaf(Block.Id id) {
+        return leaves.computeIfAbsent(id, Block.Pointer::of)
+                .computeIfAbsent(leafId -> DirListBlock.read(fileSystem, leafId));
+    }
+
+    private void collect(DirTreeNode node, List<Block.Id> result) {
+        for (var entry : node.entries()) {
+            if (node.isLeaf()) {
+                result.add(entry.block());
+            } else {
+                collect(child(entry), result);
+            }
+        }
+    }
+
+    /**
+     * Hash of name, seeded FNV-1a with finalizer of MurmurHash3.
+     *
+     * @param name the name
+     * @return the hash
+     */
+    int hash(String name) {
+        var result = seed ^ 0x811c9dc5;
+        for (int i = 0; i < name.length(); i++) {
+            result = (result ^ name.charAt(i)) * 0x01000193;
+        }
+        result ^= result >>> 16;
+        result *= 0x85ebca6b;
+        result ^= result >>> 13;
+        result *= 0xc2b2ae35;
+        result ^= result >>> 16;
+        return result;
+    }
+
+    @Override
+    public void delete() throws IOException {
+        if (iterator().hasNext()) {
+            throw new DirectoryNotEmptyException("Directory is not empty");
+        }
+        delete(root);
+        nodes.clear();
+        leaves.clear();
+        dirtyBlocks.clear();
+        dirtyLeaves.clear();
+    }
+
+    private void delete(DirTreeNode node) {
+        for (var entry : node.entries()) {
+            if (node.isLeaf()) {
+                fileSystem.freeBlock(entry.block());
+            } else {
+                delete(child(entry));
+            }
+        }
+        node.delete();
+    }
+
+    /**
+     * Block after the first leaf, new directories and files of directory are allocated near it.
+     */
+    @Override
+    public Block.Id goal() {
+        var node = root;
+        while (!node.isLeaf()) {
+            node = child(node.get(0));
+        }
+        return node.get(0).block().plus(1);
+    }
+
+    @Override
+    public IblockType type() {
+        return IblockType.DIR_HASH_TREE;
+    }
+
+    @Override
+    public long size() {
+        return (long) blocksCount * fileSystem.blockSize();
+    }
+
+    /**
+     * Number of leaves and node blocks.
+     */
+    @Override
+    public int blocksCount() {
+        return blocksCount;
+    }
+
+    int depth() {
+        return root.depth();
+    }
+
+    static class NotEnoughSpaceException extends org.atlantfs.NotEnoughSpaceException {
+
+        NotEnoughSpaceException(String message) {
+            super(message);
+        }
+
     }
 
 }
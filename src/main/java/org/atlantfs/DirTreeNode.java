@@ -1,90 +1,204 @@
 package org.atlantfs;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-class DirTreeNode implements Block {
-
-    private int length;
+/**
+ * Node of {@link DirTree}.
+ * <p>
+ * Keeps entries sorted by hash, entry points to the node of lower depth or to {@link DirListBlock} leaf when node has
+ * zero depth. Hash of entry is the lowest hash of names stored under it, names with lower hash than the first entry
+ * are stored under the first entry too. Root node is kept inside of iblock and has {@link Id#ZERO} id, other nodes take
+ * whole block.
+ * <pre>
+ * | entries count (2) | depth (2) | entry * count |
+ * </pre>
+ */
+final class DirTreeNode implements Block {
+
+    static final int HEADER_LENGTH = 2 + 2;
+
+    private final AtlantFileSystem fileSystem;
+    private final Id id;
+    private final List<DxEntry> entries = new ArrayList<>();
     private int depth;
-    private List<DxEntry> dxEntries;
+    private boolean dirty;
+
+    DirTreeNode(AtlantFileSystem fileSystem, Id id, int depth) {
+        this.fileSystem = fileSystem;
+        this.id = id;
+        this.depth = depth;
+    }
+
+    static DirTreeNode init(AtlantFileSystem fileSystem, Id id, int depth) {
+        var result = new DirTreeNode(fileSystem, id, depth);
+        result.dirty = true;
+        return result;
+    }
+
+    static DirTreeNode read(AtlantFileSystem fileSystem, Id id) {
+        return read(fileSystem, id, fileSystem.readBlock(id));
+    }
+
+    static DirTreeNode read(AtlantFileSystem fileSystem, Id id, ByteBuffer buffer) {
+        var count = buffer.getShort();
+        var depth = buffer.getShort();
+        var result = new DirTreeNode(fileSystem, id, depth);
+        for (int i = 0; i < count; i++) {
+            result.entries.add(DxEntry.read(buffer));
+        }
+        result.checkInvariant();
+        return result;
+    }
+
+    static int capacity(int length) {
+        return (length - HEADER_LENGTH) / DxEntry.LENGTH;
+    }
 
-    static DirTreeNode read(ByteBuffer buffer) {
-        return new DirTreeNode();
+    void write(ByteBuffer buffer) {
+        buffer.putShort((short) entries.size());
+        buffer.putShort((short) depth);
+        entries.forEach(entry -> entry.write(buffer));
     }
 
-    Block.Id get(String name) {
-        var hash = name.hashCode();
-        var firstHash = dxEntries.getFirst().hash;
-        if (firstHash > hash) {
-            throw new IllegalStateException("First hash [" + firstHash + "] of Dir tree node is greater than required [" + hash + "]");
+    @Override
+    public void flush() {
+        if (!isDirty()) {
+            return;
         }
-        for (int i = 0; i < dxEntries.size(); i++) {
-            if (dxEntries.get(i).hash > hash) {
-                return dxEntries.get(i - 1).block;
+        assert !id.equals(Id.ZERO) : "Root node is flushed with iblock";
+        fileSystem.writeBlock(id, this::write);
+        dirty = false;
+    }
+
+    /**
+     * Find entry which covers hash.
+     *
+     * @param hash the hash of name
+     * @return index of last entry with hash not greater than required, 0 if there is no such entry
+     */
+    int search(int hash) {
+        var low = 0;
+        var high = entries.size() - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            if (entries.get(middle).hash() <= hash) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
             }
         }
-        return dxEntries.getLast().block();
+        return Math.max(0, high);
     }
 
-    void checkInvariant() {
-        assert dxEntries != null;
-        assert !dxEntries.isEmpty();
-        assert isSorted();
+    void add(int index, DxEntry entry) {
+        entries.add(index, entry);
+        dirty = true;
+        checkInvariant();
     }
 
-    boolean isSorted() {
-        var last = dxEntries.getFirst().hash;
-        for (int i = 1; i < dxEntries.size(); i++) {
-            if (dxEntries.get(i).hash < last) {
-                return false;
-            }
+    /**
+     * Move upper half of entries into another node.
+     *
+     * @param right the empty node of the same depth
+     */
+    void splitInto(DirTreeNode right) {
+        assert right.entries.isEmpty();
+        assert right.depth == depth;
+        var upper = entries.subList(entries.size() / 2, entries.size());
+        right.entries.addAll(upper);
+        upper.clear();
+        dirty = true;
+        right.dirty = true;
+    }
+
+    /**
+     * Move all entries into child node and point to it, so depth of tree grows by one.
+     *
+     * @param child the empty node of the same depth
+     */
+    void pushDown(DirTreeNode child) {
+        assert child.entries.isEmpty();
+        assert child.depth == depth;
+        child.entries.addAll(entries);
+        child.dirty = true;
+        entries.clear();
+        entries.add(new DxEntry(child.entries.getFirst().hash(), child.id));
+        depth++;
+        dirty = true;
+    }
+
+    void checkInvariant() {
+        assert depth >= 0;
+        for (int i = 1; i < entries.size(); i++) {
+            assert entries.get(i - 1).hash() < entries.get(i).hash() : "Entries should be sorted " + entries;
         }
-        return true;
     }
 
+    //region getters
     @Override
     public Id id() {
-        throw new UnsupportedOperationException();
+        return id;
     }
 
     @Override
     public boolean isDirty() {
-        throw new UnsupportedOperationException();
+        return dirty;
     }
 
     @Override
-    public void flush() {
-        throw new UnsupportedOperationException();
+    public void delete() {
+        if (!id.equals(Id.ZERO)) {
+            fileSystem.freeBlock(id);
+        }
     }
 
-    @Override
-    public void delete() throws IOException {
-        throw new UnsupportedOperationException();
+    int depth() {
+        return depth;
     }
 
-    // -----------------------------------------------------------------------------------------------------------------
+    boolean isLeaf() {
+        return depth == 0;
+    }
 
-    int getDepth() {
-        return depth;
+    int size() {
+        return entries.size();
+    }
+
+    DxEntry get(int index) {
+        return entries.get(index);
     }
 
-    List<DxEntry> getDxEntries() {
-        return dxEntries;
+    List<DxEntry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+    //endregion
+
+    @Override
+    public String toString() {
+        return "DirTreeNode{" +
+                "id=" + id.value() +
+                ", depth=" + depth +
+                ", entries=" + entries +
+                ", dirty=" + dirty +
+                '}';
     }
 
     record DxEntry(int hash, Block.Id block) {
 
+        static final int LENGTH = 4 + Block.Id.LENGTH;
+
         static DxEntry read(ByteBuffer buffer) {
             var hash = buffer.getInt();
-            var block = buffer.getInt();
-            return new DxEntry(hash, Block.Id.of(block));
+            var block = Block.Id.read(buffer);
+            return new DxEntry(hash, block);
         }
 
         void write(ByteBuffer buffer) {
             buffer.putInt(hash);
-            buffer.putInt(block().value());
+            block.write(buffer);
         }
 
     }
@@ -0,0 +1,221 @@
+package org.atlantfs;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node of {@link FileExtentTree}.
+ * <p>
+ * Leaf node (depth 0) keeps extents sorted by logical block number, index node keeps pointers to child nodes where
+ * logical block number is the first block covered by child. Root node is kept inside of iblock and has {@link Id#ZERO}
+ * id, other nodes take whole block.
+ * <pre>
+ * | entries count (2) | depth (2) | entry * count |
+ * </pre>
+ */
+final class ExtentTreeNode implements Block {
+
+    static final int HEADER_LENGTH = 2 + 2;
+
+    private final AtlantFileSystem fileSystem;
+    private final Id id;
+    private final List<FileExtentTree.Extent> entries = new ArrayList<>();
+    private int depth;
+    private boolean dirty;
+
+    ExtentTreeNode(AtlantFileSystem fileSystem, Id id, int depth) {
+        this.fileSystem = fileSystem;
+        this.id = id;
+        this.depth = depth;
+    }
+
+    static ExtentTreeNode init(AtlantFileSystem fileSystem, Id id, int depth) {
+        var result = new ExtentTreeNode(fileSystem, id, depth);
+        result.dirty = true;
+        return result;
+    }
+
+    static ExtentTreeNode read(AtlantFileSystem fileSystem, Id id) {
+        return read(fileSystem, id, fileSystem.readBlock(id));
+    }
+
+    static ExtentTreeNode read(AtlantFileSystem fileSystem, Id id, ByteBuffer buffer) {
+        var count = buffer.getShort();
+        var depth = buffer.getShort();
+        var result = new ExtentTreeNode(fileSystem, id, depth);
+        for (int i = 0; i < count; i++) {
+            result.entries.add(FileExtentTree.Extent.read(buffer));
+        }
+        result.checkInvariant();
+        return result;
+    }
+
+    static int capacity(int length) {
+        return (length - HEADER_LENGTH) / FileExtentTree.Extent.LENGTH;
+    }
+
+    void write(ByteBuffer buffer) {
+        buffer.putShort((short) entries.size());
+        buffer.putShort((short) depth);
+        entries.forEach(entry -> entry.write(buffer));
+    }
+
+    @Override
+    public void flush() {
+        if (!isDirty()) {
+            return;
+        }
+        assert !id.equals(Id.ZERO) : "Root node is flushed with iblock";
+        fileSystem.writeBlock(id, this::write);
+        dirty = false;
+    }
+
+    /**
+     * Find entry which covers logical block number.
+     *
+     * @param logical the logical block number
+     * @return index of last entry which starts at or before logical block number, -1 if there is no such entry
+     */
+    int search(int logical) {
+        var low = 0;
+        var high = entries.size() - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            if (entries.get(middle).logical() <= logical) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Insert extent into leaf, merge with neighbours if extent continues them both logically and physically.
+     *
+     * @param extent the extent
+     */
+    void insert(FileExtentTree.Extent extent) {
+        assert isLeaf();
+        var index = search(extent.logical());
+        assert index < 0 || entries.get(index).end() <= extent.logical() : "Extent " + extent + " overlaps " + entries.get(index);
+        if (index >= 0 && entries.get(index).isFollowedBy(extent)) {
+            entries.set(index, entries.get(index).merge(extent));
+        } else {
+            index++;
+            entries.add(index, extent);
+        }
+        if (index + 1 < entries.size() && entries.get(index).isFollowedBy(entries.get(index + 1))) {
+            entries.set(index, entries.get(index).merge(entries.remove(index + 1)));
+        }
+        dirty = true;
+        checkInvariant();
+    }
+
+    void add(int index, FileExtentTree.Extent entry) {
+        entries.add(index, entry);
+        dirty = true;
+    }
+
+    void set(int index, FileExtentTree.Extent entry) {
+        entries.set(index, entry);
+        dirty = true;
+    }
+
+    /**
+     * Move upper half of entries into another node.
+     * <p>
+     * When file is appended only the last entry is moved, so nodes of sequentially written file stay full.
+     *
+     * @param right  the empty node of the same depth
+     * @param append true if the last entry was just added
+     */
+    void splitInto(ExtentTreeNode right, boolean append) {
+        assert right.entries.isEmpty();
+        assert right.depth == depth;
+        var upper = entries.subList(append ? entries.size() - 1 : entries.size() / 2, entries.size());
+        right.entries.addAll(upper);
+        upper.clear();
+        dirty = true;
+        right.dirty = true;
+    }
+
+    /**
+     * Move all entries into child node and point to it, so depth of tree grows by one.
+     *
+     * @param child the empty node of the same depth
+     */
+    void pushDown(ExtentTreeNode child) {
+        assert child.entries.isEmpty();
+        assert child.depth == depth;
+        child.entries.addAll(entries);
+        child.dirty = true;
+        entries.clear();
+        entries.add(FileExtentTree.Extent.index(child.entries.getFirst().logical(), child.id));
+        depth++;
+        dirty = true;
+    }
+
+    void checkInvariant() {
+        assert depth >= 0;
+        for (int i = 1; i < entries.size(); i++) {
+            assert entries.get(i - 1).logical() < entries.get(i).logical() : "Entries should be sorted " + entries;
+        }
+    }
+
+    //region getters
+    @Override
+    public Id id() {
+        return id;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void delete() {
+        if (!id.equals(Id.ZERO)) {
+            fileSystem.freeBlock(id);
+        }
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    boolean isLeaf() {
+        return depth == 0;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    FileExtentTree.Extent get(int index) {
+        return entries.get(index);
+    }
+
+    List<FileExtentTree.Extent> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+    //endregion
+
+    @Override
+    public String toString() {
+        return "ExtentTreeNode{" +
+                "id=" + id.value() +
+                ", depth=" + depth +
+                ", entries=" + entries +
+                ", dirty=" + dirty +
+                '}';
+    }
+
+}
@@ -2,6 +2,8 @@ package org.atlantfs;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.logging.Logger;
 
 class FileBlockMapping extends BlockMapping<DataBlock> implements FileIblock {
@@ -9,6 +11,7 @@ class FileBlockMapping extends BlockMapping<DataBlock> implements FileIblock {
     private static final Logger log = Logger.getLogger(FileBlockMapping.class.getName());
 
     protected long size;
+    private ReservationWindow window;
 
     FileBlockMapping(AtlantFileSystem inode) {
         super(inode);
@@ -21,8 +24,12 @@ class FileBlockMapping extends BlockMapping<DataBlock> implements FileIblock {
     }
 
     static FileBlockMapping init(AtlantFileSystem fileSystem, Data data) throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
+        return init(fileSystem, data, null);
+    }
+
+    static FileBlockMapping init(AtlantFileSystem fileSystem, Data data, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
         var result = new FileBlockMapping(fileSystem);
-        result.add(DataBlock.init(fileSystem, data));
+        result.add(DataBlock.init(fileSystem, data, goal));
         result.dirty = true;
         return result;
     }
@@ -45,73 +52,99 @@ class FileBlockMapping extends BlockMapping<DataBlock> implements FileIblock {
         var lastExistingBlockNumber = blocksCount - 1;
         var lastExistingBlock = get(lastExistingBlockNumber);
         var firstRequiredBlockNumber = (int) ((position + buffer.position()) / blockSize);
-        if (lastExistingBlockNumber == firstRequiredBlockNumber) {
-            // Need to fill with zeros all space from last written byte up to required start position
-            var requiredOffset = (int) ((position + buffer.position()) % blockSize);
-            if (!lastExistingBlock.hasData()) {
-                if (requiredOffset > 0) {
-                    lastExistingBlock.write(0, ByteBuffer.allocate(requiredOffset));
-                }
-            } else {
-                var offset = (int) (lastExistingPosition % blockSize);
-                var length = requiredOffset - offset;
-                if (length > 0) {
-                    lastExistingBlock.write(offset, ByteBuffer.allocate(length));
-                }
-            }
-        }
-        if (lastExistingBlockNumber < firstRequiredBlockNumber) {
-            // There is a gap on end, then possibly N empty blocks and new block with gap on start.
-            // Fill lastExistingBlockNumber by zeros up to the end
-            {
+        var lastRequiredBlockNumber = buffer.hasRemaining() ? (int) ((position + buffer.limit() - 1) / blockSize) : firstRequiredBlockNumber;
+        // Reserve all new blocks at once right after the last one, so they are contiguous and bitmap is written once
+        var reserved = new ArrayDeque<>(reserveBlocks(lastExistingBlock.id().plus(1), lastRequiredBlockNumber + 1 - blocksCount));
+        var totalWritten = 0;
+        try {
+            if (lastExistingBlockNumber == firstRequiredBlockNumber) {
+                // Need to fill with zeros all space from last written byte up to required start position
+                var requiredOffset = (int) ((position + buffer.position()) % blockSize);
                 if (!lastExistingBlock.hasData()) {
-                    lastExistingBlock.write(0, ByteBuffer.allocate(blockSize));
+                    if (requiredOffset > 0) {
+                        lastExistingBlock.write(0, ByteBuffer.allocate(requiredOffset));
+                    }
                 } else {
-                    var offset = (int) (lastExistingPosition % blockSize) + 1;
-                    var length = blockSize - offset;
+                    var offset = (int) (lastExistingPosition % blockSize);
+                    var length = requiredOffset - offset;
                     if (length > 0) {
                         lastExistingBlock.write(offset, ByteBuffer.allocate(length));
                     }
                 }
             }
-            for (int i = 0; i < firstRequiredBlockNumber - lastExistingBlockNumber - 1; i++) {
-                add(DataBlock.init(fileSystem, new byte[blockSize]));
-            }
-            {
-                var dataBlock = DataBlock.init(fileSystem);
-                var offset = (int) position % blockSize;
-                if (offset > 0) {
-                    dataBlock.write(0, ByteBuffer.allocate(offset));
+            if (lastExistingBlockNumber < firstRequiredBlockNumber) {
+                // There is a gap on end, then possibly N empty blocks and new block with gap on start.
+                // Fill lastExistingBlockNumber by zeros up to the end
+                {
+                    if (!lastExistingBlock.hasData()) {
+                        lastExistingBlock.write(0, ByteBuffer.allocate(blockSize));
+                    } else {
+                        var offset = (int) (lastExistingPosition % blockSize) + 1;
+                        var length = blockSize - offset;
+                        if (length > 0) {
+                            lastExistingBlock.write(offset, ByteBuffer.allocate(length));
+                        }
+                    }
+                }
+                for (int i = 0; i < firstRequiredBlockNumber - lastExistingBlockNumber - 1; i++) {
+                    add(DataBlock.init(fileSystem, reserved.element(), new byte[blockSize]));
+                    reserved.remove();
+                }
+                {
+                    var dataBlock = DataBlock.init(fileSystem, reserved.element());
+                    var offset = (int) position % blockSize;
+                    if (offset > 0) {
+                        dataBlock.write(0, ByteBuffer.allocate(offset));
+                    }
+                    add(dataBlock);
+                    reserved.remove();
                 }
-                add(dataBlock);
             }
-        }
-        var totalWritten = 0;
-        DataBlock dataBlock;
-        while (buffer.hasRemaining()) {
-            var positionPlus = position + buffer.position();
-            var blockNumber = (int) (positionPlus / blockSize);
-            var offset = (int) (positionPlus % blockSize);
-            var length = Math.min(blockSize - offset, buffer.remaining());
-            if (blockNumber > blocksCount - 1) {
-                dataBlock = DataBlock.init(fileSystem);
-                add(dataBlock);
-            } else {
-                dataBlock = get(blockNumber);
+            DataBlock dataBlock;
+            while (buffer.hasRemaining()) {
+                var positionPlus = position + buffer.position();
+                var blockNumber = (int) (positionPlus / blockSize);
+                var offset = (int) (positionPlus % blockSize);
+                var length = Math.min(blockSize - offset, buffer.remaining());
+                if (blockNumber > blocksCount - 1) {
+                    dataBlock = DataBlock.init(fileSystem, reserved.element());
+                    add(dataBlock);
+                    reserved.remove();
+                } else {
+                    dataBlock = get(blockNumber);
+                }
+                var slice = buffer.slice(buffer.position(), length);
+                var written = dataBlock.write(offset, slice);
+                totalWritten += written;
+                buffer.position(buffer.position() + written);
+                if (written < length) {
+                    break;
+                }
             }
-            var slice = buffer.slice(buffer.position(), length);
-            var written = dataBlock.write(offset, slice);
-            totalWritten += written;
-            buffer.position(buffer.position() + written);
-            if (written < length) {
-                break;
+        } finally {
+            // Blocks are removed from reserved only once they are mapped, the rest (failed or short write) would be
+            // leaked in bitmap
+            if (!reserved.isEmpty()) {
+                log.fine(() -> "Freeing unused reserved blocks [count=" + reserved.size() + "]...");
+                fileSystem.freeBlocks(List.copyOf(reserved));
             }
         }
-        assert !buffer.hasRemaining();
         size = Math.max(size, position + initial + totalWritten);
         return totalWritten;
     }
 
+    private List<Block.Id> reserveBlocks(Block.Id goal, int count) throws BitmapRegion.NotEnoughSpaceException {
+        if (count <= 0) {
+            return List.of();
+        }
+        return Block.Range.flat(window != null ? window.reserve(goal, count) : fileSystem.reserveBlocksNear(goal, count));
+    }
+
+    @Override
+    public void window(ReservationWindow window) {
+        this.window = window;
+    }
+
     @Override
     public int read(long position, ByteBuffer buffer) {
         var blockSize = blockSize();
@@ -0,0 +1,439 @@
+package org.atlantfs;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Mapping of file content as tree of extents, each extent is run of contiguous blocks.
+ * <p>
+ * Blocks which are not covered by any extent are holes, they are read as zeros and are allocated on first write.
+ * <p>
+ * Root of tree is kept inside of iblock. When root is full, its entries are moved into new node block and root points
+ * to it, so tree grows in depth. Node blocks are split in halves when full. Lookup takes {@code O(log n)} of extents,
+ * last found extent is remembered, so sequential access doesn't walk the tree at all.
+ * <p>
+ * Reads run concurrently under read lock of inode, so node blocks are loaded into concurrent map and last found extent
+ * is volatile. Writes are exclusive.
+ */
+class FileExtentTree implements FileIblock {
+
+    private static final Logger log = Logger.getLogger(FileExtentTree.class.getName());
+
+    private final AtlantFileSystem fileSystem;
+    private final Map<Block.Id, ExtentTreeNode> nodes = new ConcurrentHashMap<>();
+    private final Set<Block> dirtyBlocks = new LinkedHashSet<>();
+    private final ExtentTreeNode root;
+    private long size;
+    private int blocksCount;
+    private volatile Extent lastFound;
+    private ReservationWindow window;
+
+    FileExtentTree(AtlantFileSystem fileSystem, ExtentTreeNode root, long size, int blocksCount) {
+        this.fileSystem = fileSystem;
+        this.root = root;
+        this.size = size;
+        this.blocksCount = blocksCount;
+    }
+
+    static FileExtentTree read(AtlantFileSystem fileSystem, ByteBuffer buffer, long size, int blocksCount) {
+        var initial = buffer.position();
+        var root = ExtentTreeNode.read(fileSystem, Block.Id.ZERO, buffer.slice(initial, fileSystem.iblockSize()));
+        buffer.position(initial + fileSystem.iblockSize());
+        return new FileExtentTree(fileSystem, root, size, blocksCount);
+    }
+
+    static FileExtentTree init(AtlantFileSystem fileSystem) {
+        assert ExtentTreeNode.capacity(fileSystem.iblockSize()) > 0 : "Iblock should fit at least one extent";
+        return new FileExtentTree(fileSystem, ExtentTreeNode.init(fileSystem, Block.Id.ZERO, 0), 0, 0);
+    }
+
+    static FileExtentTree init(AtlantFileSystem fileSystem, Data data, Block.Id goal) throws BitmapRegion.NotEnoughSpaceException {
+        var result = init(fileSystem);
+        var dataBlock = DataBlock.init(fileSystem, data, goal);
+        result.insert(Extent.of(0, dataBlock.id(), 1));
+        result.dirtyBlocks.add(dataBlock);
+        result.blocksCount = 1;
+        result.size = data.size();
+        return result;
+    }
+
+    @Override
+    public void flush(ByteBuffer buffer) {
+        var iblockLength = fileSystem.iblockSize();
+        assert buffer.remaining() >= iblockLength;
+        var initial = buffer.position();
+        root.write(buffer);
+        assert buffer.position() - initial <= iblockLength;
+        buffer.position(initial + iblockLength);
+        dirtyBlocks.forEach(Block::flush);
+        dirtyBlocks.clear();
+    }
+
+    @Override
+    public int write(long position, ByteBuffer buffer) throws BitmapRegion.NotEnoughSpaceException, Data.NotEnoughSpaceException {
+        var initial = buffer.position();
+        var blockSize = blockSize();
+        var totalWritten = 0;
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        var firstBlockNumber = Math.toIntExact((position + buffer.position()) / blockSize);
+        var lastBlockNumber = Math.toIntExact((position + buffer.limit() - 1) / blockSize);
+        var allocated = allocate(firstBlockNumber, lastBlockNumber);
+        while (buffer.hasRemaining()) {
+            var positionPlus = position + buffer.position();
+            var blockNumber = Math.toIntExact(positionPlus / blockSize);
+            var offset = (int) (positionPlus % blockSize);
+            var length = Math.min(blockSize - offset, buffer.remaining());
+            var dataBlock = resolveForWrite(blockNumber, allocated.get(blockNumber - firstBlockNumber) || offset == 0 && length == blockSize);
+            var written = dataBlock.write(offset, buffer.slice(buffer.position(), length));
+            dirtyBlocks.add(dataBlock);
+            totalWritten += written;
+            buffer.position(buffer.position() + written);
+        }
+        size = Math.max(size, position + initial + totalWritten);
+        return totalWritten;
+    }
+
+    /**
+     * Resolve data block for write.
+     *
+     * @param blockNumber the logical block number
+     * @param overwrite   true if previous content of block is not needed, so block is not read
+     * @return the data block
+     */
+    private DataBlock resolveForWrite(int blockNumber, boolean overwrite) {
+        var extent = find(blockNumber);
+        assert extent != null : "Block [blockNumber=" + blockNumber + "] should be mapped";
+        var id = extent.physical(blockNumber);
+        return overwrite
+                ? DataBlock.init(fileSystem, id)
+                : DataBlock.read(fileSystem, id);
+    }
+
+    /**
+     * Map all holes of logical range to new blocks taken by single reservation.
+     * <p>
+     * Blocks outside of range stay holes, e.g. gap between end of file and position of write is not allocated.
+     *
+     * @param firstBlockNumber the first logical block number
+     * @param lastBlockNumber  the last logical block number, inclusive
+     * @return the bits of newly allocated blocks relative to the first block number
+     * @throws BitmapRegion.NotEnoughSpaceException if there is not enough space
+     */
+    private BitSet allocate(int firstBlockNumber, int lastBlockNumber) throws BitmapRegion.NotEnoughSpaceException {
+        var holes = new BitSet();
+        for (int blockNumber = firstBlockNumber; blockNumber <= lastBlockNumber; blockNumber++) {
+            var extent = find(blockNumber);
+            if (extent == null) {
+                holes.set(blockNumber - firstBlockNumber);
+            } else {
+                blockNumber = extent.end() - 1;
+            }
+        }
+        var count = holes.cardinality();
+        if (count == 0) {
+            return holes;
+        }
+        var goal = goal(firstBlockNumber + holes.nextSetBit(0));
+        var ranges = new ArrayDeque<>(window != null ? window.reserve(goal, count) : fileSystem.reserveBlocksNear(goal, count));
+        var hole = holes.nextSetBit(0);
+        while (hole >= 0) {
+            var holeEnd = holes.nextClearBit(hole);
+            var logical = firstBlockNumber + hole;
+            while (logical < firstBlockNumber + holeEnd) {
+                var range = ranges.removeFirst();
+                var length = Math.min(range.length(), firstBlockNumber + holeEnd - logical);
+                insert(Extent.of(logical, range.from(), length));
+                if (length < range.length()) {
+                    ranges.addFirst(Block.Range.of(range.from().plus(length), range.length() - length));
+                }
+                logical += length;
+            }
+            hole = holes.nextSetBit(holeEnd);
+        }
+        blocksCount += count;
+        return holes;
+    }
+
+    @Override
+    public int read(long position, ByteBuffer buffer) {
+        var blockSize = blockSize();
+        var totalRead = 0;
+        while (buffer.hasRemaining()) {
+            var positionPlus = position + buffer.position();
+            if (positionPlus >= size) {
+                return totalRead;
+            }
+            var blockNumber = Math.toIntExact(positionPlus / blockSize);
+            var offset = (int) (positionPlus % blockSize);
+            var length = (int) Math.min(Math.min(blockSize - offset, buffer.remaining()), size - positionPlus);
+            var extent = find(blockNumber);
+            if (extent == null) {
+                buffer.put(buffer.position(), new byte[length]);
+            } else {
+                var block = fileSystem.readBlock(extent.physical(blockNumber));
+                buffer.put(buffer.position(), block, offset, length);
+            }
+            buffer.position(buffer.position() + length);
+            totalRead += length;
+        }
+        return totalRead;
+    }
+
+    /**
+     * Find extent which contains logical block.
+     *
+     * @param blockNumber the logical block number
+     * @return the extent or null if block is not mapped
+     */
+    Extent find(int blockNumber) {
+        var cached = lastFound;
+        if (cached != null && cached.contains(blockNumber)) {
+            return cached;
+        }
+        var node = root;
+        while (!node.isLeaf()) {
+            var index = node.search(blockNumber);
+            if (index < 0) {
+                return null;
+            }
+            node = child(node.get(index));
+        }
+        var index = node.search(blockNumber);
+        if (index < 0 || !node.get(index).contains(blockNumber)) {
+            return null;
+        }
+        var result = node.get(index);
+        lastFound = result;
+        return result;
+    }
+
+    /**
+     * Block where logical block should be placed to continue the last extent before it.
+     *
+     * @param blockNumber the logical block number
+     * @return the goal or null if there is no extent before logical block
+     */
+    Block.Id goal(int blockNumber) {
+        var node = root;
+        while (!node.isLeaf()) {
+            var index = node.search(blockNumber);
+            if (index < 0) {
+                return null;
+            }
+            node = child(node.get(index));
+        }
+        var index = node.search(blockNumber);
+        if (index < 0) {
+            return null;
+        }
+        var extent = node.get(index);
+        return extent.physical().plus(Math.min(blockNumber, extent.end()) - extent.logical());
+    }
+
+    @Override
+    public Block.Id goal() {
+        return goal(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void window(ReservationWindow window) {
+        this.window = window;
+    }
+
+    /**
+     * Map run of blocks, extent is merged with neighbours when possible.
+     *
+     * @param extent the extent to insert
+     * @throws BitmapRegion.NotEnoughSpaceException if there is no space for new node
+     */
+    void insert(Extent extent) throws BitmapRegion.NotEnoughSpaceException {
+        log.finer(() -> "Inserting extent [extent=" + extent + "]...");
+        lastFound = null;
+        var split = insert(root, extent);
+        assert split == null : "Root is never split";
+        if (root.size() > ExtentTreeNode.capacity(fileSystem.iblockSize())) {
+            var child = ExtentTreeNode.init(fileSystem, fileSystem.reserveBlock(), root.depth());
+            root.pushDown(child);
+            nodes.put(child.id(), child);
+            dirtyBlocks.add(child);
+            log.fine(() -> "Extent tree has grown [depth=" + root.depth() + "]");
+        }
+    }
+
+    private ExtentTreeNode insert(ExtentTreeNode node, Extent extent) throws BitmapRegion.NotEnoughSpaceException {
+        if (node.isLeaf()) {
+            node.insert(extent);
+        } else {
+            var index = Math.max(0, node.search(extent.logical()));
+            var entry = node.get(index);
+            var child = child(entry);
+            var right = insert(child, extent);
+            if (extent.logical() < entry.logical()) {
+                node.set(index, Extent.index(extent.logical(), child.id()));
+            }
+            if (right != null) {
+                node.add(index + 1, Extent.index(right.get(0).logical(), right.id()));
+            }
+        }
+        if (node != root) {
+            dirtyBlocks.add(node);
+            if (node.size() > ExtentTreeNode.capacity(blockSize())) {
+                var right = ExtentTreeNode.init(fileSystem, fileSystem.reserveBlock(), node.depth());
+                node.splitInto(right, node.get(node.size() - 1).logical() <= extent.logical());
+                nodes.put(right.id(), right);
+                dirtyBlocks.add(right);
+                return right;
+            }
+        }
+        return null;
+    }
+
+    private ExtentTreeNode child(Extent entry) {
+        return nodes.computeIfAbsent(entry.physical(), id -> ExtentTreeNode.read(fileSystem, id));
+    }
+
+    /**
+     * Collect all mapped extents in logical order.
+     *
+     * @return the extents
+     */
+    List<Extent> extents() {
+        var result = new ArrayList<Extent>();
+        collect(root, result);
+        return result;
+    }
+
+    private void collect(ExtentTreeNode node, List<Extent> result) {
+        if (node.isLeaf()) {
+            result.addAll(node.entries());
+            return;
+        }
+        for (var entry : node.entries()) {
+            collect(child(entry), result);
+        }
+    }
+
+    @Override
+    public void delete() {
+        delete(root);
+        nodes.clear();
+        dirtyBlocks.clear();
+    }
+
+    private void delete(ExtentTreeNode node) {
+        if (node.isLeaf()) {
+            fileSystem.freeBlockRanges(node.entries().stream().map(Extent::range).toList());
+        } else {
+            for (var entry : node.entries()) {
+                delete(child(entry));
+            }
+        }
+        node.delete();
+    }
+
+    @Override
+    public IblockType type() {
+        return IblockType.FILE_EXTENT_TREE;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Number of allocated data blocks, holes are not counted.
+     */
+    @Override
+    public int blocksCount() {
+        return blocksCount;
+    }
+
+    int depth() {
+        return root.depth();
+    }
+
+    private int blockSize() {
+        return fileSystem.blockSize();
+    }
+
+    /**
+     * Run of {@code length} blocks starting from logical block number mapped to contiguous physical blocks.
+     * <p>
+     * In index nodes {@code physical} is block of child node and {@code length} is not used.
+     */
+    record Extent(int logical, Block.Id physical, int length) {
+
+        static final int LENGTH = 4 + Block.Id.LENGTH + 4;
+
+        static Extent of(int logical, Block.Id physical, int length) {
+            assert logical >= 0;
+            assert length > 0;
+            return new Extent(logical, physical, length);
+        }
+
+        static Extent index(int logical, Block.Id child) {
+            return new Extent(logical, child, 0);
+        }
+
+        static Extent read(ByteBuffer buffer) {
+            var logical = buffer.getInt();
+            var physical = Block.Id.read(buffer);
+            var length = buffer.getInt();
+            return new Extent(logical, physical, length);
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putInt(logical);
+            physical.write(buffer);
+            buffer.putInt(length);
+        }
+
+        int end() {
+            return logical + length;
+        }
+
+        boolean contains(int blockNumber) {
+            return blockNumber >= logical && blockNumber < end();
+        }
+
+        Block.Id physical(int blockNumber) {
+            assert contains(blockNumber);
+            return physical.plus(blockNumber - logical);
+        }
+
+        boolean isFollowedBy(Extent next) {
+            return end() == next.logical && physical.plus(length).equals(next.physical);
+        }
+
+        Extent merge(Extent next) {
+            assert isFollowedBy(next);
+            return new Extent(logical, physical, length + next.length);
+        }
+
+        Block.Range range() {
+            return Block.Range.of(physical, length);
+        }
+
+        @Override
+        public String toString() {
+            return "Extent{" +
+                    "logical=" + logical +
+                    ", physical=" + physical.value() +
+                    ", length=" + length +
+                    '}';
+        }
+
+    }
+
+}
@@ -1,4 +1,13 @@
 package org.atlantfs;
 
 interface FileIblock extends Iblock, FileOperations {
+
+    /**
+     * Take new blocks from window instead of bitmaps, null to reserve them directly.
+     *
+     * @param window the reservation window of open channel
+     */
+    default void window(ReservationWindow window) {
+    }
+
 }
@@ -7,6 +7,8 @@ class FileInode extends Inode<FileIblock> implements FileOperations {
 
     private static final Logger log = Logger.getLogger(FileInode.class.getName());
 
+    private ReservationWindow window;
+
     FileInode(AtlantFileSystem fileSystem, Inode.Id id, FileIblock iBlock) {
         super(fileSystem, id, iBlock);
         checkInvariant();
@@ -46,11 +48,34 @@ class FileInode extends Inode<FileIblock> implements FileOperations {
         }
     }
 
-    private void upgradeInlineData() throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
-        log.fine(() -> "Upgrading inode [id=" + id + "] from inline data to block mapping...");
+    /**
+     * Take new blocks from window while channel is open, should be called under write lock.
+     *
+     * @param window the reservation window
+     */
+    void openWindow(ReservationWindow window) {
+        this.window = window;
+        iblock.window(window);
+    }
+
+    /**
+     * Stop using window and free its unused blocks, should be called under write lock.
+     */
+    void closeWindow() {
+        if (window == null) {
+            return;
+        }
+        iblock.window(null);
+        window.release();
+        window = null;
+    }
+
+    private void upgradeInlineData() throws BitmapRegion.NotEnoughSpaceException {
+        log.fine(() -> "Upgrading inode [id=" + id + "] from inline data to extent tree...");
         assert iblock instanceof DataIblock : "Only FILE_INLINE_DATA can be upgraded";
         var data = (DataIblock) iblock;
-        iblock = FileBlockMapping.init(fileSystem, data.data());
+        iblock = FileExtentTree.init(fileSystem, data.data(), goal());
+        iblock.window(window);
         dirty = true;
         checkInvariant();
     }
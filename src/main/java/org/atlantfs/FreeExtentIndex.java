@@ -0,0 +1,133 @@
+package org.atlantfs;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Free runs of all bitmaps of {@link BitmapRegion}, ordered by start and by length.
+ * <p>
+ * Positions are numbers of items from the start of region, runs continue across bitmap boundaries. Index is built once
+ * from bitmaps and then updated by every reservation and free, so best-fit search and the largest free extent take
+ * {@code O(log n)} of extents. Updates are idempotent: freeing free items or reserving reserved ones changes nothing.
+ * <p>
+ * Thread safe.
+ */
+final class FreeExtentIndex {
+
+    /**
+     * Length of extent by its start.
+     */
+    private final TreeMap<Integer, Integer> byStart = new TreeMap<>();
+
+    /**
+     * Extents packed as length in high and start in low half of long.
+     */
+    private final TreeSet<Long> byLength = new TreeSet<>();
+
+    private long totalFree;
+
+    /**
+     * Mark items as free, extent is joined with overlapping and adjacent ones.
+     *
+     * @param from   the first item
+     * @param length the number of items
+     */
+    synchronized void freed(int from, int length) {
+        assert from >= 0 && length > 0;
+        var start = from;
+        var end = from + length;
+        var floor = byStart.floorEntry(from);
+        if (floor != null && floor.getKey() + floor.getValue() >= from) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getKey() + floor.getValue());
+            remove(floor.getKey(), floor.getValue());
+        }
+        var next = byStart.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getKey() + next.getValue());
+            remove(next.getKey(), next.getValue());
+            next = byStart.ceilingEntry(start);
+        }
+        add(start, end - start);
+        checkInvariant();
+    }
+
+    /**
+     * Mark items as reserved, extents are cut around them.
+     *
+     * @param from   the first item
+     * @param length the number of items
+     */
+    synchronized void reserved(int from, int length) {
+        assert from >= 0 && length > 0;
+        var end = from + length;
+        var floor = byStart.floorEntry(from);
+        var current = floor != null && floor.getKey() + floor.getValue() > from ? floor : byStart.ceilingEntry(from);
+        while (current != null && current.getKey() < end) {
+            var currentStart = current.getKey();
+            var currentEnd = currentStart + current.getValue();
+            remove(currentStart, current.getValue());
+            if (currentStart < from) {
+                add(currentStart, from - currentStart);
+            }
+            if (currentEnd > end) {
+                add(end, currentEnd - end);
+            }
+            current = byStart.higherEntry(currentStart);
+        }
+        checkInvariant();
+    }
+
+    /**
+     * Find the smallest extent of at least specified length, the first one if there are several.
+     *
+     * @param length the length of extent
+     * @return the start of extent or -1 if there is no such extent
+     */
+    synchronized int bestFit(int length) {
+        var result = byLength.ceiling(pack(length, 0));
+        return result == null ? -1 : result.intValue();
+    }
+
+    synchronized int largest() {
+        return byLength.isEmpty() ? 0 : (int) (byLength.last() >>> 32);
+    }
+
+    synchronized int size() {
+        return byStart.size();
+    }
+
+    synchronized long totalFree() {
+        return totalFree;
+    }
+
+    private void add(int start, int length) {
+        byStart.put(start, length);
+        byLength.add(pack(length, start));
+        totalFree += length;
+    }
+
+    private void remove(int start, int length) {
+        byStart.remove(start);
+        byLength.remove(pack(length, start));
+        totalFree -= length;
+    }
+
+    private static long pack(int length, int start) {
+        return (long) length << 32 | start;
+    }
+
+    private void checkInvariant() {
+        assert byStart.size() == byLength.size() : "Index by start [" + byStart.size() + "] and by length [" + byLength.size() + "] should have the same extents";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FreeExtentIndex{" +
+                "extents=" + byStart.size() +
+                ", totalFree=" + totalFree +
+                ", largest=" + largest() +
+                '}';
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.atlantfs;
+
+import java.util.Arrays;
+
+/**
+ * Second level of {@link BitmapRegion}: number of free items and the longest free run of each bitmap block.
+ * <p>
+ * Longest runs are kept in max segment tree, so the first bitmap with free run of at least required length is found in
+ * {@code O(log n)} of bitmaps without loading any of them. Bitmap with any free item has run of at least 1.
+ * <p>
+ * Thread safe.
+ */
+final class FreeSpaceSummary {
+
+    private final int numberOfBitmaps;
+    private final int leaves;
+    private final int[] free;
+    private final int[] tree;
+    private long totalFree;
+
+    FreeSpaceSummary(int numberOfBitmaps) {
+        assert numberOfBitmaps > 0;
+        this.numberOfBitmaps = numberOfBitmaps;
+        this.leaves = Integer.highestOneBit(Math.max(1, numberOfBitmaps - 1)) << 1;
+        this.free = new int[numberOfBitmaps];
+        this.tree = new int[2 * leaves];
+    }
+
+    /**
+     * Update state of bitmap, should be called under lock of bitmap after it was changed.
+     *
+     * @param bitmapNumber the number of bitmap
+     * @param bitmap       the bitmap
+     */
+    synchronized void update(int bitmapNumber, Bitmap bitmap) {
+        totalFree += bitmap.freeCount() - free[bitmapNumber];
+        free[bitmapNumber] = bitmap.freeCount();
+        var node = leaves + bitmapNumber;
+        tree[node] = bitmap.longestFreeRun();
+        for (node >>= 1; node > 0; node >>= 1) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+        checkInvariant();
+    }
+
+    /**
+     * Find the first bitmap with free run of at least specified length.
+     *
+     * @param from   the number of bitmap to start from
+     * @param length the length of run
+     * @return the number of bitmap or -1 if there is no such bitmap
+     */
+    synchronized int first(int from, int length) {
+        assert length > 0;
+        if (from >= numberOfBitmaps) {
+            return -1;
+        }
+        return first(1, 0, leaves, from, length);
+    }
+
+    private int first(int node, int low, int high, int from, int length) {
+        if (high <= from || tree[node] < length) {
+            return -1;
+        }
+        if (node >= leaves) {
+            return low;
+        }
+        var middle = (low + high) >>> 1;
+        var result = first(2 * node, low, middle, from, length);
+        return result >= 0 ? result : first(2 * node + 1, middle, high, from, length);
+    }
+
+    synchronized int free(int bitmapNumber) {
+        return free[bitmapNumber];
+    }
+
+    synchronized long totalFree() {
+        return totalFree;
+    }
+
+    synchronized int longestFreeRun() {
+        return tree[1];
+    }
+
+    private void checkInvariant() {
+        assert totalFree >= 0;
+        assert totalFree == Arrays.stream(free).asLongStream().sum() : "Total free [" + totalFree + "] should be sum of free items of bitmaps";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FreeSpaceSummary{" +
+                "totalFree=" + totalFree +
+                ", longestFreeRun=" + tree[1] +
+                '}';
+    }
+
+}
@@ -15,4 +15,13 @@ interface Iblock {
 
     void delete() throws IOException;
 
+    /**
+     * Block new blocks of iblock should be allocated near, usually the one after the last block.
+     *
+     * @return the goal or null if iblock has no blocks
+     */
+    default Block.Id goal() {
+        return null;
+    }
+
 }
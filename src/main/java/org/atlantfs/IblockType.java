@@ -8,13 +8,13 @@ enum IblockType {
 
     FILE_BLOCK_MAPPING(2, FileType.REGULAR_FILE, (fileSystem, buffer, size, _) -> FileBlockMapping.read(fileSystem, buffer, size)),
 
-    FILE_EXTENT_TREE(3, FileType.REGULAR_FILE, (_, _, _, _) -> null), // Unsupported yet
+    FILE_EXTENT_TREE(3, FileType.REGULAR_FILE, FileExtentTree::read),
 
     DIR_INLINE_LIST(4, FileType.DIRECTORY, (_, buffer, _, _) -> DirListIblock.read(buffer)),
 
     DIR_BLOCK_MAPPING(5, FileType.DIRECTORY, (fileSystem, buffer, _, _) -> DirBlockMapping.read(fileSystem, buffer)),
 
-    DIR_TREE(6, FileType.DIRECTORY, (_, _, _, _) -> null); // Unsupported yet
+    DIR_HASH_TREE(6, FileType.DIRECTORY, (fileSystem, buffer, _, blocksCount) -> DirTree.read(fileSystem, buffer, blocksCount));
 
     static final int LENGTH = 1;
 
@@ -36,7 +36,7 @@ enum IblockType {
             case 3 -> FILE_EXTENT_TREE;
             case 4 -> DIR_INLINE_LIST;
             case 5 -> DIR_BLOCK_MAPPING;
-            case 6 -> DIR_TREE;
+            case 6 -> DIR_HASH_TREE;
             default -> throw new IllegalArgumentException("Unknown file type [" + value + "]");
         };
     }
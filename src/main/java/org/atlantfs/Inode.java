@@ -19,6 +19,18 @@ abstract class Inode<B extends Iblock> {
 
     protected boolean dirty;
 
+    /**
+     * Block new blocks are allocated near while inode has none of its own, e.g. goal of parent directory.
+     * <p>
+     * Kept in memory only.
+     */
+    private Block.Id goal;
+
+    /**
+     * Set once iblock is deleted, so holders of the instance, e.g. attributes carried by listed paths, see it is gone.
+     */
+    private volatile boolean deleted;
+
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     protected Inode(AtlantFileSystem fileSystem, Id id, B iblock) {
@@ -69,11 +81,16 @@ abstract class Inode<B extends Iblock> {
         try {
             beginWrite();
             iblock.delete();
+            deleted = true;
         } finally {
             endWrite();
         }
     }
 
+    boolean isDeleted() {
+        return deleted;
+    }
+
     void beginRead() {
         lock.readLock().lock();
     }
@@ -90,10 +107,33 @@ abstract class Inode<B extends Iblock> {
         lock.writeLock().unlock();
     }
 
+    /**
+     * Take write lock only if it is not held by another thread.
+     *
+     * @return true if lock is taken
+     */
+    boolean tryBeginWrite() {
+        return lock.writeLock().tryLock();
+    }
+
     protected void checkInvariant() {
         assert iblock != null : "Iblock should be specified";
     }
 
+    /**
+     * Block new blocks of inode should be allocated near.
+     *
+     * @return the goal or null if there is no preference
+     */
+    Block.Id goal() {
+        var result = iblock.goal();
+        return result != null ? result : goal;
+    }
+
+    void setGoal(Block.Id goal) {
+        this.goal = goal;
+    }
+
     int blockSize() {
         return fileSystem.blockSize();
     }
@@ -1,5 +1,10 @@
 package org.atlantfs;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 class InodeTableRegion implements Region {
@@ -35,24 +40,77 @@ class InodeTableRegion implements Region {
         return cache.computeIfAbsent(inodeId, fileSystem::readInode);
     }
 
-    FileInode createFile() throws BitmapRegion.NotEnoughSpaceException {
-        return (FileInode) createInode(FileInode::init);
+    /**
+     * Get inodes, inodes which are not cached are read in order of ids and inodes which share block of inode table are
+     * read by single read of the block.
+     *
+     * @param inodeIds the ids of inodes
+     * @return the inodes by id
+     */
+    Map<Inode.Id, Inode<?>> getAll(Collection<Inode.Id> inodeIds) {
+        var result = new HashMap<Inode.Id, Inode<?>>();
+        var missing = new ArrayList<Inode.Id>();
+        inodeIds.stream()
+                .distinct()
+                .sorted(Comparator.comparingInt(Inode.Id::value))
+                .forEach(inodeId -> {
+                    checkInodeIdLimit(inodeId);
+                    var cached = cache.get(inodeId);
+                    if (cached != null) {
+                        result.put(inodeId, cached);
+                    } else {
+                        missing.add(inodeId);
+                    }
+                });
+        for (int from = 0; from < missing.size(); ) {
+            var block = calcBlock(missing.get(from), blockSize(), firstBlock());
+            var to = from + 1;
+            while (to < missing.size() && calcBlock(missing.get(to), blockSize(), firstBlock()).equals(block)) {
+                to++;
+            }
+            for (var inode : fileSystem.readInodes(missing.subList(from, to))) {
+                result.put(inode.getId(), cache.computeIfAbsent(inode.getId(), _ -> inode));
+            }
+            from = to;
+        }
+        return result;
+    }
+
+    /**
+     * Create file near parent, inode is reserved next to inode of parent and data goes near data of parent.
+     *
+     * @param parent the parent directory
+     * @return the file inode
+     * @throws BitmapRegion.NotEnoughSpaceException if there is no free inode
+     */
+    FileInode createFile(DirInode parent) throws BitmapRegion.NotEnoughSpaceException {
+        return (FileInode) createInode(parent, FileInode::init);
     }
 
     DirInode createDirectory() throws BitmapRegion.NotEnoughSpaceException {
-        var reserved = fileSystem.reserveInode();
-        checkInodeIdLimit(reserved);
-        var result = DirInode.init(fileSystem, reserved);
-        result.flush();
-        cache.put(reserved, result);
-        return result;
+        return (DirInode) createInode(fileSystem.reserveInode(), null, DirInode::init);
+    }
+
+    /**
+     * Create directory near parent, inode is reserved next to inode of parent and data goes near data of parent.
+     *
+     * @param parent the parent directory
+     * @return the directory inode
+     * @throws BitmapRegion.NotEnoughSpaceException if there is no free inode
+     */
+    DirInode createDirectory(DirInode parent) throws BitmapRegion.NotEnoughSpaceException {
+        return (DirInode) createInode(parent, DirInode::init);
+    }
+
+    private Inode<?> createInode(DirInode parent, BiFunction<AtlantFileSystem, Inode.Id, Inode<?>> function) throws BitmapRegion.NotEnoughSpaceException {
+        return createInode(fileSystem.reserveInodeNear(parent.getId()), parent.goal(), function);
     }
 
-    private Inode<?> createInode(BiFunction<AtlantFileSystem, Inode.Id, Inode> function) throws BitmapRegion.NotEnoughSpaceException {
-        var reserved = fileSystem.reserveInode();
+    private Inode<?> createInode(Inode.Id reserved, Block.Id goal, BiFunction<AtlantFileSystem, Inode.Id, Inode<?>> function) {
         checkInodeIdLimit(reserved);
         var inode = function.apply(fileSystem, reserved);
-        fileSystem.writeInode(inode);
+        inode.setGoal(goal);
+        inode.flush();
         cache.put(reserved, inode);
         return inode;
     }
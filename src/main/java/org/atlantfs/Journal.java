@@ -0,0 +1,818 @@
+package org.atlantfs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of metadata blocks.
+ * <p>
+ * Every file system operation which changes metadata runs as a handle between {@link #begin()} and {@link #end()}.
+ * Metadata writes don't go to their home location, instead they update in-memory image of block and mark it as part
+ * of running transaction. Reads of such blocks are served from image. All handles which are active at the same time
+ * belong to the same running transaction. Handles started while committer drains running transaction wait until it is
+ * frozen and belong to the next one, so transaction can't be extended by new handles forever.
+ * <p>
+ * Committer waits until running transaction has no active handles, freezes images of its blocks and appends whole
+ * transaction to journal as single sequential write followed by single force. Only after that images are written
+ * to their home locations. So one force covers all operations grouped into transaction. Commit happens periodically
+ * in background, on {@link #force()} and on {@link #close()}.
+ * <p>
+ * Journal region layout, the first block is header and the rest is circular log of transactions:
+ * <pre>
+ * header:     | magic | type | start sequence (8) | start block index |
+ * revoke:     | magic | type | sequence (8) | count | block id * count |
+ * descriptor: | magic | type | sequence (8) | count | block id * count |  followed by count block images
+ * commit:     | magic | type | sequence (8) | total count | crc32 of revokes and images |
+ * </pre>
+ * On mount {@link #replay()} applies every transaction with valid commit block starting from header. When there is
+ * not enough space in log, home locations are forced to storage and log is started over (checkpoint).
+ * <p>
+ * Home locations are never written without journaling. Every handle is given budget of {@link #HANDLE_CREDITS} blocks
+ * when it begins: if running transaction has no room for budgets of all its handles, handle waits until some of them
+ * end or commits running transaction first. Handle which still makes transaction larger than whole log aborts journal:
+ * running transaction is dropped, nothing is written to log or home locations anymore, so replay on next mount
+ * restores state of the last committed transaction and partial changes of the handle are never logged.
+ * <p>
+ * File content is not journaled, data blocks are written directly. When freed metadata block is reused for data it is
+ * revoked, so neither pending image nor older logged images of the block overwrite data later.
+ */
+class Journal implements Region {
+
+    private static final Logger log = Logger.getLogger(Journal.class.getName());
+
+    static final int MAGIC = 0x4A524E4C;
+    static final int HEADER = 1;
+    static final int DESCRIPTOR = 2;
+    static final int COMMIT = 3;
+    static final int REVOKE = 4;
+    static final int RECORD_HEADER_LENGTH = 4 + 4 + 8 + 4;
+
+    /**
+     * How long handles started while holding locks wait for committer before joining transaction which is being
+     * drained.
+     */
+    private static final long MAX_DRAIN_WAIT_MILLIS = 10;
+
+    /**
+     * Number of blocks single handle is expected to change at most, less for small journals so two handles always fit.
+     */
+    static final int HANDLE_CREDITS = 64;
+
+    private final AtlantFileSystem fileSystem;
+    private final BlockDevice home;
+    private final BlockDevice storage;
+    private final AtlantStatistics statistics;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private final Condition ended = lock.newCondition();
+    private final Condition frozen = lock.newCondition();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final ThreadLocal<Handle> handle = new ThreadLocal<>();
+    private final Map<Block.Id, byte[]> images = new ConcurrentHashMap<>();
+    private final Set<Block.Id> inflight = ConcurrentHashMap.newKeySet();
+    private final Set<Block.Id> logged = ConcurrentHashMap.newKeySet();
+    private final Set<Block.Id> revokedInflight = new HashSet<>();
+    private final AtomicBoolean commitRequested = new AtomicBoolean();
+    private Set<Block.Id> running = new LinkedHashSet<>();
+    private Set<Block.Id> revoking = new LinkedHashSet<>();
+    private int handles;
+    private boolean draining;
+    private volatile IllegalStateException aborted;
+    private long sequence;
+    private long startSequence;
+    private int start;
+    private int head;
+    private ScheduledExecutorService committer;
+
+    private Journal(AtlantFileSystem fileSystem, BlockDevice home, BlockDevice storage, AtlantStatistics statistics) {
+        this.fileSystem = fileSystem;
+        this.home = home;
+        this.storage = storage;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Create empty journal.
+     *
+     * @param fileSystem the file system
+     * @param home       the device for home locations of blocks, can be cached
+     * @param storage    the device for journal records, should not be cached
+     * @param statistics the statistics
+     * @return the journal
+     * @throws IOException if I/O error occurs
+     */
+    static Journal init(AtlantFileSystem fileSystem, BlockDevice home, BlockDevice storage, AtlantStatistics statistics) throws IOException {
+        var journal = new Journal(fileSystem, home, storage, statistics);
+        assert journal.numberOfBlocks() > 2 : "Journal should have header and at least 2 log blocks";
+        journal.sequence = 1;
+        journal.startSequence = 1;
+        journal.start = 1;
+        journal.head = 1;
+        journal.writeHeader();
+        journal.storage.force();
+        return journal;
+    }
+
+    /**
+     * Open journal and apply all committed transactions to home locations.
+     *
+     * @param fileSystem the file system
+     * @param home       the device for home locations of blocks, can be cached
+     * @param storage    the device for journal records, should not be cached
+     * @param statistics the statistics
+     * @return the journal
+     * @throws IOException if I/O error occurs
+     */
+    static Journal replay(AtlantFileSystem fileSystem, BlockDevice home, BlockDevice storage, AtlantStatistics statistics) throws IOException {
+        var journal = new Journal(fileSystem, home, storage, statistics);
+        journal.replay();
+        return journal;
+    }
+
+    /**
+     * Start periodic commits in background.
+     *
+     * @param commitMillis the period of commits
+     */
+    void start(long commitMillis) {
+        committer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("atlant-journal").factory());
+        committer.scheduleWithFixedDelay(this::commitQuietly, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //region handles
+    /**
+     * Start handle, while running transaction is drained handle waits until it is frozen and joins the next one.
+     * Should be called before any lock is taken.
+     */
+    void begin() {
+        begin(false);
+    }
+
+    /**
+     * Start handle while current thread holds locks, e.g. lock of inode held by open channel. Handles being drained can
+     * wait for these locks, so handle joins transaction which is being drained or committed in background after short
+     * wait.
+     */
+    void beginHoldingLocks() {
+        begin(true);
+    }
+
+    private void begin(boolean holdingLocks) {
+        var current = handle.get();
+        if (current != null) {
+            current.depth++;
+            return;
+        }
+        checkNotAborted();
+        if (holdingLocks) {
+            joinRunning();
+        } else {
+            waitForRoom();
+        }
+        handle.set(new Handle());
+        statistics.incrementJournalHandles();
+    }
+
+    /**
+     * Join running transaction once it has room for budget of handle, otherwise running transaction is committed at
+     * handle boundary.
+     */
+    private void waitForRoom() {
+        while (true) {
+            lock.lock();
+            try {
+                while (draining) {
+                    frozen.awaitUninterruptibly();
+                }
+                if (fits(running.size() + (handles + 1) * credits())) {
+                    handles++;
+                    return;
+                }
+                if (running.isEmpty() && revoking.isEmpty()) {
+                    // Only budgets of active handles don't leave room, there is nothing to commit until some of them end
+                    ended.awaitUninterruptibly();
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                commit();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Join running transaction after short wait for commit if it has no room for budget of handle. Current thread
+     * holds locks, so it can't wait for handles being drained.
+     */
+    private void joinRunning() {
+        lock.lock();
+        try {
+            var room = fits(running.size() + (handles + 1) * credits());
+            if (!room) {
+                requestCommit();
+            }
+            if (draining || !room) {
+                var _ = frozen.await(MAX_DRAIN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            handles++;
+            lock.unlock();
+        }
+    }
+
+    void end() {
+        var current = handle.get();
+        assert current != null : "Handle was not started";
+        if (--current.depth > 0) {
+            return;
+        }
+        handle.remove();
+        lock.lock();
+        try {
+            handles--;
+            ended.signalAll();
+            if (handles == 0) {
+                drained.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    //endregion
+
+    /**
+     * Write part of metadata block into running transaction.
+     *
+     * @param id     the block id
+     * @param offset the offset inside block
+     * @param buffer the bytes to write
+     * @return the number of bytes written
+     */
+    int write(Block.Id id, int offset, ByteBuffer buffer) {
+        if (handle.get() == null) {
+            beginHoldingLocks();
+            try {
+                return write(id, offset, buffer);
+            } finally {
+                end();
+            }
+        }
+        var length = buffer.remaining();
+        lock.lock();
+        try {
+            checkNotAborted();
+            if (!running.contains(id) && !fits(running.size() + 1)) {
+                throw abort("Transaction doesn't fit into journal [blockId=" + id + ", blocks=" + (running.size() + 1) + ", capacity=" + capacity() + "]");
+            }
+            var image = images.get(id);
+            if (image == null) {
+                image = new byte[blockSize()];
+                var _ = home.read(ByteBuffer.wrap(image), position(id));
+                images.put(id, image);
+            }
+            buffer.get(buffer.position(), image, offset, length);
+            running.add(id);
+            revoking.remove(id);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+        return length;
+    }
+
+    /**
+     * Read part of block from image if block is changed by not yet checkpointed transaction.
+     *
+     * @param id     the block id
+     * @param offset the offset inside block
+     * @param buffer the buffer to read into
+     * @return true if block has image and buffer is filled, false if block should be read from device
+     */
+    boolean read(Block.Id id, int offset, ByteBuffer buffer) {
+        if (!images.containsKey(id)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            var image = images.get(id);
+            if (image == null) {
+                return false;
+            }
+            buffer.put(image, offset, buffer.remaining());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Revoke block which is going to be written directly, e.g. freed metadata block reused for data.
+     * <p>
+     * Pending image is forgotten, frozen image is not written to home location and revoke record is logged with running
+     * transaction, so replay doesn't apply older images of the block.
+     *
+     * @param id the block id
+     */
+    void revoke(Block.Id id) {
+        if (!images.containsKey(id) && !inflight.contains(id) && !logged.contains(id)) {
+            return;
+        }
+        if (handle.get() == null) {
+            beginHoldingLocks();
+            try {
+                revoke(id);
+                return;
+            } finally {
+                end();
+            }
+        }
+        // Committer writes home locations under checkpoint lock, so stale image can't overwrite following direct write
+        checkpointLock.lock();
+        try {
+            lock.lock();
+            try {
+                checkNotAborted();
+                images.remove(id);
+                running.remove(id);
+                revoking.add(id);
+                if (inflight.contains(id)) {
+                    revokedInflight.add(id);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    //region commit
+    /**
+     * Check that transaction of specified number of blocks and running revokes fits into log, should be called under
+     * lock.
+     */
+    private boolean fits(int blocks) {
+        return needed(blocks, revoking.size()) <= capacity() - 1;
+    }
+
+    /**
+     * Budget of single handle, two handles always fit into empty log.
+     */
+    private int credits() {
+        return Math.max(1, Math.min(HANDLE_CREDITS, (capacity() - 2) / 4));
+    }
+
+    /**
+     * Drop running transaction and refuse all following handles, changes of running transaction are never logged.
+     *
+     * @param message the reason
+     * @return the exception to throw
+     */
+    private IllegalStateException abort(String message) {
+        assert lock.isHeldByCurrentThread();
+        var exception = new IllegalStateException(message);
+        log.severe(() -> "Aborting journal, running transaction is dropped [sequence=" + sequence + ", reason=" + message + "]");
+        for (var id : running) {
+            if (!inflight.contains(id)) {
+                images.remove(id);
+            }
+        }
+        running = new LinkedHashSet<>();
+        revoking = new LinkedHashSet<>();
+        aborted = exception;
+        return exception;
+    }
+
+    private void checkNotAborted() {
+        var cause = aborted;
+        if (cause != null) {
+            throw new IllegalStateException("Journal is aborted", cause);
+        }
+    }
+
+    /**
+     * Commit in background, used when current thread holds locks and can't wait for handles being drained.
+     */
+    private void requestCommit() {
+        if (committer == null || committer.isShutdown() || !commitRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            committer.execute(() -> {
+                commitRequested.set(false);
+                commitQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            commitRequested.set(false);
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.SEVERE, "Failed to commit journal transaction [sequence=" + sequence + "]", e);
+        }
+    }
+
+    /**
+     * Commit running transaction and write its blocks to home locations.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    void commit() throws IOException {
+        commitLock.lock();
+        try {
+            var transaction = freeze();
+            if (transaction == null) {
+                return;
+            }
+            log.finer(() -> "Committing transaction [sequence=" + transaction.sequence() + ", blocks=" + transaction.images().size() + ", revokes=" + transaction.revokes().size() + "]...");
+            append(transaction);
+            checkpointLock.lock();
+            try {
+                for (var entry : transaction.images().entrySet()) {
+                    if (isRevoked(entry.getKey())) {
+                        continue;
+                    }
+                    home.write(ByteBuffer.wrap(entry.getValue()), position(entry.getKey()));
+                }
+            } finally {
+                checkpointLock.unlock();
+            }
+            release(transaction);
+            statistics.incrementJournalCommits();
+            log.finer(() -> "Successfully committed transaction [sequence=" + transaction.sequence() + "]");
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private Transaction freeze() throws IOException {
+        lock.lock();
+        try {
+            if (running.isEmpty() && revoking.isEmpty()) {
+                return null;
+            }
+            draining = true;
+            while (handles > 0) {
+                drained.await();
+            }
+            var frozenImages = new LinkedHashMap<Block.Id, byte[]>();
+            running.stream()
+                    .sorted(Comparator.comparingInt(Block.Id::value))
+                    .forEach(id -> frozenImages.put(id, images.get(id).clone()));
+            var transaction = new Transaction(sequence++, frozenImages, revoking);
+            running = new LinkedHashSet<>();
+            revoking = new LinkedHashSet<>();
+            inflight.addAll(frozenImages.keySet());
+            return transaction;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for handles", e);
+        } finally {
+            draining = false;
+            frozen.signalAll();
+            lock.unlock();
+        }
+    }
+
+    private void release(Transaction transaction) {
+        lock.lock();
+        try {
+            for (var id : transaction.images().keySet()) {
+                inflight.remove(id);
+                revokedInflight.remove(id);
+                if (!running.contains(id)) {
+                    images.remove(id);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isRevoked(Block.Id id) {
+        lock.lock();
+        try {
+            return revokedInflight.contains(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append transaction to log.
+     *
+     * @throws IOException if I/O error occurs or transaction doesn't fit into journal
+     */
+    private void append(Transaction transaction) throws IOException {
+        var ids = new ArrayList<>(transaction.images().keySet());
+        var revokes = new ArrayList<>(transaction.revokes());
+        var perDescriptor = perDescriptor();
+        var needed = needed(ids.size(), revokes.size());
+        if (needed > capacity() - 1) {
+            // Writes keep transaction within log, only revokes can exceed it, home locations are not written unjournaled
+            throw new IOException("Transaction doesn't fit into journal [sequence=" + transaction.sequence() + ", blocks=" + needed + ", capacity=" + capacity() + "]");
+        }
+        if (needed > free()) {
+            checkpoint(transaction.sequence());
+        }
+        var crc = new CRC32();
+        for (int from = 0; from < revokes.size(); from += perDescriptor) {
+            var chunk = revokes.subList(from, Math.min(revokes.size(), from + perDescriptor));
+            crc.update(writeRecord(REVOKE, transaction.sequence(), buffer -> {
+                buffer.putInt(chunk.size());
+                chunk.forEach(id -> id.write(buffer));
+            }));
+        }
+        for (int from = 0; from < ids.size(); from += perDescriptor) {
+            var chunk = ids.subList(from, Math.min(ids.size(), from + perDescriptor));
+            var _ = writeRecord(DESCRIPTOR, transaction.sequence(), buffer -> {
+                buffer.putInt(chunk.size());
+                chunk.forEach(id -> id.write(buffer));
+            });
+            for (var id : chunk) {
+                var image = transaction.images().get(id);
+                crc.update(image);
+                storage.write(ByteBuffer.wrap(image), logPosition(head));
+                head = next(head);
+            }
+        }
+        var _ = writeRecord(COMMIT, transaction.sequence(), buffer -> {
+            buffer.putInt(ids.size());
+            buffer.putInt((int) crc.getValue());
+        });
+        storage.force();
+        logged.addAll(ids);
+        statistics.addJournalBlocks(needed);
+    }
+
+    /**
+     * Number of log blocks taken by transaction: revoke records, descriptors with images and commit record.
+     */
+    private int needed(int images, int revokes) {
+        var perDescriptor = perDescriptor();
+        return Math.ceilDiv(revokes, perDescriptor) + Math.ceilDiv(images, perDescriptor) + images + 1;
+    }
+
+    private int perDescriptor() {
+        return (blockSize() - RECORD_HEADER_LENGTH) / Block.Id.LENGTH;
+    }
+
+    private ByteBuffer writeRecord(int type, long recordSequence, Consumer<ByteBuffer> body) throws IOException {
+        var buffer = ByteBuffer.allocate(blockSize());
+        buffer.putInt(MAGIC);
+        buffer.putInt(type);
+        buffer.putLong(recordSequence);
+        body.accept(buffer);
+        buffer.clear();
+        storage.write(buffer, logPosition(head));
+        head = next(head);
+        return buffer.clear();
+    }
+    //endregion
+
+    //region checkpoint
+    /**
+     * Commit running transaction, force all home locations and start log over.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    void force() throws IOException {
+        commitLock.lock();
+        try {
+            commit();
+            checkpoint(sequence);
+        } finally {
+            commitLock.unlock();
+        }
+        var cause = aborted;
+        if (cause != null) {
+            throw new IOException("Journal is aborted, changes after the last committed transaction are lost", cause);
+        }
+    }
+
+    private void checkpoint(long nextSequence) throws IOException {
+        assert commitLock.isHeldByCurrentThread();
+        log.fine(() -> "Checkpoint journal [start=" + start + ", head=" + head + ", sequence=" + nextSequence + "]...");
+        home.force();
+        logged.clear();
+        start = head;
+        startSequence = nextSequence;
+        writeHeader();
+        storage.force();
+    }
+
+    private void writeHeader() throws IOException {
+        var buffer = ByteBuffer.allocate(blockSize());
+        buffer.putInt(MAGIC);
+        buffer.putInt(HEADER);
+        buffer.putLong(startSequence);
+        buffer.putInt(start);
+        buffer.clear();
+        storage.write(buffer, logPosition(0));
+    }
+    //endregion
+
+    //region replay
+    private void replay() throws IOException {
+        var header = readLogBlock(0);
+        if (header.getInt() != MAGIC || header.getInt() != HEADER) {
+            throw new IllegalStateException("Bad journal header [firstBlock=" + firstBlock() + "]");
+        }
+        startSequence = header.getLong();
+        start = header.getInt();
+        sequence = startSequence;
+        head = start;
+        log.fine(() -> "Replaying journal [start=" + start + ", sequence=" + startSequence + "]...");
+        var transactions = new ArrayList<ReplayedTransaction>();
+        var lastRevokes = new HashMap<Block.Id, Long>();
+        while (true) {
+            var transaction = readTransaction(head, sequence);
+            if (transaction == null) {
+                break;
+            }
+            transactions.add(transaction);
+            for (var id : transaction.revokes()) {
+                lastRevokes.put(id, transaction.sequence());
+            }
+            head = transaction.next();
+            sequence++;
+        }
+        for (var transaction : transactions) {
+            for (var entry : transaction.images().entrySet()) {
+                var revokedAt = lastRevokes.get(entry.getKey());
+                if (revokedAt != null && revokedAt >= transaction.sequence()) {
+                    continue;
+                }
+                home.write(ByteBuffer.wrap(entry.getValue()), position(entry.getKey()));
+            }
+        }
+        log.fine(() -> "Successfully replayed journal [transactions=" + transactions.size() + "]");
+        commitLock.lock();
+        try {
+            checkpoint(sequence);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private ReplayedTransaction readTransaction(int from, long expectedSequence) throws IOException {
+        var images = new LinkedHashMap<Block.Id, byte[]>();
+        var revokes = new ArrayList<Block.Id>();
+        var crc = new CRC32();
+        var index = from;
+        for (int steps = 0; steps < capacity(); steps++) {
+            var record = readLogBlock(index);
+            if (record.getInt() != MAGIC) {
+                return null;
+            }
+            var type = record.getInt();
+            if (record.getLong() != expectedSequence) {
+                return null;
+            }
+            index = next(index);
+            switch (type) {
+                case COMMIT -> {
+                    var count = record.getInt();
+                    var checksum = record.getInt();
+                    if (count != images.size() || checksum != (int) crc.getValue()) {
+                        log.warning(() -> "Skipping torn transaction [sequence=" + expectedSequence + "]");
+                        return null;
+                    }
+                    return new ReplayedTransaction(expectedSequence, images, revokes, index);
+                }
+                case REVOKE -> {
+                    crc.update(record.duplicate().clear());
+                    var count = record.getInt();
+                    for (int i = 0; i < count; i++) {
+                        revokes.add(Block.Id.read(record));
+                    }
+                }
+                case DESCRIPTOR -> {
+                    var count = record.getInt();
+                    var ids = new ArrayList<Block.Id>(count);
+                    for (int i = 0; i < count; i++) {
+                        ids.add(Block.Id.read(record));
+                    }
+                    for (var id : ids) {
+                        var image = new byte[blockSize()];
+                        var _ = storage.read(ByteBuffer.wrap(image), logPosition(index));
+                        crc.update(image);
+                        images.put(id, image);
+                        index = next(index);
+                    }
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ByteBuffer readLogBlock(int index) throws IOException {
+        var buffer = ByteBuffer.allocate(blockSize());
+        var _ = storage.read(buffer, logPosition(index));
+        return buffer.clear();
+    }
+    //endregion
+
+    /**
+     * Stop background commits, commit and checkpoint.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+            try {
+                var _ = committer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        force();
+    }
+
+    private int capacity() {
+        return numberOfBlocks() - 1;
+    }
+
+    private int free() {
+        var used = Math.floorMod(head - start, capacity());
+        return capacity() - used - 1;
+    }
+
+    private int next(int index) {
+        return index == capacity() ? 1 : index + 1;
+    }
+
+    private long logPosition(int index) {
+        return position(firstBlock().plus(index));
+    }
+
+    private long position(Block.Id id) {
+        return (long) id.value() * blockSize();
+    }
+
+    @Override
+    public Block.Id firstBlock() {
+        return fileSystem.superBlock().firstBlockOfJournal();
+    }
+
+    @Override
+    public int numberOfBlocks() {
+        return fileSystem.superBlock().numberOfJournalBlocks();
+    }
+
+    @Override
+    public int blockSize() {
+        return fileSystem.blockSize();
+    }
+
+    private static class Handle {
+
+        private int depth = 1;
+
+    }
+
+    private record Transaction(long sequence, Map<Block.Id, byte[]> images, Set<Block.Id> revokes) {
+
+    }
+
+    private record ReplayedTransaction(long sequence, Map<Block.Id, byte[]> images, List<Block.Id> revokes, int next) {
+
+    }
+
+}
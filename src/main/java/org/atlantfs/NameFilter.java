@@ -0,0 +1,106 @@
+package org.atlantfs;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of names of single directory, name which is not in filter is surely missing from directory.
+ * <p>
+ * Filter has about 1% of false positives while it holds no more names than its capacity. Names can't be removed from
+ * filter, so removed names are only counted, and filter is rebuilt when it becomes full or stale. Kept in memory only.
+ * <p>
+ * Lookups are thread safe, changes are guarded by directory inode.
+ */
+final class NameFilter {
+
+    private static final int BITS_PER_NAME = 10;
+    private static final int NUMBER_OF_HASHES = 7;
+    private static final int MIN_CAPACITY = 256;
+
+    private final AtomicLongArray bits;
+    private final int capacity;
+    private int added;
+    private int removed;
+
+    NameFilter(int capacity) {
+        this.capacity = Math.max(MIN_CAPACITY, capacity);
+        this.bits = new AtomicLongArray(Math.ceilDiv(this.capacity * BITS_PER_NAME, Long.SIZE));
+    }
+
+    /**
+     * Build filter of all entries with room for as many new names.
+     *
+     * @param entries the entries of directory
+     * @return the filter
+     */
+    static NameFilter build(Iterator<DirEntry> entries) {
+        var names = new ArrayList<String>();
+        entries.forEachRemaining(entry -> {
+            if (!entry.isEmpty()) {
+                names.add(entry.getName());
+            }
+        });
+        var result = new NameFilter(names.size() * 2);
+        names.forEach(result::add);
+        return result;
+    }
+
+    void add(String name) {
+        var hash = name.hashCode();
+        var hash1 = mix(hash);
+        var hash2 = mix(hash1 ^ hash) | 1;
+        var numberOfBits = bits.length() * Long.SIZE;
+        for (int i = 0; i < NUMBER_OF_HASHES; i++) {
+            var bit = Math.floorMod(hash1 + i * hash2, numberOfBits);
+            bits.getAndUpdate(bit >>> 6, word -> word | 1L << bit);
+        }
+        added++;
+    }
+
+    boolean mightContain(String name) {
+        var hash = name.hashCode();
+        var hash1 = mix(hash);
+        var hash2 = mix(hash1 ^ hash) | 1;
+        var numberOfBits = bits.length() * Long.SIZE;
+        for (int i = 0; i < NUMBER_OF_HASHES; i++) {
+            var bit = Math.floorMod(hash1 + i * hash2, numberOfBits);
+            if ((bits.get(bit >>> 6) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void remove() {
+        removed++;
+    }
+
+    /**
+     * Check that filter should be rebuilt, when it holds more names than capacity or many of its names were removed.
+     *
+     * @return true if filter should be rebuilt
+     */
+    boolean isStale() {
+        return added > capacity || removed > capacity / 2;
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "NameFilter{" +
+                "capacity=" + capacity +
+                ", added=" + added +
+                ", removed=" + removed +
+                '}';
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.atlantfs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Blocks reserved ahead for single open write channel, new blocks of file are taken only from its window.
+ * <p>
+ * Window is refilled by one reservation near the end of previous window, so file appended together with others stays
+ * contiguous and bitmaps are not locked on every small write. Every refill means that window was consumed, so size of
+ * window is doubled up to maximum.
+ * <p>
+ * Blocks of window are only claimed in memory, so other allocations skip them, but they are written to bitmap only when
+ * they are taken to be mapped. Unused ones are released on {@link #release()} without writing anything, and nothing is
+ * leaked if file system is not closed properly.
+ * <p>
+ * Not thread safe, guarded by write lock of inode.
+ */
+final class ReservationWindow {
+
+    private static final Logger log = Logger.getLogger(ReservationWindow.class.getName());
+
+    private final AtlantFileSystem fileSystem;
+    private final int maxSize;
+    private final Deque<Block.Range> ranges = new ArrayDeque<>();
+    private int size;
+    private int available;
+    /**
+     * Block after the last reserved one, next window continues from it.
+     */
+    private Block.Id next;
+
+    ReservationWindow(AtlantFileSystem fileSystem, int size, int maxSize) {
+        assert size > 0 && size <= maxSize;
+        this.fileSystem = fileSystem;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Take blocks from window and write them to bitmap, window is refilled near goal if it doesn't have enough of them.
+     *
+     * @param goal  the block to reserve near, null if there is no preference
+     * @param count the number of blocks
+     * @return the ranges of blocks
+     * @throws BitmapRegion.NotEnoughSpaceException if there are not enough free blocks
+     */
+    List<Block.Range> reserve(Block.Id goal, int count) throws BitmapRegion.NotEnoughSpaceException {
+        if (available < count) {
+            refill(goal, count - available);
+        }
+        var result = new ArrayList<Block.Range>();
+        var remaining = count;
+        while (remaining > 0) {
+            var range = ranges.removeFirst();
+            var length = Math.min(range.length(), remaining);
+            result.add(Block.Range.of(range.from(), length));
+            if (length < range.length()) {
+                ranges.addFirst(Block.Range.of(range.from().plus(length), range.length() - length));
+            }
+            remaining -= length;
+        }
+        available -= count;
+        checkInvariant();
+        fileSystem.persistClaimedBlocks(result);
+        return result;
+    }
+
+    private void refill(Block.Id goal, int required) throws BitmapRegion.NotEnoughSpaceException {
+        var windowGoal = next != null ? next : goal;
+        var reserveSize = Math.max(required, size);
+        log.fine(() -> "Refilling window of [size=" + reserveSize + "] near [goal=" + windowGoal + "]...");
+        List<Block.Range> reserved;
+        try {
+            reserved = fileSystem.claimBlocksNear(windowGoal, reserveSize);
+        } catch (BitmapRegion.NotEnoughSpaceException e) {
+            if (reserveSize == required) {
+                throw e;
+            }
+            log.fine(() -> "Not enough space for window, reserving only [required=" + required + "]...");
+            reserved = fileSystem.claimBlocksNear(windowGoal, required);
+        }
+        reserved.forEach(ranges::addLast);
+        var last = reserved.getLast();
+        next = last.from().plus(last.length());
+        available += reserved.stream().mapToInt(Block.Range::length).sum();
+        size = Math.min(maxSize, size * 2);
+    }
+
+    /**
+     * Release all blocks which were not taken.
+     */
+    void release() {
+        if (ranges.isEmpty()) {
+            return;
+        }
+        log.fine(() -> "Releasing [available=" + available + "] blocks of window...");
+        fileSystem.releaseClaimedBlocks(List.copyOf(ranges));
+        ranges.clear();
+        available = 0;
+    }
+
+    private void checkInvariant() {
+        assert available >= 0;
+        assert available == ranges.stream().mapToInt(Block.Range::length).sum() : "Available [" + available + "] mismatch with ranges [" + ranges + "]";
+    }
+
+    //region getters
+    int size() {
+        return size;
+    }
+
+    int available() {
+        return available;
+    }
+    //endregion
+
+}
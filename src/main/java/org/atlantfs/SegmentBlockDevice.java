@@ -0,0 +1,154 @@
+package org.atlantfs;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Base of devices which keep content in {@link MemorySegment}s.
+ * <p>
+ * Device is split into chunks of fixed size, each chunk is a segment owned by single shared {@link Arena}. Chunks are
+ * created on first access, so device grows together with file system. Chunk size is a multiple of block size, so any
+ * block or inode never crosses chunk boundaries and can be served as single {@link ByteBuffer} view without copying.
+ */
+abstract class SegmentBlockDevice implements BlockDevice {
+
+    private static final Logger log = Logger.getLogger(SegmentBlockDevice.class.getName());
+
+    protected final Arena arena = Arena.ofShared();
+    protected final long chunkSize;
+    private final AtomicLong size;
+    private volatile MemorySegment[] chunks = new MemorySegment[0];
+
+    SegmentBlockDevice(long chunkSize, long size) {
+        this.chunkSize = chunkSize;
+        this.size = new AtomicLong(size);
+    }
+
+    static long chunkSize(long preferred, int blockSize) {
+        return Math.ceilDiv(preferred, blockSize) * blockSize;
+    }
+
+    /**
+     * Create segment for chunk.
+     *
+     * @param position the absolute position of chunk
+     * @return the segment of chunk size
+     * @throws IOException if I/O error occurs
+     */
+    protected abstract MemorySegment allocate(long position) throws IOException;
+
+    @Override
+    public int read(ByteBuffer buffer, long position) {
+        var total = (int) Math.max(0, Math.min(buffer.remaining(), size.get() - position));
+        var done = 0;
+        while (done < total) {
+            var current = position + done;
+            var offset = current % chunkSize;
+            var length = (int) Math.min(total - done, chunkSize - offset);
+            var source = chunk(current).asSlice(offset, length).asByteBuffer();
+            buffer.put(source);
+            done += length;
+        }
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer buffer, long position) {
+        var total = buffer.remaining();
+        var done = 0;
+        while (done < total) {
+            var current = position + done;
+            var offset = current % chunkSize;
+            var length = (int) Math.min(total - done, chunkSize - offset);
+            var target = chunk(current).asSlice(offset, length).asByteBuffer();
+            target.put(buffer.slice(buffer.position(), length));
+            buffer.position(buffer.position() + length);
+            done += length;
+        }
+        size.accumulateAndGet(position + total, Math::max);
+        return total;
+    }
+
+    @Override
+    public boolean isAddressable() {
+        return true;
+    }
+
+    @Override
+    public ByteBuffer slice(long position, int length) {
+        var offset = position % chunkSize;
+        assert offset + length <= chunkSize : "Region [position=" + position + ", length=" + length + "] crosses chunk boundaries";
+        var segment = chunk(position).asSlice(offset, length);
+        size.accumulateAndGet(position + length, Math::max);
+        return segment.asByteBuffer();
+    }
+
+    @Override
+    public void force() throws IOException {
+        for (var chunk : chunks) {
+            force(chunk);
+        }
+    }
+
+    protected abstract void force(MemorySegment chunk) throws IOException;
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void grow(long size) {
+        if (size > 0) {
+            var _ = chunk(size - 1);
+        }
+        this.size.accumulateAndGet(size, Math::max);
+    }
+
+    private MemorySegment chunk(long position) {
+        var chunkNumber = (int) (position / chunkSize);
+        var current = chunks;
+        if (chunkNumber < current.length) {
+            return current[chunkNumber];
+        }
+        return expand(chunkNumber);
+    }
+
+    private synchronized MemorySegment expand(int chunkNumber) {
+        var current = chunks;
+        if (chunkNumber < current.length) {
+            return current[chunkNumber];
+        }
+        log.fine(() -> "Growing device [device=" + this + ", chunks=" + current.length + " -> " + (chunkNumber + 1) + ", chunkSize=" + chunkSize + "]...");
+        var grown = Arrays.copyOf(current, chunkNumber + 1);
+        try {
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = allocate(i * chunkSize);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        chunks = grown;
+        return grown[chunkNumber];
+    }
+
+    @Override
+    public boolean isOpen() {
+        return arena.scope().isAlive();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!isOpen()) {
+            return;
+        }
+        chunks = new MemorySegment[0];
+        arena.close();
+    }
+
+}
@@ -5,7 +5,7 @@ import java.nio.ByteBuffer;
 
 final class SuperBlock implements Block {
 
-    static final int LENGTH = 2 + 2 + 4 + 4 + 4 + 4 + 4;
+    static final int LENGTH = 2 + 2 + 4 + 4 + 4 + 4 + 4 + 4;
     static final short MAGIC = (short) 0xEF54;
 
     private int blockSize;
@@ -13,6 +13,7 @@ final class SuperBlock implements Block {
     private int numberOfBlockBitmaps;
     private int numberOfInodeBitmaps;
     private int numberOfInodeTables;
+    private int numberOfJournalBlocks;
     private boolean dirty;
     private final AtlantFileSystem fileSystem;
 
@@ -27,6 +28,7 @@ final class SuperBlock implements Block {
         result.setNumberOfBlockBitmaps(atlantConfig.numberOfBlockBitmaps());
         result.setNumberOfInodeBitmaps(atlantConfig.numberOfInodeBitmaps());
         result.setNumberOfInodeTables(atlantConfig.numberOfInodeTables());
+        result.setNumberOfJournalBlocks(atlantConfig.numberOfJournalBlocks());
         result.dirty = true;
         return result;
     }
@@ -43,6 +45,7 @@ final class SuperBlock implements Block {
         result.setNumberOfBlockBitmaps(buffer.getInt());
         result.setNumberOfInodeBitmaps(buffer.getInt());
         result.setNumberOfInodeTables(buffer.getInt());
+        result.setNumberOfJournalBlocks(buffer.getInt());
         assert !buffer.hasRemaining();
         return result;
     }
@@ -60,6 +63,7 @@ final class SuperBlock implements Block {
             buffer.putInt(numberOfBlockBitmaps);
             buffer.putInt(numberOfInodeBitmaps);
             buffer.putInt(numberOfInodeTables);
+            buffer.putInt(numberOfJournalBlocks);
             assert buffer.position() == LENGTH;
         });
         dirty = false;
@@ -100,6 +104,14 @@ final class SuperBlock implements Block {
         return numberOfInodeTables;
     }
 
+    int numberOfJournalBlocks() {
+        return numberOfJournalBlocks;
+    }
+
+    boolean hasJournal() {
+        return numberOfJournalBlocks > 0;
+    }
+
     Block.Id firstBlockOfBlockBitmap() {
         return Block.Id.of(1);
     }
@@ -112,10 +124,14 @@ final class SuperBlock implements Block {
         return firstBlockOfInodeBitmap().plus(numberOfInodeBitmaps);
     }
 
-    Block.Id firstBlockOfData() {
+    Block.Id firstBlockOfJournal() {
         return firstBlockOfInodeTables().plus(numberOfInodeTables);
     }
 
+    Block.Id firstBlockOfData() {
+        return firstBlockOfJournal().plus(numberOfJournalBlocks);
+    }
+
     //region private setters
     private void setBlockSize(int blockSize) {
         this.blockSize = blockSize;
@@ -136,6 +152,10 @@ final class SuperBlock implements Block {
     private void setNumberOfInodeTables(int numberOfInodeTables) {
         this.numberOfInodeTables = numberOfInodeTables;
     }
+
+    private void setNumberOfJournalBlocks(int numberOfJournalBlocks) {
+        this.numberOfJournalBlocks = numberOfJournalBlocks;
+    }
     //endregion
 
 }
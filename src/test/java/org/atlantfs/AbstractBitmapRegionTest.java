@@ -10,8 +10,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -20,6 +24,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.atlantfs.util.ByteBufferUtil.blocks;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
@@ -44,6 +49,7 @@ class AbstractBitmapRegionTest {
     }
 
     BitmapRegion<Id, Range> bitmapRegion;
+    int numberOfGroups = BITMAP_REGION_NUMBER_OF_BLOCKS;
 
     @BeforeEach
     void beforeEach() {
@@ -70,6 +76,11 @@ class AbstractBitmapRegionTest {
                 return BLOCK_SIZE;
             }
 
+            @Override
+            int numberOfGroups() {
+                return numberOfGroups;
+            }
+
             @Override
             int toBitmapNumber(Id id) {
                 return id.value() / (blockSize() * 8);
@@ -95,14 +106,15 @@ class AbstractBitmapRegionTest {
     //region InodeBitmap::reserve
     @CsvSource(value = {
             // Given              | Expected    |
-            // blocks             | res  | curr |
+            // blocks             | res  | vac  |
             " 0000 0000 0000 0000 |    0 |    0 ",
-            " ffff ffff ffff feff |   48 |    3 ",
-            " ffff ffff ffff efff |   52 |    3 ",
-            " ffff ffff ffff fffe |   56 |    3 ",
-            " ffff ffff ffff ffef |   60 |    3 ",
+            " ffff ffff ffff feff |   48 |   -1 ",
+            " ffff ffff ffff efff |   52 |   -1 ",
+            " ffff ffff ffff fffe |   56 |   -1 ",
+            " ffff ffff ffff ffef |   60 |   -1 ",
+            " ffff fffe ffff ffef |   24 |    3 ",
     }, delimiter = '|')
-    @ParameterizedTest(name = "Given blocks [{0}] when reserve single item then should return id [{1}], and current bitmap should be changed to [{2}]")
+    @ParameterizedTest(name = "Given blocks [{0}] when reserve single item then should return id [{1}], and first vacant bitmap should be [{2}]")
     void reserve_should_findFirstFreeBitInRequiredBlock(String blocksHex, int expected, int expectedCurrent) throws BitmapRegion.NotEnoughSpaceException {
         // Given
         var blocks = blocks(blocksHex);
@@ -111,7 +123,7 @@ class AbstractBitmapRegionTest {
         var result = bitmapRegion.reserve();
         // Then
         assertThat(result).isEqualTo(new Id(expected));
-        assertThat(bitmapRegion.getCurrent()).isEqualTo(expectedCurrent);
+        assertThat(bitmapRegion.firstVacant()).isEqualTo(expectedCurrent);
     }
 
     @Test
@@ -133,32 +145,179 @@ class AbstractBitmapRegionTest {
         assertThatThrownBy(() -> bitmapRegion.reserve(2))
                 .isInstanceOf(BitmapRegion.NotEnoughSpaceException.class);
     }
+
+    @Test
+    void reserve_should_takeContiguousRunFromLaterBitmap_when_firstVacantIsFragmented() throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        var blocks = blocks("ffff ff0f 0000 ffff");
+        configureFileSystem(blocks);
+        // When
+        var result = bitmapRegion.reserve(16);
+        // Then
+        assertThat(result).containsExactly(new Range(new Id(32), 16));
+        assertThat(toHex(blocks)).isEqualTo("ffff ff0f ffff ffff");
+    }
+
+    @Test
+    void reserve_should_notChangeBitmaps_when_notEnoughFreeItems() {
+        // Given
+        var blocks = blocks("ffff ff0f fff0 ffff");
+        configureFileSystem(blocks);
+        // When Then
+        assertThatThrownBy(() -> bitmapRegion.reserve(9))
+                .isInstanceOf(BitmapRegion.NotEnoughSpaceException.class);
+        assertThat(toHex(blocks)).isEqualTo("ffff ff0f fff0 ffff");
+    }
+    //endregion
+
+    //region InodeBitmap::reserveNear
+    @CsvSource(value = {
+            // Given              | Call        | Expected                  |
+            // blocks             | goal | size | res  | blocks             |
+            " 0000 0000 0000 0000 |   20 |    4 |   20 | 0000 f000 0000 0000 ",
+            " 0000 00ff 0000 0000 |   20 |    4 |   20 | 0000 f0ff 0000 0000 ",
+            " 0000 00ff 0000 0000 |   28 |    4 |   16 | 0000 0fff 0000 0000 ",
+    }, delimiter = '|')
+    @ParameterizedTest
+    void reserveNear_should_takeRunClosestAfterGoal(String blocksHex, int goal, int size, int expected, String expectedHex) throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        var blocks = blocks(blocksHex);
+        configureFileSystem(blocks);
+        // When
+        var result = bitmapRegion.reserveNear(new Id(goal), size);
+        // Then
+        assertThat(result).containsExactly(new Range(new Id(expected), size));
+        assertThat(toHex(blocks)).isEqualTo(expectedHex);
+    }
     //endregion
 
     //region InodeBitmap::free
     @CsvSource(value = {
-            // Given              | Call | Expected         |
-            // blocks             | del  | write  | written |
-            " 0000 0000 0000 0000 |    0 |  false |      -1 ",
-            " ffff ffff ffff ffff |    8 |   true |       0 ",
-            " ffff ffff ffff ffff |   12 |   true |       0 ",
-            " ffff ffff ffff ffff |   63 |   true |       3 ",
+            // Given              | Call | Expected                |
+            // blocks             | del  | write  | written | vac  |
+            " 0000 0000 0000 0000 |    0 |  false |      -1 |    0 ",
+            " ffff ffff ffff ffff |    8 |   true |       0 |    0 ",
+            " ffff ffff ffff ffff |   12 |   true |       0 |    0 ",
+            " ffff ffff ffff ffff |   63 |   true |       3 |    3 ",
     }, delimiter = '|')
     @ParameterizedTest
-    void free_should_setSpecifiedBitToZeroInRequiredBlock(String blocksHex, int inodeId, boolean expectedWrite, int expectedWritten) {
+    void free_should_setSpecifiedBitToZeroInRequiredBlock(String blocksHex, int inodeId, boolean expectedWrite, int expectedWritten, int expectedVacant) {
         // Given
         var blocks = blocks(blocksHex);
         configureFileSystem(blocks);
         // When
         bitmapRegion.free(new Id(inodeId));
         // Then
-        assertThat(bitmapRegion.getCurrent()).isEqualTo(0); // Initialized with 0
+        assertThat(bitmapRegion.firstVacant()).isEqualTo(expectedVacant);
         if (expectedWrite) {
-            verify(fileSystem).writeBlock(eq(BITMAP_REGION_FIRST_BLOCK.plus(expectedWritten)), any());
+            verify(fileSystem).writeBlock(eq(BITMAP_REGION_FIRST_BLOCK.plus(expectedWritten)), anyInt(), any());
         } else {
-            verify(fileSystem, times(0)).writeBlock(any(), any());
+            verify(fileSystem, times(0)).writeBlock(any(), anyInt(), any());
         }
     }
+
+    @Test
+    void freeRanges_should_freeEveryBitmap_when_rangeCrossesBitmapBoundary() {
+        // Given
+        var blocks = blocks("ffff ffff ffff ffff");
+        configureFileSystem(blocks);
+        // When
+        bitmapRegion.freeRanges(List.of(new Range(new Id(12), 8)));
+        // Then
+        assertThat(toHex(blocks)).isEqualTo("ff0f f0ff ffff ffff");
+        assertThat(bitmapRegion.totalFree()).isEqualTo(8);
+        assertThat(bitmapRegion.largestFreeExtent()).isEqualTo(8);
+    }
+    //endregion
+
+    //region BitmapRegion::claimNear
+    @Test
+    void claimNear_should_notWriteClaimedItems_until_persisted() throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        numberOfGroups = 1;
+        var blocks = blocks("0000 0000 0000 0000");
+        configureFileSystem(blocks);
+        // When
+        var claimed = bitmapRegion.claimNear(new Id(4), 8);
+        var reserved = bitmapRegion.reserve(4);
+        // Then
+        assertThat(claimed).containsExactly(new Range(new Id(4), 8));
+        assertThat(reserved).containsExactly(new Range(new Id(0), 4));
+        assertThat(toHex(blocks)).isEqualTo("0f00 0000 0000 0000");
+        // When
+        bitmapRegion.persistClaimed(List.of(new Range(new Id(4), 3)));
+        bitmapRegion.releaseClaimed(List.of(new Range(new Id(7), 5)));
+        // Then
+        assertThat(toHex(blocks)).isEqualTo("7f00 0000 0000 0000");
+        assertThat(bitmapRegion.totalFree()).isEqualTo(57);
+        assertThat(bitmapRegion.largestFreeExtent()).isEqualTo(57);
+    }
+    //endregion
+
+    //region BitmapRegion::groups
+    @Test
+    void reserve_should_fallBackToNextGroup_when_preferredGroupIsFull() throws InterruptedException, ExecutionException, BitmapRegion.NotEnoughSpaceException {
+        // Given
+        numberOfGroups = 2;
+        var blocks = blocks("0000 0000 ffff ffff");
+        configureFileSystem(blocks);
+        try (var executor = Executors.newSingleThreadExecutor()) {
+            // First thread prefers the first group
+            assertThat(executor.submit(() -> bitmapRegion.reserve()).get()).isEqualTo(new Id(0));
+        }
+        // When
+        var result = bitmapRegion.reserve();
+        // Then
+        assertThat(result).isEqualTo(new Id(1));
+        assertThat(toHex(blocks)).isEqualTo("0300 0000 ffff ffff");
+    }
+
+    @Test
+    void reserve_should_startFromDifferentGroups_when_calledFromSeveralThreads() throws InterruptedException, ExecutionException {
+        // Given
+        var blocks = blocks("0000 0000 0000 0000");
+        configureFileSystem(blocks);
+        var futures = new ArrayList<Future<Id>>();
+        // When
+        try (var executor = Executors.newFixedThreadPool(BITMAP_REGION_NUMBER_OF_BLOCKS)) {
+            for (int i = 0; i < BITMAP_REGION_NUMBER_OF_BLOCKS; i++) {
+                futures.add(executor.submit(() -> bitmapRegion.reserve()));
+            }
+        }
+        // Then
+        var result = new ArrayList<Id>();
+        for (var future : futures) {
+            result.add(future.get());
+        }
+        assertThat(result).containsExactlyInAnyOrder(new Id(0), new Id(16), new Id(32), new Id(48));
+        assertThat(toHex(blocks)).isEqualTo("0100 0100 0100 0100");
+    }
+
+    @Test
+    void totalFree_should_countFreeItemsOfGroups_when_reservedAndFreed() throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        numberOfGroups = 2;
+        var blocks = blocks("0000 00ff 0000 0000");
+        configureFileSystem(blocks);
+        assertThat(bitmapRegion.totalFree()).isEqualTo(56);
+        assertThat(bitmapRegion.groups()[0].totalFree()).isEqualTo(24);
+        assertThat(bitmapRegion.groups()[1].totalFree()).isEqualTo(32);
+        // When
+        var reserved = bitmapRegion.reserve(16);
+        // Then
+        assertThat(reserved).containsExactly(new Range(new Id(0), 16));
+        assertThat(bitmapRegion.totalFree()).isEqualTo(40);
+        assertThat(bitmapRegion.longestFreeRun()).isEqualTo(16);
+        assertThat(bitmapRegion.groups()[0].totalFree()).isEqualTo(8);
+        assertThat(bitmapRegion.groups()[0].longestFreeRun()).isEqualTo(8);
+        // When
+        bitmapRegion.freeRanges(reserved);
+        // Then
+        assertThat(bitmapRegion.totalFree()).isEqualTo(56);
+        assertThat(bitmapRegion.groups()[0].totalFree()).isEqualTo(24);
+        assertThat(bitmapRegion.groups()[0].longestFreeRun()).isEqualTo(16);
+        assertThat(toHex(blocks)).isEqualTo("0000 00ff 0000 0000");
+    }
     //endregion
 
     @Test
@@ -199,13 +358,14 @@ class AbstractBitmapRegionTest {
         });
         lenient().doAnswer(invocation -> {
             var arg0 = invocation.getArgument(0, Block.Id.class);
-            @SuppressWarnings("unchecked") Consumer<ByteBuffer> arg1 = invocation.getArgument(1, Consumer.class);
+            var arg1 = invocation.getArgument(1, Integer.class);
+            @SuppressWarnings("unchecked") Consumer<ByteBuffer> arg2 = invocation.getArgument(2, Consumer.class);
             var value = arg0.minus(BITMAP_REGION_FIRST_BLOCK).value();
             var buffer = blocks.get(value);
-            buffer.clear();
-            arg1.accept(buffer);
+            buffer.clear().position(arg1);
+            arg2.accept(buffer);
             return null;
-        }).when(fileSystem).writeBlock(any(Block.Id.class), any());
+        }).when(fileSystem).writeBlock(any(Block.Id.class), anyInt(), any());
     }
 
     private String toHex(List<ByteBuffer> buffers) {
@@ -0,0 +1,114 @@
+package org.atlantfs;
+
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.atlantfs.util.ByteBufferUtil.blocks;
+
+@ExtendWith(LoggingExtension.class)
+class AllocationGroupTest {
+
+    private static final int FIRST_BITMAP = 4;
+    private static final int NUMBER_OF_BITMAPS = 4;
+
+    private final AllocationGroup group = new AllocationGroup(1, FIRST_BITMAP, NUMBER_OF_BITMAPS);
+    private final List<Bitmap> bitmaps = new ArrayList<>();
+
+    //region AllocationGroup::first
+    @CsvSource(value = {
+            // Given              | Call          | Expected |
+            // blocks             | from | length | result   |
+            " fff0 0f00 0000 ffff |    4 |      4 |        4 ",
+            " fff0 0f00 0000 ffff |    4 |      8 |        5 ",
+            " fff0 0f00 0000 ffff |    4 |     16 |        6 ",
+            " fff0 0f00 0000 ffff |    4 |     17 |       -1 ",
+            " fff0 0f00 0000 ffff |    0 |      4 |        4 ",
+            " fff0 0f00 0000 ffff |    6 |      4 |        6 ",
+            " fff0 0f00 0000 ffff |    7 |      1 |       -1 ",
+            " ffff ffff ffff ffff |    4 |      1 |       -1 ",
+    }, delimiter = '|')
+    @ParameterizedTest
+    void first_should_findFirstBitmapWithFreeRunOfLength(String blocksHex, int from, int length, int expected) {
+        // Given
+        update(blocksHex);
+        // When
+        var result = group.first(from, length);
+        // Then
+        assertThat(result).isEqualTo(expected);
+    }
+    //endregion
+
+    //region AllocationGroup::preferred
+    @Test
+    void preferred_should_startFromCursor() {
+        // Given
+        update("0000 0000 ffff ffff");
+        group.moveCursor(5);
+        // When
+        var result = group.preferred(1);
+        // Then
+        assertThat(result).isEqualTo(5);
+    }
+
+    @Test
+    void preferred_should_wrapToFirstBitmapOfGroup_when_noFreeRunAfterCursor() {
+        // Given
+        update("0000 0000 ffff ffff");
+        group.moveCursor(6);
+        // When
+        var result = group.preferred(1);
+        // Then
+        assertThat(result).isEqualTo(FIRST_BITMAP);
+    }
+
+    @Test
+    void preferred_should_returnMinusOne_when_groupIsFull() {
+        // Given
+        update("ffff ffff ffff ffff");
+        // When
+        var result = group.preferred(1);
+        // Then
+        assertThat(result).isEqualTo(-1);
+    }
+    //endregion
+
+    //region AllocationGroup::update
+    @Test
+    void update_should_countFreeItems_when_reservedAndFreed() {
+        // Given
+        update("fff0 0f00 0000 ffff");
+        assertThat(group.totalFree()).isEqualTo(32);
+        assertThat(group.longestFreeRun()).isEqualTo(16);
+        // When
+        var bitmap = bitmaps.get(2);
+        var reserved = bitmap.reserve();
+        group.update(6, bitmap);
+        // Then
+        assertThat(group.totalFree()).isEqualTo(31);
+        assertThat(group.longestFreeRun()).isEqualTo(15);
+        // When
+        bitmap.free(reserved);
+        group.update(6, bitmap);
+        // Then
+        assertThat(group.totalFree()).isEqualTo(32);
+        assertThat(group.longestFreeRun()).isEqualTo(16);
+    }
+    //endregion
+
+    private void update(String blocksHex) {
+        var blocks = blocks(blocksHex);
+        for (int i = 0; i < NUMBER_OF_BITMAPS; i++) {
+            var bitmap = Bitmap.read(blocks.get(i), Block.Id.of(i));
+            bitmaps.add(bitmap);
+            group.update(FIRST_BITMAP + i, bitmap);
+        }
+    }
+
+}
@@ -6,9 +6,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -25,73 +32,96 @@ class AtlantFileChannelTest {
     }
 
     @Test
-    void new_should_throwIllegalArgumentException_ifOpenOptionsIncreased(TestInfo testInfo) throws IOException {
+    void create_should_throwFileAlreadyExistsException_when_fileExists(TestInfo testInfo) throws IOException {
         // Given
         var atlantFile = atlantFile(testInfo);
         Files.createFile(atlantFile);
-        try (var _ = AtlantFileChannel.openForRead(atlantFile)) {
-            // When Then
-            assertThatThrownBy(() -> {
-                try (var _ = AtlantFileChannel.openForWrite(atlantFile)) {
-                    AtlantFileChannel.get();
-                }
-            }).isInstanceOf(IllegalArgumentException.class);
-        }
+        // When Then
+        assertThatThrownBy(() -> AtlantFileChannel.create(atlantFile))
+                .isInstanceOf(FileAlreadyExistsException.class);
     }
 
     @Test
-    void get_should_beOpenInside(TestInfo testInfo) throws IOException {
+    void read_should_returnWrittenBytes_when_samePosition(TestInfo testInfo) throws IOException {
         // Given
-        SeekableByteChannel channel;
         var atlantFile = atlantFile(testInfo);
-        try (var _ = AtlantFileChannel.openForCreate(atlantFile)) {
+        try (var channel = AtlantFileChannel.create(atlantFile)) {
             // When
-            channel = AtlantFileChannel.get();
+            var written = channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 10);
+            var buffer = ByteBuffer.allocate(6);
+            var read = channel.read(buffer, 8);
+            var size = channel.size();
             // Then
-            assertThat(channel).isNotNull();
-            assertThat(channel.isOpen()).isTrue();
+            assertSoftly(softly -> {
+                softly.assertThat(written).isEqualTo(4);
+                softly.assertThat(read).isEqualTo(6);
+                softly.assertThat(buffer.array()).containsExactly(0, 0, 1, 2, 3, 4);
+                softly.assertThat(size).isEqualTo(14);
+            });
         }
-        // Then
-        assertThat(channel).isNotNull();
-        assertThat(channel.isOpen()).isFalse();
     }
 
     @Test
-    void get_should_notBeClosedIfReentrant(TestInfo testInfo) throws IOException {
+    void read_should_returnLessBytes_when_endOfFile(TestInfo testInfo) throws IOException {
         // Given
-        SeekableByteChannel channel0;
         var atlantFile = atlantFile(testInfo);
-        try (var _ = AtlantFileChannel.openForCreate(atlantFile)) {
+        try (var channel = AtlantFileChannel.create(atlantFile)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 0);
             // When
-            channel0 = AtlantFileChannel.get();
-            try (var _ = AtlantFileChannel.openForRead(atlantFile)) {
-                // When
-                var channel1 = AtlantFileChannel.get();
-                try (var _ = AtlantFileChannel.openForRead(atlantFile)) {
-                    // When
-                    var channel2 = AtlantFileChannel.get();
-                    // Then
-                    assertThat(channel2).isNotNull();
-                    assertSoftly(softly -> {
-                        softly.assertThat(channel2).isSameAs(channel1);
-                        softly.assertThat(channel2).isSameAs(channel0);
-                        softly.assertThat(channel2.isOpen()).isTrue();
-                    });
+            var buffer = ByteBuffer.allocate(8);
+            var read = channel.read(buffer, 2);
+            // Then
+            assertThat(read).isEqualTo(2);
+            // When Then
+            assertThatThrownBy(() -> channel.readFully(ByteBuffer.allocate(8), 2))
+                    .isInstanceOf(EOFException.class);
+        }
+    }
+
+    @Test
+    void read_should_beIndependentOfOtherThreads_when_sharedChannel(TestInfo testInfo) throws Exception {
+        // Given
+        var atlantFile = atlantFile(testInfo);
+        var blockSize = 64;
+        var numberOfBlocks = 256;
+        try (var channel = AtlantFileChannel.create(atlantFile)) {
+            for (int i = 0; i < numberOfBlocks; i++) {
+                var block = ByteBuffer.allocate(blockSize);
+                while (block.hasRemaining()) {
+                    block.put((byte) i);
                 }
-                // Then
-                assertThat(channel1).isNotNull();
-                assertSoftly(softly -> {
-                    softly.assertThat(channel1).isSameAs(channel0);
-                    softly.assertThat(channel1.isOpen()).isTrue();
-                });
+                channel.write(block.flip(), (long) i * blockSize);
+            }
+            // When
+            var futures = new ArrayList<Future<Boolean>>();
+            try (var executor = Executors.newFixedThreadPool(8)) {
+                IntStream.range(0, numberOfBlocks * 8).forEach(n -> futures.add(executor.submit((Callable<Boolean>) () -> {
+                    var i = n % numberOfBlocks;
+                    var block = ByteBuffer.allocate(blockSize);
+                    channel.readFully(block, (long) i * blockSize);
+                    return IntStream.range(0, blockSize).allMatch(j -> block.get(j) == (byte) i);
+                })));
             }
             // Then
-            assertThat(channel0).isNotNull();
-            assertThat(channel0.isOpen()).isTrue();
+            for (var future : futures) {
+                assertThat(future.get()).isTrue();
+            }
         }
+    }
+
+    @Test
+    void isOpen_should_beFalse_when_closed(TestInfo testInfo) throws IOException {
+        // Given
+        var atlantFile = atlantFile(testInfo);
+        var channel = AtlantFileChannel.create(atlantFile);
+        assertThat(channel.isOpen()).isTrue();
+        // When
+        channel.close();
         // Then
-        assertThat(channel0).isNotNull();
-        assertThat(channel0.isOpen()).isFalse();
+        assertThat(channel.isOpen()).isFalse();
+        try (var reopened = AtlantFileChannel.open(atlantFile)) {
+            assertThat(reopened.isOpen()).isTrue();
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package org.atlantfs;
+
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.atlantfs.util.AtlantFileUtil.atlantUri;
+import static org.atlantfs.util.AtlantFileUtil.deleteAllAtlantFiles;
+
+@ExtendWith(LoggingExtension.class)
+class AtlantFileSystemTest {
+
+    @BeforeAll
+    static void beforeEach(TestInfo testInfo) throws IOException {
+        deleteAllAtlantFiles(testInfo);
+    }
+
+    @Test
+    void readAttributes_should_returnListedAttributes_when_entryListedWithAttributes(TestInfo testInfo) throws IOException {
+        // Given
+        try (var fileSystem = (AtlantFileSystem) FileSystems.newFileSystem(atlantUri(testInfo), Map.of())) {
+            Files.write(fileSystem.getPath("/a"), new byte[100]);
+            // When
+            var listed = listWithAttributes(fileSystem);
+            // Then
+            assertThat(Files.size(listed)).isEqualTo(100);
+        }
+    }
+
+    @Test
+    void readAttributes_should_throwNoSuchFileException_when_listedEntryDeleted(TestInfo testInfo) throws IOException {
+        // Given
+        try (var fileSystem = (AtlantFileSystem) FileSystems.newFileSystem(atlantUri(testInfo), Map.of())) {
+            Files.write(fileSystem.getPath("/a"), new byte[100]);
+            var listed = listWithAttributes(fileSystem);
+            // When
+            Files.delete(fileSystem.getPath("/a"));
+            // Then
+            assertThatThrownBy(() -> Files.size(listed))
+                    .isInstanceOf(NoSuchFileException.class);
+        }
+    }
+
+    @Test
+    void delete_should_notHoldOffOtherOperations_when_fileIsOpenForWrite(TestInfo testInfo) throws IOException, InterruptedException {
+        // Given
+        var config = AtlantConfig.defaults()
+                .numberOfJournalBlocks(64)
+                .journalCommitMillis(20);
+        try (var fileSystem = FileSystems.newFileSystem(atlantUri(testInfo), config.asMap());
+             var executor = Executors.newFixedThreadPool(2)) {
+            Files.write(fileSystem.getPath("/a"), new byte[100]);
+            var channel = Files.newByteChannel(fileSystem.getPath("/a"), StandardOpenOption.WRITE);
+            channel.write(ByteBuffer.wrap(new byte[10]));
+            var deleted = executor.submit(() -> {
+                Files.delete(fileSystem.getPath("/a"));
+                return null;
+            });
+            // Background commits drain running transaction while delete waits for channel
+            Thread.sleep(100);
+            // When
+            var created = executor.submit(() -> Files.createFile(fileSystem.getPath("/b")));
+            // Then
+            assertThat(created).succeedsWithin(Duration.ofSeconds(5));
+            assertThat(deleted).isNotDone();
+            // When
+            channel.close();
+            // Then
+            assertThat(deleted).succeedsWithin(Duration.ofSeconds(5));
+            try (var stream = Files.newDirectoryStream(fileSystem.getPath("/"))) {
+                assertThat(stream).extracting(Path::toString).containsExactly("/b");
+            }
+        }
+    }
+
+    private static Path listWithAttributes(AtlantFileSystem fileSystem) throws IOException {
+        try (var stream = fileSystem.newDirectoryStreamWithAttributes(fileSystem.getPath("/"), _ -> true)) {
+            return stream.iterator().next();
+        }
+    }
+
+}
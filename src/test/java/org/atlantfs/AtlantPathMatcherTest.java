@@ -0,0 +1,62 @@
+package org.atlantfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AtlantPathMatcherTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "*.idx,             a.idx,      true",
+            "*.idx,             a.idx.dat,  false",
+            "img-?.png,         img-1.png,  true",
+            "img-?.png,         img-12.png, false",
+            "img-[0-4]*,        img-3.png,  true",
+            "img-[!0-4]*,       img-3.png,  false",
+            "'{a,b}*.{png,idx}', b-1.idx,   true",
+            "'{a,b}*.{png,idx}', c-1.idx,   false",
+            "\\*x,              *x,         true",
+            "?,                 é,          true",
+            "[é-ü]*,            ü.txt,      true",
+            "*a*a*b,            aaaaaaab,   true",
+            "*a*a*b,            aaaaaaa,    false",
+            "*,                 d/a,        false",
+            "**,                d/a,        true",
+    })
+    void matches_should_matchGlobAgainstBytes(String glob, String name, boolean expected) {
+        // Given
+        var matcher = AtlantPathMatcher.compile("glob:" + glob);
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        // When
+        var result = matcher.matches(bytes, 0, bytes.length);
+        // Then
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    void matches_should_matchRegex() {
+        // Given
+        var matcher = AtlantPathMatcher.compile("regex:img-\\d+\\.png");
+        var bytes = "img-12.png".getBytes(StandardCharsets.UTF_8);
+        // When
+        var result = matcher.matches(bytes, 0, bytes.length);
+        // Then
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    void compile_should_throwException_when_invalidPattern() {
+        assertThatThrownBy(() -> AtlantPathMatcher.compile("*.idx")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AtlantPathMatcher.compile("unknown:*.idx")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> AtlantPathMatcher.compile("glob:[ab")).isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> AtlantPathMatcher.compile("glob:{a,{b}}")).isInstanceOf(PatternSyntaxException.class);
+    }
+
+}
@@ -13,6 +13,7 @@ import org.junit.jupiter.params.converter.ArgumentConverter;
 import org.junit.jupiter.params.converter.ConvertWith;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HexFormat;
@@ -21,6 +22,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
 import static org.atlantfs.util.ByteBufferUtil.byteBuffer;
 
 @ExtendWith(LoggingExtension.class)
@@ -44,8 +46,7 @@ class BitmapTest {
     @ParameterizedTest
     void reserve_should_returnFirstFreeBit_when_requireSingle(String blocksHex, int expected, String expectedHex) {
         // Given
-        var bitSet = BitSet.valueOf(byteBuffer(blocksHex));
-        var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+        var bitmap = Bitmap.read(byteBuffer(blocksHex), Block.Id.of(12));
         // When
         var result = bitmap.reserve();
         // Then
@@ -57,8 +58,7 @@ class BitmapTest {
     void reserve_should_returnNegative_when_notEnoughEmptyBits() {
         // Given
         var hex = "ffffffffffffffff";
-        var bitSet = BitSet.valueOf(byteBuffer(hex));
-        var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+        var bitmap = Bitmap.read(byteBuffer(hex), Block.Id.of(12));
         // When
         var result = bitmap.reserve();
         // Then
@@ -83,8 +83,7 @@ class BitmapTest {
     @ParameterizedTest
     void reserve_should_returnListOfFreeRanges_when_requireMultiple(String blocksHex, int size, @ConvertWith(RangesListConverter.class) List<Bitmap.Range> expectedRanges, String expectedHex) {
         // Given
-        var bitSet = BitSet.valueOf(byteBuffer(blocksHex));
-        var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+        var bitmap = Bitmap.read(byteBuffer(blocksHex), Block.Id.of(12));
         // When
         var result = bitmap.reserve(size);
         // Then
@@ -96,14 +95,69 @@ class BitmapTest {
     void reserve_should_returnEmptyList_when_noEmptyRanges() {
         // Given
         var hex = "ffffffffffffffff";
-        var bitSet = BitSet.valueOf(byteBuffer(hex));
-        var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+        var bitmap = Bitmap.read(byteBuffer(hex), Block.Id.of(12));
         // When
         var result = bitmap.reserve(1);
         // Then
         assertThat(result).isEmpty();
         assertThat(hexOf(bitmap)).isEqualTo(hex);
     }
+
+    @CsvSource(value = {
+            // Given           | Call | Expected                  |
+            // bitset          | size | range | free | longest    |
+            " 0000000000000000 |   64 |  0-64 |    0 |          0 ",
+            " 0f00000000000000 |    4 |   4-4 |   56 |         56 ",
+            " 0ff0000000000000 |    8 |   4-8 |   48 |         48 ",
+            " 0ff0ff0000ffffff |   16 | 24-16 |    8 |          8 ",
+            " 0ff0ff0000ffffff |   17 |     - |   24 |         16 ",
+    }, delimiter = '|')
+    @ParameterizedTest
+    void reserveRun_should_returnFirstRunLongEnough(String blocksHex, int size, String expectedRange, int expectedFree, int expectedLongest) {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer(blocksHex), Block.Id.of(12));
+        // When
+        var result = bitmap.reserveRun(size);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(result).isEqualTo(expectedRange.equals("-") ? null : new RangeConverter().convert(expectedRange, null));
+            softly.assertThat(bitmap.freeCount()).isEqualTo(expectedFree);
+            softly.assertThat(bitmap.longestFreeRun()).isEqualTo(expectedLongest);
+        });
+    }
+
+    @CsvSource(value = {
+            // Given           | Call        | Expected |
+            // bitset          | from | size | range    |
+            " 0000000000000000 |   10 |    4 |     10-4 ",
+            " 00ff00ffffffffff |    4 |    4 |      4-4 ",
+            " 00ff00ffffffffff |    8 |    8 |     16-8 ",
+            " 00ff00ffffffffff |   30 |    8 |      0-8 ",
+            " 00ff00ffffffffff |    4 |    9 |        - ",
+    }, delimiter = '|')
+    @ParameterizedTest
+    void reserveRun_should_preferRunAtOrAfterFromBit(String blocksHex, int from, int size, String expectedRange) {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer(blocksHex), Block.Id.of(12));
+        // When
+        var result = bitmap.reserveRun(from, size);
+        // Then
+        assertThat(result).isEqualTo(expectedRange.equals("-") ? null : new RangeConverter().convert(expectedRange, null));
+    }
+
+    @Test
+    void free_should_growLongestFreeRun_when_joinsNeighbourRuns() {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer("00ff00ffffffffff"), Block.Id.of(12));
+        assertThat(bitmap.longestFreeRun()).isEqualTo(8);
+        // When
+        bitmap.free(Bitmap.Range.of(8, 8));
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(bitmap.longestFreeRun()).isEqualTo(24);
+            softly.assertThat(bitmap.freeCount()).isEqualTo(24);
+        });
+    }
     //endregion
 
     //region Bitmap::free
@@ -126,8 +180,7 @@ class BitmapTest {
     @ParameterizedTest
     void free_should_unsetBit_when_single(String blocksHex, int bit, boolean expectedResult, String expectedHex) {
         // Given
-        var bitSet = BitSet.valueOf(byteBuffer(blocksHex));
-        var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+        var bitmap = Bitmap.read(byteBuffer(blocksHex), Block.Id.of(12));
         // When
         var result = bitmap.free(bit);
         // Then
@@ -151,8 +204,7 @@ class BitmapTest {
     @ParameterizedTest
     void free_should_unsetAllBitsInRange_when_range(String blocksHex, @ConvertWith(RangeConverter.class) Bitmap.Range range, String expectedHex) {
         // Given
-        var bitSet = BitSet.valueOf(byteBuffer(blocksHex));
-        var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+        var bitmap = Bitmap.read(byteBuffer(blocksHex), Block.Id.of(12));
         // When
         bitmap.free(range);
         // Then
@@ -160,7 +212,100 @@ class BitmapTest {
     }
     //endregion
 
+    //region Bitmap::write
+    @Test
+    void write_should_encodeOnlyDirtyWords_when_singleWordChanged() {
+        // Given
+        var hex = "0000000000000000 0000000000000000 0000000000000000";
+        var bitmap = Bitmap.read(byteBuffer(hex), Block.Id.of(12));
+        var _ = bitmap.reserve(70);
+        bitmap.write(ByteBuffer.allocate(3 * BLOCK_SIZE));
+        // When
+        bitmap.free(66);
+        var offset = bitmap.dirtyOffset();
+        var buffer = ByteBuffer.allocate(3 * BLOCK_SIZE).position(offset);
+        bitmap.write(buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(offset).isEqualTo(BLOCK_SIZE);
+            softly.assertThat(buffer.position()).isEqualTo(2 * BLOCK_SIZE);
+            softly.assertThat(HexFormat.of().formatHex(buffer.array())).isEqualTo("0000000000000000" + "3b00000000000000" + "0000000000000000");
+            softly.assertThat(bitmap.isDirty()).isFalse();
+        });
+    }
+
+    @Test
+    void write_should_encodeTail_when_lengthIsNotMultipleOfWord() {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer("000000"), Block.Id.of(12));
+        // When
+        var ranges = bitmap.reserve(30);
+        var buffer = ByteBuffer.allocate(3);
+        bitmap.write(buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(ranges).containsExactly(Bitmap.Range.of(0, 24));
+            softly.assertThat(HexFormat.of().formatHex(buffer.array())).isEqualTo("ffffff");
+            softly.assertThat(bitmap.reserve()).isEqualTo(Bitmap.NOT_FOUND);
+        });
+    }
+    //endregion
+
+    //region Bitmap::claim
+    @Test
+    void claim_should_encodeClaimedBitsAsClear_when_notPersisted() {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer("0000000000000000 0000000000000000"), Block.Id.of(12));
+        // When
+        bitmap.claim(bitmap.reserveRun(4, 8));
+        var claimed = encode(bitmap);
+        var other = bitmap.reserveRun(8);
+        bitmap.persist(Bitmap.Range.of(4, 2));
+        var persisted = encode(bitmap);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(claimed).isEqualTo("0000000000000000" + "0000000000000000");
+            softly.assertThat(other).isEqualTo(Bitmap.Range.of(12, 8));
+            softly.assertThat(persisted).isEqualTo("30f00f0000000000" + "0000000000000000");
+            softly.assertThat(bitmap.claimedCount()).isEqualTo(6);
+        });
+    }
+
+    @Test
+    void release_should_freeClaimedBitsWithoutWrite() {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer("0000000000000000 0000000000000000"), Block.Id.of(12));
+        bitmap.claim(bitmap.reserveRun(4, 8));
+        encode(bitmap);
+        // When
+        bitmap.release(Bitmap.Range.of(4, 8));
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(bitmap.isDirty()).isFalse();
+            softly.assertThat(bitmap.claimedCount()).isZero();
+            softly.assertThat(bitmap.freeCount()).isEqualTo(128);
+            softly.assertThat(bitmap.reserveRun(128)).isEqualTo(Bitmap.Range.of(0, 128));
+        });
+    }
+    //endregion
+
     //region Bitmap::reserve + Bitmap::free
+    @Test
+    void reserve_should_reuseFreedBit_when_freedBeforeHint() {
+        // Given
+        var bitmap = Bitmap.read(byteBuffer("0000000000000000 0000000000000000"), Block.Id.of(12));
+        var _ = bitmap.reserve(100);
+        // When
+        bitmap.free(3);
+        var first = bitmap.reserve();
+        var second = bitmap.reserve();
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(first).isEqualTo(3);
+            softly.assertThat(second).isEqualTo(100);
+        });
+    }
+
     @TestFactory
     Stream<DynamicTest> reserveThenFree_should_retrieveTheSameResult() {
         return IntStream.range(0, 20)
@@ -168,7 +313,7 @@ class BitmapTest {
                 .mapToObj(l -> BitSet.valueOf(new long[]{l}))
                 .map(bitSet -> DynamicTest.dynamicTest(hexOf(bitSet), () -> {
                     // Given
-                    var bitmap = new Bitmap(Block.Id.of(12), bitSet, BLOCK_SIZE);
+                    var bitmap = new Bitmap(Block.Id.of(12), Arrays.copyOf(bitSet.toLongArray(), 1), BLOCK_SIZE);
                     // When
                     var bit = bitmap.reserve();
                     var result = bitmap.free(bit);
@@ -180,7 +325,13 @@ class BitmapTest {
     //endregion
 
     private static String hexOf(Bitmap bitmap) {
-        return hexOf(bitmap.getBitset());
+        return hexOf(BitSet.valueOf(bitmap.getWords()));
+    }
+
+    private static String encode(Bitmap bitmap) {
+        var buffer = ByteBuffer.allocate(2 * BLOCK_SIZE).position(bitmap.dirtyOffset());
+        bitmap.write(buffer);
+        return HexFormat.of().formatHex(buffer.array());
     }
 
     private static String hexOf(BitSet bitset) {
@@ -0,0 +1,163 @@
+package org.atlantfs;
+
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+@ExtendWith(LoggingExtension.class)
+class BlockCacheTest {
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int CAPACITY = 8;
+
+    private AtlantStatistics statistics;
+    private AtlantMemoryDevice device;
+    private BlockCache cache;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        statistics = new AtlantStatistics();
+        device = AtlantMemoryDevice.create(BLOCK_SIZE);
+        device.grow(1024 * BLOCK_SIZE);
+        cache = new BlockCache(device, BLOCK_SIZE, CAPACITY * BLOCK_SIZE, statistics);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        cache.close();
+    }
+
+    @Test
+    void read_should_hitCache_when_blockReadAgain() throws IOException {
+        // Given
+        read(5);
+        // When
+        read(5);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(statistics.cacheMisses()).isEqualTo(1);
+            softly.assertThat(statistics.cacheHits()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void read_should_returnWrittenContent_when_writeThrough() throws IOException {
+        // Given
+        read(3);
+        // When
+        cache.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 3L * BLOCK_SIZE + 10);
+        var buffer = ByteBuffer.allocate(4);
+        cache.read(buffer, 3L * BLOCK_SIZE + 10);
+        var stored = ByteBuffer.allocate(4);
+        device.read(stored, 3L * BLOCK_SIZE + 10);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(buffer.array()).containsExactly(1, 2, 3, 4);
+            softly.assertThat(stored.array()).containsExactly(1, 2, 3, 4);
+            softly.assertThat(statistics.cacheHits()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void read_should_keepBlocksWithinCapacity_when_manyBlocksRead() throws IOException {
+        // When
+        for (int i = 0; i < 100; i++) {
+            read(i);
+        }
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(cache.cachedBlocks()).isEqualTo(CAPACITY);
+            softly.assertThat(statistics.cacheEvictions()).isEqualTo(100 - CAPACITY);
+        });
+    }
+
+    @Test
+    void read_should_keepHotBlock_when_scan() throws IOException {
+        // Given
+        read(1); // In
+        for (int i = 100; i < 100 + CAPACITY; i++) {
+            read(i); // Push 1 to out
+        }
+        read(1); // Main
+        var misses = statistics.cacheMisses();
+        // When
+        for (int i = 200; i < 300; i++) {
+            read(i);
+        }
+        read(1);
+        // Then
+        assertThat(statistics.cacheMisses()).isEqualTo(misses + 100);
+    }
+
+    @Test
+    void read_should_keepPinnedBlock_when_scan() throws IOException {
+        // Given
+        cache.pin(Block.Id.ZERO);
+        read(0);
+        // When
+        for (int i = 100; i < 300; i++) {
+            read(i);
+        }
+        var misses = statistics.cacheMisses();
+        read(0);
+        // Then
+        assertThat(statistics.cacheMisses()).isEqualTo(misses);
+    }
+
+    @Test
+    void write_should_notReachDevice_when_writeBackUntilForce() throws IOException {
+        // Given
+        try (var writeBackCache = new BlockCache(device, BLOCK_SIZE, CAPACITY * BLOCK_SIZE, statistics, new BlockCache.WriteBack(60_000, 1.0))) {
+            // When
+            for (int i = 0; i < 10; i++) {
+                writeBackCache.write(ByteBuffer.wrap(new byte[]{(byte) i}), 5L * BLOCK_SIZE + i);
+            }
+            var stored = ByteBuffer.allocate(10);
+            device.read(stored, 5L * BLOCK_SIZE);
+            var dirtyBeforeForce = writeBackCache.dirtyBlocks();
+            writeBackCache.force();
+            var forced = ByteBuffer.allocate(10);
+            device.read(forced, 5L * BLOCK_SIZE);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(stored.array()).containsOnly(0);
+                softly.assertThat(dirtyBeforeForce).isEqualTo(1);
+                softly.assertThat(forced.array()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+                softly.assertThat(writeBackCache.dirtyBlocks()).isZero();
+                softly.assertThat(statistics.cacheFlushes()).isEqualTo(1);
+            });
+        }
+    }
+
+    @Test
+    void write_should_flushOldestBlocks_when_allCachedBlocksDirty() throws IOException {
+        // Given
+        try (var writeBackCache = new BlockCache(device, BLOCK_SIZE, CAPACITY * BLOCK_SIZE, statistics, new BlockCache.WriteBack(60_000, 1.0))) {
+            // When
+            for (int i = 0; i < 3 * CAPACITY; i++) {
+                writeBackCache.write(ByteBuffer.wrap(new byte[]{(byte) (i + 1)}), (long) i * BLOCK_SIZE);
+            }
+            var stored = ByteBuffer.allocate(1);
+            device.read(stored, 0);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(writeBackCache.dirtyBlocks()).isLessThan(CAPACITY);
+                softly.assertThat(writeBackCache.cachedBlocks()).isLessThanOrEqualTo(CAPACITY);
+                softly.assertThat(stored.get(0)).isEqualTo((byte) 1);
+            });
+        }
+    }
+
+    private void read(int blockId) throws IOException {
+        var _ = cache.read(ByteBuffer.allocate(BLOCK_SIZE), (long) blockId * BLOCK_SIZE);
+    }
+
+}
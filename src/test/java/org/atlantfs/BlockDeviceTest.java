@@ -0,0 +1,129 @@
+package org.atlantfs;
+
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.atlantfs.util.AtlantFileUtil.atlantFile;
+import static org.atlantfs.util.AtlantFileUtil.deleteAllAtlantFiles;
+
+@ExtendWith(LoggingExtension.class)
+class BlockDeviceTest {
+
+    private static final int BLOCK_SIZE = 64;
+
+    @BeforeAll
+    static void beforeAll(TestInfo testInfo) throws IOException {
+        deleteAllAtlantFiles(testInfo);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AtlantConfig.Device.class)
+    void read_should_returnWrittenBytes_when_samePosition(AtlantConfig.Device type, TestInfo testInfo) throws IOException {
+        // Given
+        try (var device = create(type, testInfo)) {
+            // When
+            var written = device.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 10);
+            var buffer = ByteBuffer.allocate(6);
+            var read = device.read(buffer, 8);
+            var size = device.size();
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(written).isEqualTo(4);
+                softly.assertThat(read).isEqualTo(6);
+                softly.assertThat(buffer.array()).containsExactly(0, 0, 1, 2, 3, 4);
+                softly.assertThat(size).isEqualTo(14);
+            });
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(AtlantConfig.Device.class)
+    void read_should_returnLessBytes_when_endOfDevice(AtlantConfig.Device type, TestInfo testInfo) throws IOException {
+        // Given
+        try (var device = create(type, testInfo)) {
+            device.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 0);
+            // When
+            var buffer = ByteBuffer.allocate(8);
+            var read = device.read(buffer, 2);
+            // Then
+            assertThat(read).isEqualTo(2);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(AtlantConfig.Device.class)
+    void grow_should_increaseSize_when_smaller(AtlantConfig.Device type, TestInfo testInfo) throws IOException {
+        // Given
+        try (var device = create(type, testInfo)) {
+            // When
+            device.grow(3 * BLOCK_SIZE);
+            device.grow(BLOCK_SIZE);
+            // Then
+            assertThat(device.size()).isEqualTo(3 * BLOCK_SIZE);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AtlantConfig.Device.class, names = {"MAPPED", "MEMORY"})
+    void slice_should_shareContent_when_addressable(AtlantConfig.Device type, TestInfo testInfo) throws IOException {
+        // Given
+        try (var device = create(type, testInfo)) {
+            var slice = device.slice(2 * BLOCK_SIZE, BLOCK_SIZE);
+            // When
+            slice.putInt(0, 42);
+            var buffer = ByteBuffer.allocate(Integer.BYTES);
+            device.read(buffer, 2 * BLOCK_SIZE);
+            var size = device.size();
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(device.isAddressable()).isTrue();
+                softly.assertThat(buffer.flip().getInt()).isEqualTo(42);
+                softly.assertThat(size).isEqualTo(3 * BLOCK_SIZE);
+            });
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = AtlantConfig.Device.class, names = {"FILE", "MAPPED"})
+    void close_should_keepContent_when_fileDevice(AtlantConfig.Device type, TestInfo testInfo) throws IOException {
+        // Given
+        var atlantFile = atlantFile(testInfo);
+        Files.deleteIfExists(atlantFile);
+        try (var device = create(type, testInfo)) {
+            device.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), BLOCK_SIZE);
+            device.force();
+        }
+        // When
+        try (var channel = AtlantFileChannel.open(atlantFile)) {
+            var buffer = ByteBuffer.allocate(4);
+            channel.readFully(buffer, BLOCK_SIZE);
+            var size = Files.size(atlantFile);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(buffer.array()).containsExactly(1, 2, 3, 4);
+                softly.assertThat(size).isEqualTo(BLOCK_SIZE + 4);
+            });
+        }
+    }
+
+    private static BlockDevice create(AtlantConfig.Device type, TestInfo testInfo) throws IOException {
+        var atlantFile = atlantFile(testInfo);
+        Files.deleteIfExists(atlantFile);
+        return switch (type) {
+            case FILE -> AtlantFileChannel.create(atlantFile);
+            case MAPPED -> AtlantMappedFile.map(AtlantFileChannel.create(atlantFile), BLOCK_SIZE);
+            case MEMORY -> AtlantMemoryDevice.create(BLOCK_SIZE);
+        };
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.atlantfs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+class DentryCacheTest {
+
+    private final AtlantStatistics statistics = new AtlantStatistics();
+
+    @Test
+    void get_should_returnPositiveAndNegativeEntries() {
+        // Given
+        var cache = new DentryCache(16, statistics);
+        cache.put(Inode.Id.of(1), "file", Inode.Id.of(5));
+        cache.putNegative(Inode.Id.of(1), "missing");
+        // When Then
+        assertSoftly(softly -> {
+            softly.assertThat(cache.get(Inode.Id.of(1), "file")).isEqualTo(Inode.Id.of(5));
+            softly.assertThat(cache.get(Inode.Id.of(1), "missing")).isEqualTo(Inode.Id.NULL);
+            softly.assertThat(cache.get(Inode.Id.of(2), "file")).isNull();
+            softly.assertThat(statistics.dentryHits()).isEqualTo(2);
+            softly.assertThat(statistics.dentryMisses()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void remove_should_forgetName() {
+        // Given
+        var cache = new DentryCache(16, statistics);
+        cache.put(Inode.Id.of(1), "file", Inode.Id.of(5));
+        // When
+        cache.remove(Inode.Id.of(1), "file");
+        // Then
+        assertThat(cache.get(Inode.Id.of(1), "file")).isNull();
+    }
+
+    @Test
+    void put_should_evictEntries_when_full() {
+        // Given
+        var cache = new DentryCache(16, statistics);
+        // When
+        for (int i = 0; i < 100; i++) {
+            cache.put(Inode.Id.of(1), "file-" + i, Inode.Id.of(i + 2));
+        }
+        // Then
+        assertThat(cache.size()).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    void put_should_evictDifferentEntries_when_sameEntriesAreCached() {
+        // Given
+        var cache = new DentryCache(16, statistics);
+        for (int i = 0; i < 16; i++) {
+            cache.put(Inode.Id.of(1), "file-" + i, Inode.Id.of(i + 2));
+        }
+        var evicted = new HashSet<String>();
+        // When
+        for (int round = 0; round < 50; round++) {
+            cache.put(Inode.Id.of(1), "new", Inode.Id.of(100));
+            cache.remove(Inode.Id.of(1), "new");
+            // Put evicted entries back, so every round starts with the same entries
+            for (int i = 0; i < 16; i++) {
+                if (cache.get(Inode.Id.of(1), "file-" + i) == null) {
+                    evicted.add("file-" + i);
+                    cache.put(Inode.Id.of(1), "file-" + i, Inode.Id.of(i + 2));
+                }
+            }
+        }
+        // Then
+        assertThat(evicted).hasSizeGreaterThan(2);
+    }
+
+    @Test
+    void get_should_returnNull_when_disabled() {
+        // Given
+        var cache = new DentryCache(0, statistics);
+        // When
+        cache.put(Inode.Id.of(1), "file", Inode.Id.of(5));
+        // Then
+        assertThat(cache.get(Inode.Id.of(1), "file")).isNull();
+    }
+
+}
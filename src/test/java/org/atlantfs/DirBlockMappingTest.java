@@ -0,0 +1,113 @@
+package org.atlantfs;
+
+import org.atlantfs.util.BlockStore;
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.atlantfs.util.BlockStore.BLOCK_SIZE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith({MockitoExtension.class, LoggingExtension.class})
+class DirBlockMappingTest {
+
+    private static final int INODE_SIZE = 48;
+    /**
+     * Names "file-0".."file-11" take 16 aligned bytes, so 4 entries fill a block.
+     */
+    private static final int ENTRIES_PER_BLOCK = 4;
+
+    @Mock
+    AtlantFileSystem fileSystem;
+
+    private final BlockStore<Block.Id> store = new BlockStore<>(Block.Id::of);
+
+    @BeforeEach
+    void beforeEach() throws BitmapRegion.NotEnoughSpaceException {
+        lenient().when(fileSystem.blockSize()).thenReturn(BLOCK_SIZE);
+        lenient().when(fileSystem.inodeSize()).thenReturn(INODE_SIZE);
+        lenient().when(fileSystem.iblockSize()).thenReturn(INODE_SIZE - Inode.MIN_LENGTH);
+        lenient().when(fileSystem.reserveBlockNear(any())).thenAnswer(store.reserving());
+        lenient().when(fileSystem.readBlock(any())).thenAnswer(store.reading());
+        lenient().when(fileSystem.writeBlock(any(), any())).thenAnswer(store.writing());
+    }
+
+    @Test
+    void add_should_addIntoFreedBlock_when_entryRemovedFromMiddleBlock() throws NotEnoughSpaceException, NoSuchFileException {
+        // Given
+        var mapping = filled(3);
+        mapping.remove("file-5");
+        assertThat(mapping.largestFreeSpace(1)).isEqualTo(DirEntry.aligned("file-5"));
+        // When
+        mapping.add(Inode.Id.of(13), FileType.REGULAR_FILE, "file-12");
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(mapping.blocksCount()).isEqualTo(3);
+            softly.assertThat(mapping.largestFreeSpace(1)).isZero();
+            try {
+                softly.assertThat(mapping.get(1).get("file-12").getInode()).isEqualTo(Inode.Id.of(13));
+            } catch (NoSuchFileException e) {
+                softly.fail("File [file-12] was not added into freed block", e);
+            }
+        });
+    }
+
+    @Test
+    void rename_should_updateFreeSpace_when_renamedToLongerName() throws NotEnoughSpaceException, NoSuchFileException {
+        // Given
+        var mapping = filled(3);
+        mapping.remove("file-1");
+        assertThat(mapping.largestFreeSpace(0)).isEqualTo(DirEntry.aligned("file-1"));
+        // When
+        mapping.rename("file-0", "file-0-renamed");
+        // Then
+        assertThat(mapping.largestFreeSpace(0))
+                .isZero()
+                .isEqualTo(mapping.get(0).largestFreeSpace());
+        assertThat(reread(mapping).get("file-0-renamed").getInode()).isEqualTo(Inode.Id.of(1));
+    }
+
+    @Test
+    void largestFreeSpace_should_beReadFromBlocks_when_remounted() throws NotEnoughSpaceException, NoSuchFileException {
+        // Given
+        var mapping = filled(3);
+        mapping.remove("file-5");
+        mapping.remove("file-9");
+        // When
+        var reread = reread(mapping);
+        // Then
+        assertThat(reread.largestFreeSpace(0)).isZero();
+        assertThat(reread.largestFreeSpace(1)).isEqualTo(DirEntry.aligned("file-5"));
+        assertThat(reread.largestFreeSpace(2)).isEqualTo(DirEntry.aligned("file-9"));
+        // When
+        reread.add(Inode.Id.of(13), FileType.REGULAR_FILE, "file-12");
+        // Then
+        assertThat(reread.blocksCount()).isEqualTo(3);
+        assertThat(reread.get(1).get("file-12").getInode()).isEqualTo(Inode.Id.of(13));
+    }
+
+    private DirBlockMapping filled(int numberOfBlocks) throws NotEnoughSpaceException {
+        var mapping = DirBlockMapping.init(fileSystem, DirList.init(BLOCK_SIZE), null);
+        for (int i = 0; i < numberOfBlocks * ENTRIES_PER_BLOCK; i++) {
+            mapping.add(Inode.Id.of(i + 1), FileType.REGULAR_FILE, "file-" + i);
+        }
+        assertThat(mapping.blocksCount()).isEqualTo(numberOfBlocks);
+        return mapping;
+    }
+
+    private DirBlockMapping reread(DirBlockMapping mapping) {
+        var buffer = ByteBuffer.allocate(fileSystem.iblockSize());
+        mapping.flush(buffer);
+        return DirBlockMapping.read(fileSystem, buffer.flip());
+    }
+
+}
@@ -42,6 +42,22 @@ class DirEntryTest {
         assertThat(buffer.hasRemaining()).isFalse();
     }
 
+    @Test
+    void read_should_decodeUtf8Name() {
+        // Given
+        ByteBuffer buffer = byteBuffer("""
+                40E2 0100 1000 0201 C3BC 0000 0000 0000\
+                """);
+        // When
+        DirEntry result = DirEntry.read(buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(result.nameLength()).isEqualTo(2);
+            softly.assertThat(result.nameEquals(DirEntry.encode("ü"))).isTrue();
+            softly.assertThat(result.getName()).isEqualTo("ü");
+        });
+    }
+
     @Test
     void read_should_parseDirEntry_when_expandedEntry() {
         // Given
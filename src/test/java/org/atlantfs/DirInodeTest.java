@@ -0,0 +1,125 @@
+package org.atlantfs;
+
+import org.atlantfs.util.BlockStore;
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.atlantfs.util.BlockStore.BLOCK_SIZE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith({MockitoExtension.class, LoggingExtension.class})
+class DirInodeTest {
+
+    private static final int INODE_SIZE = 48;
+    private static final int THREADS = 4;
+    private static final int NAMES_PER_THREAD = 50;
+
+    @Mock
+    AtlantFileSystem fileSystem;
+
+    private final BlockStore<Block.Id> store = new BlockStore<>(Block.Id::of);
+
+    @BeforeEach
+    void beforeEach() throws BitmapRegion.NotEnoughSpaceException {
+        lenient().when(fileSystem.blockSize()).thenReturn(BLOCK_SIZE);
+        lenient().when(fileSystem.inodeSize()).thenReturn(INODE_SIZE);
+        lenient().when(fileSystem.iblockSize()).thenReturn(INODE_SIZE - Inode.MIN_LENGTH);
+        lenient().when(fileSystem.reserveBlock()).thenAnswer(store.reserving());
+        lenient().when(fileSystem.reserveBlockNear(any())).thenAnswer(store.reserving());
+        lenient().when(fileSystem.readBlock(any())).thenAnswer(store.reading());
+        lenient().when(fileSystem.writeBlock(any(), any())).thenAnswer(store.writing());
+        // Lookup should read directory, not names cached by add
+        lenient().when(fileSystem.dentryCache()).thenReturn(new DentryCache(0, null));
+    }
+
+    //region DirInode::add
+    @EnumSource(value = IblockType.class, names = {"DIR_BLOCK_MAPPING", "DIR_HASH_TREE"})
+    @ParameterizedTest
+    void add_should_keepEveryName_when_addedConcurrently(IblockType iblockType) throws Exception {
+        // Given
+        var dirInode = new DirInode(fileSystem, Inode.Id.of(1), switch (iblockType) {
+            case DIR_BLOCK_MAPPING -> DirBlockMapping.init(fileSystem, DirList.init(BLOCK_SIZE), null);
+            case DIR_HASH_TREE -> DirTree.init(fileSystem, null);
+            default -> throw new IllegalArgumentException(iblockType.name());
+        });
+        var start = new CountDownLatch(1);
+        // When
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < THREADS; i++) {
+                var thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < NAMES_PER_THREAD; j++) {
+                        dirInode.add(inodeOf(thread, j), FileType.REGULAR_FILE, nameOf(thread, j));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (var future : futures) {
+                future.get();
+            }
+        }
+        var reread = reread(dirInode);
+        // Then
+        var expected = IntStream.range(0, THREADS)
+                .boxed()
+                .flatMap(thread -> IntStream.range(0, NAMES_PER_THREAD).mapToObj(j -> nameOf(thread, j)))
+                .toList();
+        assertThat(names(reread))
+                .doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(expected);
+        assertSoftly(softly -> {
+            softly.assertThat(reread.iblock.type()).isEqualTo(iblockType);
+            for (int thread = 0; thread < THREADS; thread++) {
+                for (int j = 0; j < NAMES_PER_THREAD; j++) {
+                    try {
+                        softly.assertThat(reread.lookup(nameOf(thread, j))).isEqualTo(inodeOf(thread, j));
+                    } catch (NoSuchFileException e) {
+                        softly.fail("File [" + nameOf(thread, j) + "] was not found", e);
+                    }
+                }
+            }
+        });
+    }
+    //endregion
+
+    private DirInode reread(DirInode dirInode) {
+        var buffer = ByteBuffer.allocate(INODE_SIZE);
+        dirInode.flush(buffer);
+        return (DirInode) Inode.read(fileSystem, buffer.flip(), dirInode.getId());
+    }
+
+    private static List<String> names(DirInode dirInode) {
+        var result = new ArrayList<String>();
+        dirInode.iterator().forEachRemaining(entry -> result.add(entry.getName()));
+        return result;
+    }
+
+    private static String nameOf(int thread, int index) {
+        return "file-" + thread + "-" + index;
+    }
+
+    private static Inode.Id inodeOf(int thread, int index) {
+        return Inode.Id.of(thread * NAMES_PER_THREAD + index + 2);
+    }
+
+}
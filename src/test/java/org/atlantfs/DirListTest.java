@@ -220,6 +220,28 @@ class DirListTest {
     }
     //endregion
 
+    //region DirList::get
+    @Test
+    void get_should_findEntryByName_when_entriesAddedAndRemoved() throws NotEnoughSpaceException, NoSuchFileException {
+        // Given
+        var dirList = new DirList(4096);
+        for (int i = 0; i < 100; i++) {
+            dirList.add(Inode.Id.of(i + 1), FileType.REGULAR_FILE, "file-" + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            dirList.remove("file-" + i);
+        }
+        dirList.rename("file-1", "renamed");
+        // When
+        var result = dirList.get("renamed");
+        // Then
+        assertThat(result.getInode()).isEqualTo(Inode.Id.of(2));
+        assertThat(dirList.get("file-99").getInode()).isEqualTo(Inode.Id.of(100));
+        assertThatThrownBy(() -> dirList.get("file-0")).isInstanceOf(NoSuchFileException.class);
+        assertThatThrownBy(() -> dirList.get("file-1")).isInstanceOf(NoSuchFileException.class);
+    }
+    //endregion
+
     //region DirList::rename
     @ParameterizedTest
     @CsvSource(value = {
@@ -0,0 +1,180 @@
+package org.atlantfs;
+
+import org.atlantfs.util.BlockStore;
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.atlantfs.util.BlockStore.BLOCK_SIZE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith({MockitoExtension.class, LoggingExtension.class})
+class DirTreeTest {
+
+    private static final int INODE_SIZE = 48;
+
+    @Mock
+    AtlantFileSystem fileSystem;
+
+    private final BlockStore<Block.Id> store = new BlockStore<>(Block.Id::of);
+    private final List<Block.Id> freed = new ArrayList<>();
+
+    @BeforeEach
+    void beforeEach() throws BitmapRegion.NotEnoughSpaceException {
+        lenient().when(fileSystem.blockSize()).thenReturn(BLOCK_SIZE);
+        lenient().when(fileSystem.inodeSize()).thenReturn(INODE_SIZE);
+        lenient().when(fileSystem.iblockSize()).thenReturn(INODE_SIZE - Inode.MIN_LENGTH);
+        lenient().when(fileSystem.reserveBlockNear(any())).thenAnswer(store.reserving());
+        lenient().when(fileSystem.readBlock(any())).thenAnswer(store.reading());
+        lenient().when(fileSystem.writeBlock(any(), any())).thenAnswer(store.writing());
+        lenient().doAnswer(invocation -> freed.add(invocation.getArgument(0))).when(fileSystem).freeBlock(any());
+    }
+
+    @Test
+    void add_should_splitLeavesAndGrowTree_when_manyNames() throws NotEnoughSpaceException {
+        // Given
+        var tree = DirTree.init(fileSystem, null);
+        // When
+        for (int i = 0; i < 200; i++) {
+            tree.addFile(Inode.Id.of(i + 1), "file-" + i);
+        }
+        var reread = reread(tree);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(reread.depth()).isPositive();
+            softly.assertThat(reread.blocksCount()).isEqualTo(tree.blocksCount());
+            softly.assertThat(names(reread)).containsExactlyInAnyOrderElementsOf(IntStream.range(0, 200).mapToObj(i -> "file-" + i).toList());
+            for (int i = 0; i < 200; i++) {
+                try {
+                    softly.assertThat(reread.get("file-" + i).getInode()).isEqualTo(Inode.Id.of(i + 1));
+                } catch (NoSuchFileException e) {
+                    softly.fail("File [file-" + i + "] was not found", e);
+                }
+            }
+        });
+    }
+
+    @Test
+    void addConcurrently_should_addIntoExistingLeaf_untilLeafIsFull() throws NotEnoughSpaceException {
+        // Given
+        var tree = DirTree.init(fileSystem, null);
+        tree.addFile(Inode.Id.of(1), "file-0");
+        var added = new ArrayList<String>(List.of("file-0"));
+        // When
+        for (int i = 1; tree.addConcurrently(Inode.Id.of(i + 1), FileType.REGULAR_FILE, "file-" + i) != null; i++) {
+            added.add("file-" + i);
+        }
+        var reread = reread(tree);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(added).hasSizeGreaterThan(1);
+            softly.assertThat(tree.blocksCount()).isEqualTo(1);
+            softly.assertThat(names(reread)).containsExactlyInAnyOrderElementsOf(added);
+        });
+    }
+
+    @Test
+    void list_should_returnEveryEntryOnce_when_leavesSplitWhileListing() throws NotEnoughSpaceException {
+        // Given
+        var tree = DirTree.init(fileSystem, null);
+        for (int i = 0; i < 50; i++) {
+            tree.addFile(Inode.Id.of(i + 1), "file-" + i);
+        }
+        var listed = new ArrayList<String>();
+        // When
+        var cursor = tree.list(0, _ -> true, entry -> listed.add(entry.getName()));
+        for (int i = 0; i < 200; i++) {
+            tree.addFile(Inode.Id.of(i + 51), "new-" + i);
+        }
+        while (cursor != DirIblock.END) {
+            cursor = tree.list(cursor, _ -> true, entry -> listed.add(entry.getName()));
+        }
+        // Then
+        assertThat(listed)
+                .doesNotHaveDuplicates()
+                .containsAll(IntStream.range(0, 50).mapToObj(i -> "file-" + i).toList());
+    }
+
+    @Test
+    void remove_should_removeOnlySpecifiedName() throws NotEnoughSpaceException, NoSuchFileException {
+        // Given
+        var tree = DirTree.init(fileSystem, null);
+        for (int i = 0; i < 50; i++) {
+            tree.addFile(Inode.Id.of(i + 1), "file-" + i);
+        }
+        // When
+        for (int i = 0; i < 50; i += 2) {
+            tree.remove("file-" + i);
+        }
+        var reread = reread(tree);
+        // Then
+        assertThatThrownBy(() -> reread.get("file-0")).isInstanceOf(NoSuchFileException.class);
+        assertThat(reread.get("file-1").getInode()).isEqualTo(Inode.Id.of(2));
+        assertThat(names(reread)).hasSize(25);
+    }
+
+    @Test
+    void rename_should_moveEntryToLeafOfNewName() throws NotEnoughSpaceException, NoSuchFileException {
+        // Given
+        var tree = DirTree.init(fileSystem, null);
+        for (int i = 0; i < 50; i++) {
+            tree.addFile(Inode.Id.of(i + 1), "file-" + i);
+        }
+        // When
+        tree.rename("file-7", "renamed");
+        var reread = reread(tree);
+        // Then
+        assertThatThrownBy(() -> reread.get("file-7")).isInstanceOf(NoSuchFileException.class);
+        assertThat(reread.get("renamed").getInode()).isEqualTo(Inode.Id.of(8));
+    }
+
+    @Test
+    void delete_should_freeAllBlocks_when_empty() throws IOException {
+        // Given
+        var tree = DirTree.init(fileSystem, null);
+        for (int i = 0; i < 50; i++) {
+            tree.addFile(Inode.Id.of(i + 1), "file-" + i);
+        }
+        // Then
+        assertThatThrownBy(tree::delete).isInstanceOf(DirectoryNotEmptyException.class);
+        // When
+        for (int i = 0; i < 50; i++) {
+            tree.remove("file-" + i);
+        }
+        tree.delete();
+        // Then
+        assertThat(freed).hasSize(tree.blocksCount());
+    }
+
+    private DirTree reread(DirTree tree) {
+        var buffer = ByteBuffer.allocate(fileSystem.iblockSize());
+        tree.flush(buffer);
+        return DirTree.read(fileSystem, buffer.flip(), tree.blocksCount());
+    }
+
+    private static List<String> names(DirTree tree) {
+        var result = new ArrayList<String>();
+        tree.iterator().forEachRemaining(entry -> {
+            if (!entry.isEmpty()) {
+                result.add(entry.getName());
+            }
+        });
+        return result;
+    }
+
+}
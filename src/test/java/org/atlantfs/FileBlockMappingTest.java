@@ -1,6 +1,7 @@
 package org.atlantfs;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -13,10 +14,14 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.lenient;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +39,7 @@ class FileBlockMappingTest {
         lenient().when(fileSystem.inodeSize()).thenReturn(32);
         lenient().when(inode.blockSize()).thenReturn(8);
         lenient().when(inode.getFileSystem()).thenReturn(fileSystem);
+        lenient().when(fileSystem.reserveBlocksNear(any(), anyInt())).thenAnswer(invocation -> List.of(Block.Range.of(Block.Id.of(1000), invocation.getArgument(1, Integer.class))));
         lenient().doAnswer(invocation -> dataBlocks.get(invocation.getArgument(0, Integer.class))).when(fileBlockMapping).get(anyInt());
         lenient().doAnswer(invocation -> {
             dataBlocks.add(invocation.getArgument(0, DataBlock.class));
@@ -168,6 +174,35 @@ class FileBlockMappingTest {
         compare(1, expectedBlock1);
         compare(2, expectedBlock2);
     }
+
+    @Test
+    void write_should_freeUnusedReservedBlocks_when_blockMappingIsFull() throws BitmapRegion.NotEnoughSpaceException, IndirectBlock.NotEnoughSpaceException {
+        // Given
+        var free = new AtomicInteger(100);
+        var nextBlock = new AtomicInteger(1000);
+        var indirectBlocks = new AtomicInteger();
+        doAnswer(_ -> {
+            free.decrementAndGet();
+            return Block.Id.of(nextBlock.getAndIncrement());
+        }).when(fileSystem).reserveBlockNear(any());
+        doAnswer(_ -> {
+            free.decrementAndGet();
+            indirectBlocks.incrementAndGet();
+            return Block.Id.of(nextBlock.getAndIncrement());
+        }).when(fileSystem).reserveBlock();
+        doAnswer(invocation -> {
+            int count = invocation.getArgument(1);
+            free.addAndGet(-count);
+            return List.of(Block.Range.of(Block.Id.of(nextBlock.getAndAdd(count)), count));
+        }).when(fileSystem).reserveBlocksNear(any(), anyInt());
+        doAnswer(invocation -> free.addAndGet(invocation.getArgument(0, List.class).size())).when(fileSystem).freeBlocks(anyList());
+        var blockMapping = FileBlockMapping.init(fileSystem, Data.init(8));
+        // When
+        assertThatThrownBy(() -> blockMapping.write(0, ByteBuffer.allocate(200))).isInstanceOf(IndexOutOfBoundsException.class);
+        // Then
+        assertThat(blockMapping.blocksCount()).isEqualTo(15);
+        assertThat(free.get()).isEqualTo(100 - blockMapping.blocksCount() - indirectBlocks.get());
+    }
     //endregion
 
     private void compare(int index, String expectedBlock) {
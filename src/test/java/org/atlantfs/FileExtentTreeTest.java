@@ -0,0 +1,264 @@
+package org.atlantfs;
+
+import org.atlantfs.util.BlockStore;
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.atlantfs.util.BlockStore.BLOCK_SIZE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith({MockitoExtension.class, LoggingExtension.class})
+class FileExtentTreeTest {
+
+    private static final int INODE_SIZE = 32;
+
+    @Mock
+    AtlantFileSystem fileSystem;
+
+    private final BlockStore<Block.Id> store = new BlockStore<>(Block.Id::of);
+    private final List<Block.Id> freed = new ArrayList<>();
+    private int step = 1;
+
+    @BeforeEach
+    void beforeEach() throws BitmapRegion.NotEnoughSpaceException {
+        lenient().when(fileSystem.blockSize()).thenReturn(BLOCK_SIZE);
+        lenient().when(fileSystem.inodeSize()).thenReturn(INODE_SIZE);
+        lenient().when(fileSystem.iblockSize()).thenReturn(INODE_SIZE - Inode.MIN_LENGTH);
+        lenient().when(fileSystem.reserveBlock()).thenAnswer(_ -> store.reserve(step));
+        lenient().when(fileSystem.reserveBlocksNear(any(), anyInt())).thenAnswer(invocation -> reserve(invocation.getArgument(1)));
+        lenient().when(fileSystem.readBlock(any())).thenAnswer(store.reading());
+        lenient().when(fileSystem.writeBlock(any(), any())).thenAnswer(store.writing());
+        lenient().when(fileSystem.writeDataBlock(any(), any())).thenAnswer(store.writing());
+        lenient().doAnswer(invocation -> freed.add(invocation.getArgument(0))).when(fileSystem).freeBlock(any());
+        lenient().doAnswer(invocation -> freed.addAll(invocation.getArgument(0))).when(fileSystem).freeBlocks(anyList());
+        lenient().doAnswer(invocation -> freed.addAll(Block.Range.flat(invocation.getArgument(0)))).when(fileSystem).freeBlockRanges(anyList());
+    }
+
+    @Test
+    void write_should_keepSingleExtent_when_blocksContiguous() throws NotEnoughSpaceException {
+        // Given
+        var tree = FileExtentTree.init(fileSystem);
+        // When
+        var written = tree.write(0, ByteBuffer.wrap(content(10 * BLOCK_SIZE)));
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(written).isEqualTo(10 * BLOCK_SIZE);
+            softly.assertThat(tree.extents()).containsExactly(FileExtentTree.Extent.of(0, Block.Id.of(100), 10));
+            softly.assertThat(tree.depth()).isZero();
+            softly.assertThat(tree.blocksCount()).isEqualTo(10);
+            softly.assertThat(tree.size()).isEqualTo(10 * BLOCK_SIZE);
+        });
+    }
+
+    @Test
+    void write_should_reserveBlocksOnce_when_largeWrite() throws NotEnoughSpaceException {
+        // Given
+        var tree = FileExtentTree.init(fileSystem);
+        tree.write(0, ByteBuffer.wrap(content(BLOCK_SIZE / 2)));
+        // When
+        tree.write(BLOCK_SIZE / 2, ByteBuffer.wrap(content(20 * BLOCK_SIZE)));
+        // Then
+        verify(fileSystem, times(1)).reserveBlocksNear(any(), eq(1));
+        verify(fileSystem, times(1)).reserveBlocksNear(any(), eq(20));
+        verify(fileSystem, never()).reserveBlock();
+    }
+
+    @Test
+    void write_should_leaveHole_when_positionAfterEnd() throws NotEnoughSpaceException {
+        // Given
+        var tree = FileExtentTree.init(fileSystem);
+        tree.write(0, ByteBuffer.wrap(new byte[]{1}));
+        tree.flush(ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH));
+        // When
+        tree.write(3 * BLOCK_SIZE, ByteBuffer.wrap(new byte[]{2}));
+        tree.flush(ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH));
+        var buffer = ByteBuffer.allocate(3 * BLOCK_SIZE + 1);
+        tree.read(0, buffer);
+        // Then
+        var expected = new byte[3 * BLOCK_SIZE + 1];
+        expected[0] = 1;
+        expected[3 * BLOCK_SIZE] = 2;
+        assertSoftly(softly -> {
+            softly.assertThat(buffer.array()).isEqualTo(expected);
+            softly.assertThat(tree.blocksCount()).isEqualTo(2);
+            softly.assertThat(tree.extents()).containsExactly(FileExtentTree.Extent.of(0, Block.Id.of(100), 1), FileExtentTree.Extent.of(3, Block.Id.of(101), 1));
+        });
+    }
+
+    @Test
+    void write_should_allocateOnlyHoles_when_writeCoversHoleAndMappedBlocks() throws NotEnoughSpaceException {
+        // Given
+        var tree = FileExtentTree.init(fileSystem);
+        tree.write(0, ByteBuffer.wrap(new byte[]{1}));
+        tree.write(3 * BLOCK_SIZE, ByteBuffer.wrap(new byte[]{2}));
+        tree.flush(ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH));
+        // When
+        tree.write(BLOCK_SIZE / 2, ByteBuffer.wrap(content(3 * BLOCK_SIZE)));
+        tree.flush(ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH));
+        var buffer = ByteBuffer.allocate(3 * BLOCK_SIZE);
+        tree.read(BLOCK_SIZE / 2, buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(buffer.array()).isEqualTo(content(3 * BLOCK_SIZE));
+            softly.assertThat(tree.blocksCount()).isEqualTo(4);
+            softly.assertThat(tree.extents()).containsExactly(FileExtentTree.Extent.of(0, Block.Id.of(100), 1), FileExtentTree.Extent.of(1, Block.Id.of(103), 2), FileExtentTree.Extent.of(3, Block.Id.of(101), 1));
+        });
+        verify(fileSystem).reserveBlocksNear(any(), eq(2));
+    }
+
+    @Test
+    void write_should_growInDepth_when_rootIsFull() throws NotEnoughSpaceException {
+        // Given
+        step = 2;
+        var tree = FileExtentTree.init(fileSystem);
+        // When
+        tree.write(0, ByteBuffer.wrap(content(3 * BLOCK_SIZE)));
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(tree.extents()).hasSize(3);
+            softly.assertThat(tree.depth()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void read_should_returnWrittenContent_when_nodesSplit() throws NotEnoughSpaceException {
+        // Given
+        step = 2;
+        var tree = FileExtentTree.init(fileSystem);
+        var content = content(50 * BLOCK_SIZE);
+        tree.write(0, ByteBuffer.wrap(content));
+        var iblock = ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH);
+        tree.flush(iblock);
+        // When
+        var reread = FileExtentTree.read(fileSystem, iblock.flip(), tree.size(), tree.blocksCount());
+        var buffer = ByteBuffer.allocate(content.length);
+        var read = reread.read(0, buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(read).isEqualTo(content.length);
+            softly.assertThat(buffer.array()).isEqualTo(content);
+            softly.assertThat(reread.extents()).hasSize(50);
+            softly.assertThat(reread.depth()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void read_should_returnWrittenContent_when_readConcurrently() throws NotEnoughSpaceException, InterruptedException, ExecutionException {
+        // Given
+        step = 2;
+        var tree = FileExtentTree.init(fileSystem);
+        var content = content(50 * BLOCK_SIZE);
+        tree.write(0, ByteBuffer.wrap(content));
+        var iblock = ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH);
+        tree.flush(iblock);
+        var reread = FileExtentTree.read(fileSystem, iblock.flip(), tree.size(), tree.blocksCount());
+        var threads = 8;
+        var results = new ArrayList<Future<byte[]>>();
+        // When
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                var start = i * 50 / threads * BLOCK_SIZE;
+                results.add(executor.submit((Callable<byte[]>) () -> {
+                    var buffer = ByteBuffer.allocate(content.length);
+                    for (int round = 0; round < 20; round++) {
+                        // Every thread reads block by block from its own position, so threads load nodes and replace
+                        // last found extent at the same time
+                        for (int position = start; position < start + content.length; position += BLOCK_SIZE) {
+                            var wrapped = position % content.length;
+                            reread.read(wrapped, buffer.slice(wrapped, BLOCK_SIZE));
+                        }
+                    }
+                    return buffer.array();
+                }));
+            }
+        }
+        // Then
+        for (var result : results) {
+            assertThat(result.get()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void write_should_overwriteExistingBlock_when_positionInsideFile() throws NotEnoughSpaceException {
+        // Given
+        var tree = FileExtentTree.init(fileSystem);
+        tree.write(0, ByteBuffer.wrap(content(2 * BLOCK_SIZE)));
+        tree.flush(ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH));
+        // When
+        tree.write(BLOCK_SIZE + 1, ByteBuffer.wrap(new byte[]{-1, -1}));
+        tree.flush(ByteBuffer.allocate(INODE_SIZE - Inode.MIN_LENGTH));
+        var buffer = ByteBuffer.allocate(4);
+        tree.read(BLOCK_SIZE, buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(buffer.array()).containsExactly(content(BLOCK_SIZE + 1)[BLOCK_SIZE], -1, -1, content(BLOCK_SIZE + 4)[BLOCK_SIZE + 3]);
+            softly.assertThat(tree.extents()).hasSize(1);
+            softly.assertThat(tree.size()).isEqualTo(2 * BLOCK_SIZE);
+        });
+    }
+
+    @Test
+    void delete_should_freeDataAndNodeBlocks() throws NotEnoughSpaceException {
+        // Given
+        step = 2;
+        var tree = FileExtentTree.init(fileSystem);
+        tree.write(0, ByteBuffer.wrap(content(3 * BLOCK_SIZE)));
+        // When
+        tree.delete();
+        // Then
+        assertThat(freed).containsExactlyInAnyOrder(Block.Id.of(100), Block.Id.of(102), Block.Id.of(104), Block.Id.of(106));
+    }
+
+    @Test
+    void delete_should_freeWholeExtent_when_blocksContiguous() throws NotEnoughSpaceException {
+        // Given
+        var tree = FileExtentTree.init(fileSystem);
+        tree.write(0, ByteBuffer.wrap(content(10 * BLOCK_SIZE)));
+        // When
+        tree.delete();
+        // Then
+        verify(fileSystem).freeBlockRanges(List.of(Block.Range.of(Block.Id.of(100), 10)));
+        verify(fileSystem, never()).freeBlocks(anyList());
+    }
+
+    private List<Block.Range> reserve(int count) {
+        if (step == 1) {
+            return List.of(Block.Range.of(store.reserve(count), count));
+        }
+        var result = new ArrayList<Block.Range>();
+        for (int i = 0; i < count; i++) {
+            result.add(Block.Range.of(store.reserve(step), 1));
+        }
+        return result;
+    }
+
+    private static byte[] content(int length) {
+        var result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) (i * 31 + i / BLOCK_SIZE);
+        }
+        return result;
+    }
+
+}
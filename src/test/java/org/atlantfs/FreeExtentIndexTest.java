@@ -0,0 +1,58 @@
+package org.atlantfs;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+
+class FreeExtentIndexTest {
+
+    @Test
+    void freed_should_joinAdjacentAndOverlappingExtents() {
+        // Given
+        var index = new FreeExtentIndex();
+        index.freed(0, 4);
+        index.freed(10, 2);
+        // When
+        index.freed(4, 7);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(index.size()).isEqualTo(1);
+            softly.assertThat(index.totalFree()).isEqualTo(12);
+            softly.assertThat(index.largest()).isEqualTo(12);
+        });
+    }
+
+    @Test
+    void reserved_should_cutExtents() {
+        // Given
+        var index = new FreeExtentIndex();
+        index.freed(0, 16);
+        // When
+        index.reserved(4, 2);
+        index.reserved(4, 2);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(index.size()).isEqualTo(2);
+            softly.assertThat(index.totalFree()).isEqualTo(14);
+            softly.assertThat(index.largest()).isEqualTo(10);
+        });
+    }
+
+    @Test
+    void bestFit_should_returnSmallestExtentOfEnoughLength() {
+        // Given
+        var index = new FreeExtentIndex();
+        index.freed(0, 8);
+        index.freed(20, 3);
+        index.freed(30, 4);
+        index.freed(40, 3);
+        // When Then
+        assertSoftly(softly -> {
+            softly.assertThat(index.bestFit(3)).isEqualTo(20);
+            softly.assertThat(index.bestFit(4)).isEqualTo(30);
+            softly.assertThat(index.bestFit(5)).isEqualTo(0);
+            softly.assertThat(index.bestFit(9)).isEqualTo(-1);
+        });
+    }
+
+}
@@ -9,8 +9,13 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -71,6 +76,29 @@ class InodeTableRegionTest {
     }
     //endregion
 
+    //region InodeTable::getAll
+    @Test
+    void getAll_should_readInodesOfSameBlockTogether_inOrderOfIds() {
+        // Given
+        var inodeTable = new InodeTableRegion(fileSystem);
+        var cached = inode(34);
+        when(fileSystem.readInode(Inode.Id.of(34))).thenReturn(cached);
+        inodeTable.get(Inode.Id.of(34));
+        when(fileSystem.readInodes(any())).thenAnswer(invocation -> invocation.<List<Inode.Id>>getArgument(0).stream()
+                .map(id -> inode(id.value()))
+                .toList());
+        // When
+        var result = inodeTable.getAll(List.of(Inode.Id.of(33), Inode.Id.of(2), Inode.Id.of(34), Inode.Id.of(70), Inode.Id.of(1), Inode.Id.of(2)));
+        // Then
+        assertThat(result).hasSize(5).containsEntry(Inode.Id.of(34), cached);
+        assertThat(result.keySet()).containsExactlyInAnyOrder(Inode.Id.of(1), Inode.Id.of(2), Inode.Id.of(33), Inode.Id.of(34), Inode.Id.of(70));
+        verify(fileSystem).readInodes(List.of(Inode.Id.of(1), Inode.Id.of(2)));
+        verify(fileSystem).readInodes(List.of(Inode.Id.of(33)));
+        verify(fileSystem).readInodes(List.of(Inode.Id.of(70)));
+        verify(fileSystem, never()).readInodes(List.of(Inode.Id.of(34)));
+    }
+    //endregion
+
     //region InodeTable::calcBlock
     @CsvSource(value = {
             // inode | block size | inode size | first | expected |
@@ -119,4 +147,10 @@ class InodeTableRegionTest {
     }
     //endregion
 
+    private static Inode<?> inode(int id) {
+        Inode<?> inode = mock(FileInode.class);
+        lenient().when(inode.getId()).thenReturn(Inode.Id.of(id));
+        return inode;
+    }
+
 }
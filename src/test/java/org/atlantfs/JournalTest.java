@@ -0,0 +1,353 @@
+package org.atlantfs;
+
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith({MockitoExtension.class, LoggingExtension.class})
+class JournalTest {
+
+    private static final int BLOCK_SIZE = 64;
+    private static final Block.Id FIRST_BLOCK_OF_JOURNAL = Block.Id.of(100);
+
+    @Mock
+    AtlantFileSystem fileSystem;
+    @Mock
+    SuperBlock superBlock;
+
+    private AtlantStatistics statistics;
+    private AtlantMemoryDevice home;
+    private AtlantMemoryDevice storage;
+
+    @BeforeEach
+    void beforeEach() {
+        lenient().when(fileSystem.superBlock()).thenReturn(superBlock);
+        lenient().when(fileSystem.blockSize()).thenReturn(BLOCK_SIZE);
+        lenient().when(superBlock.firstBlockOfJournal()).thenReturn(FIRST_BLOCK_OF_JOURNAL);
+        lenient().when(superBlock.numberOfJournalBlocks()).thenReturn(16);
+        statistics = new AtlantStatistics();
+        home = AtlantMemoryDevice.create(BLOCK_SIZE);
+        storage = AtlantMemoryDevice.create(BLOCK_SIZE);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        home.close();
+        storage.close();
+    }
+
+    @Test
+    void read_should_returnImage_when_notCommitted() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        // When
+        write(journal, 5, 10, 42);
+        var buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        var found = journal.read(Block.Id.of(5), 0, buffer);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(found).isTrue();
+            softly.assertThat(buffer.get(10)).isEqualTo((byte) 42);
+            softly.assertThat(readHome(5).get(10)).isZero();
+        });
+    }
+
+    @Test
+    void commit_should_writeHomeLocations_when_handlesEnded() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        write(journal, 5, 0, 1);
+        write(journal, 7, 0, 2);
+        // When
+        journal.commit();
+        var found = journal.read(Block.Id.of(5), 0, ByteBuffer.allocate(BLOCK_SIZE));
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(readHome(5).get(0)).isEqualTo((byte) 1);
+            softly.assertThat(readHome(7).get(0)).isEqualTo((byte) 2);
+            softly.assertThat(found).isFalse();
+            softly.assertThat(statistics.journalCommits()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void commit_should_groupHandles_when_concurrent() throws IOException, InterruptedException {
+        // Given
+        var threads = 8;
+        // Budgets of all handles fit into running transaction
+        lenient().when(superBlock.numberOfJournalBlocks()).thenReturn(1024);
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        var started = new CountDownLatch(threads);
+        var workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            var blockId = i;
+            workers[i] = Thread.ofPlatform().start(() -> {
+                journal.begin();
+                started.countDown();
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                journal.write(Block.Id.of(blockId + 1), 0, ByteBuffer.wrap(new byte[]{(byte) (blockId + 1)}));
+                journal.end();
+            });
+        }
+        for (var worker : workers) {
+            worker.join();
+        }
+        // When
+        journal.commit();
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(statistics.journalHandles()).isEqualTo(threads);
+            softly.assertThat(statistics.journalCommits()).isEqualTo(1);
+            softly.assertThat(readHome(threads).get(0)).isEqualTo((byte) threads);
+        });
+    }
+
+    @Test
+    void begin_should_joinNextTransaction_when_runningTransactionIsDrained() throws IOException, InterruptedException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        journal.begin();
+        journal.write(Block.Id.of(1), 0, ByteBuffer.wrap(new byte[]{1}));
+        var committer = Thread.ofPlatform().start(() -> {
+            try {
+                journal.commit();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitWaiting(committer);
+        // When
+        var late = Thread.ofPlatform().start(() -> write(journal, 2, 0, 2));
+        awaitWaiting(late);
+        journal.end();
+        committer.join();
+        late.join();
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(readHome(1).get(0)).isEqualTo((byte) 1);
+            softly.assertThat(readHome(2).get(0)).describedAs("Late handle should not join drained transaction").isZero();
+            softly.assertThat(journal.read(Block.Id.of(2), 0, ByteBuffer.allocate(BLOCK_SIZE))).isTrue();
+        });
+        // When
+        journal.commit();
+        // Then
+        assertThat(readHome(2).get(0)).isEqualTo((byte) 2);
+    }
+
+    @Test
+    void replay_should_applyCommittedTransactions_when_homeLocationsLost() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        for (int i = 1; i <= 3; i++) {
+            write(journal, i, 0, i);
+            journal.commit();
+        }
+        try (var crashedHome = AtlantMemoryDevice.create(BLOCK_SIZE)) {
+            // When
+            var _ = Journal.replay(fileSystem, crashedHome, storage, statistics);
+            // Then
+            var blocks = new byte[3];
+            for (int i = 1; i <= 3; i++) {
+                var buffer = ByteBuffer.allocate(1);
+                crashedHome.read(buffer, (long) i * BLOCK_SIZE);
+                blocks[i - 1] = buffer.get(0);
+            }
+            assertThat(blocks).containsExactly(1, 2, 3);
+        }
+    }
+
+    @Test
+    void replay_should_skipTornTransaction_when_commitBlockMissing() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        write(journal, 1, 0, 1);
+        journal.commit();
+        write(journal, 2, 0, 2);
+        journal.commit();
+        // Header, descriptor and image of first transaction, then descriptor, image and commit of second one
+        storage.write(ByteBuffer.allocate(BLOCK_SIZE), (long) FIRST_BLOCK_OF_JOURNAL.plus(6).value() * BLOCK_SIZE);
+        try (var crashedHome = AtlantMemoryDevice.create(BLOCK_SIZE)) {
+            // When
+            var _ = Journal.replay(fileSystem, crashedHome, storage, statistics);
+            var first = ByteBuffer.allocate(1);
+            crashedHome.read(first, BLOCK_SIZE);
+            var second = ByteBuffer.allocate(1);
+            crashedHome.read(second, 2 * BLOCK_SIZE);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(first.get(0)).isEqualTo((byte) 1);
+                softly.assertThat(second.get(0)).isZero();
+            });
+        }
+    }
+
+    @Test
+    void replay_should_skipRevokedBlock_when_reusedForData() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        write(journal, 4, 0, 1);
+        journal.commit();
+        journal.revoke(Block.Id.of(4));
+        home.write(ByteBuffer.wrap(new byte[]{99}), 4L * BLOCK_SIZE);
+        journal.commit();
+        // When
+        var _ = Journal.replay(fileSystem, home, storage, statistics);
+        // Then
+        assertThat(readHome(4).get(0)).isEqualTo((byte) 99);
+    }
+
+    @Test
+    void commit_should_checkpoint_when_journalFull() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        // When
+        for (int i = 1; i <= 20; i++) {
+            write(journal, i, 0, i);
+            journal.commit();
+        }
+        try (var crashedHome = AtlantMemoryDevice.create(BLOCK_SIZE)) {
+            var _ = Journal.replay(fileSystem, crashedHome, storage, statistics);
+            var last = ByteBuffer.allocate(1);
+            crashedHome.read(last, 20L * BLOCK_SIZE);
+            // Then
+            assertSoftly(softly -> {
+                softly.assertThat(statistics.journalCommits()).isEqualTo(20);
+                softly.assertThat(readHome(1).get(0)).isEqualTo((byte) 1);
+                softly.assertThat(last.get(0)).isEqualTo((byte) 20);
+            });
+        }
+    }
+
+    @Test
+    void begin_should_commitRunningTransaction_when_noRoomForHandle() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        // When
+        for (int i = 1; i <= 20; i++) {
+            write(journal, i, 0, i);
+        }
+        // Then
+        assertThat(statistics.journalCommits()).isPositive();
+        // When
+        journal.commit();
+        // Then
+        assertThat(readHome(20).get(0)).isEqualTo((byte) 20);
+    }
+
+    @Test
+    void begin_should_waitForEndOfHandles_when_theirBudgetsDoNotLeaveRoom() throws InterruptedException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        // Budget of handle is 3 blocks in 16 blocks journal, so budgets of 3 handles fit and of 4 don't
+        var active = 3;
+        var begun = new CountDownLatch(active);
+        var release = new CountDownLatch(1);
+        var holders = new Thread[active];
+        for (int i = 0; i < active; i++) {
+            holders[i] = Thread.ofPlatform().start(() -> {
+                journal.begin();
+                begun.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                journal.end();
+            });
+        }
+        begun.await();
+        // When
+        var waiting = Thread.ofPlatform().start(() -> write(journal, 1, 0, 1));
+        awaitWaiting(waiting);
+        release.countDown();
+        waiting.join();
+        for (var holder : holders) {
+            holder.join();
+        }
+        // Then
+        assertThat(statistics.journalHandles()).isEqualTo(active + 1);
+    }
+
+    @Test
+    void write_should_abortJournal_when_handleDoesNotFitIntoJournal() throws IOException {
+        // Given
+        var journal = Journal.init(fileSystem, home, storage, statistics);
+        write(journal, 20, 0, 20);
+        journal.commit();
+        journal.begin();
+        try {
+            // Descriptor, 11 images and commit take 13 of 14 usable log blocks
+            for (int i = 1; i <= 11; i++) {
+                journal.write(Block.Id.of(i), 0, ByteBuffer.wrap(new byte[]{(byte) i}));
+            }
+            // When Then
+            assertThatThrownBy(() -> journal.write(Block.Id.of(12), 0, ByteBuffer.wrap(new byte[]{12})))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Transaction doesn't fit into journal");
+        } finally {
+            journal.end();
+        }
+        // Then
+        assertThat(journal.read(Block.Id.of(1), 0, ByteBuffer.allocate(BLOCK_SIZE))).isFalse();
+        assertThatThrownBy(journal::begin)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Journal is aborted");
+        try (var crashedHome = AtlantMemoryDevice.create(BLOCK_SIZE)) {
+            var _ = Journal.replay(fileSystem, crashedHome, storage, statistics);
+            var committed = ByteBuffer.allocate(1);
+            crashedHome.read(committed, 20L * BLOCK_SIZE);
+            var dropped = ByteBuffer.allocate(11);
+            for (int i = 1; i <= 11; i++) {
+                crashedHome.read(dropped.slice(i - 1, 1), (long) i * BLOCK_SIZE);
+            }
+            assertSoftly(softly -> {
+                softly.assertThat(committed.get(0)).describedAs("Committed transaction should be replayed").isEqualTo((byte) 20);
+                softly.assertThat(dropped.array()).describedAs("Partial handle should not be replayed").containsOnly(0);
+                softly.assertThat(readHome(1).get(0)).describedAs("Home location should not be written").isZero();
+            });
+        }
+        assertThatThrownBy(journal::force)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Journal is aborted");
+    }
+
+    private static void write(Journal journal, int blockId, int offset, int value) {
+        journal.begin();
+        try {
+            journal.write(Block.Id.of(blockId), offset, ByteBuffer.wrap(new byte[]{(byte) value}));
+        } finally {
+            journal.end();
+        }
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            assertThat(thread.isAlive()).isTrue();
+            Thread.sleep(1);
+        }
+    }
+
+    private ByteBuffer readHome(int blockId) {
+        var buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        var _ = home.read(buffer, (long) blockId * BLOCK_SIZE);
+        return buffer;
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.atlantfs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NameFilterTest {
+
+    @Test
+    void mightContain_should_returnTrue_when_nameAdded() {
+        // Given
+        var filter = new NameFilter(1000);
+        // When
+        IntStream.range(0, 1000).forEach(i -> filter.add("file-" + i));
+        // Then
+        assertThat(IntStream.range(0, 1000)).allMatch(i -> filter.mightContain("file-" + i));
+    }
+
+    @Test
+    void mightContain_should_returnFalseForMostMissingNames() {
+        // Given
+        var filter = new NameFilter(1000);
+        IntStream.range(0, 1000).forEach(i -> filter.add("file-" + i));
+        // When
+        var falsePositives = IntStream.range(0, 10000)
+                .filter(i -> filter.mightContain("missing-" + i))
+                .count();
+        // Then
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void isStale_should_returnTrue_when_manyNamesRemoved() {
+        // Given
+        var filter = new NameFilter(256);
+        IntStream.range(0, 200).forEach(i -> filter.add("file-" + i));
+        // When
+        IntStream.range(0, 129).forEach(_ -> filter.remove());
+        // Then
+        assertThat(filter.isStale()).isTrue();
+    }
+
+}
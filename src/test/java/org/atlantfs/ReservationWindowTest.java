@@ -0,0 +1,97 @@
+package org.atlantfs;
+
+import org.atlantfs.util.LoggingExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith({MockitoExtension.class, LoggingExtension.class})
+class ReservationWindowTest {
+
+    @Mock
+    AtlantFileSystem fileSystem;
+
+    private final AtomicInteger nextBlock = new AtomicInteger(100);
+    private final List<Block.Range> persisted = new ArrayList<>();
+    private final List<Block.Range> released = new ArrayList<>();
+
+    @BeforeEach
+    void beforeEach() throws BitmapRegion.NotEnoughSpaceException {
+        lenient().when(fileSystem.claimBlocksNear(any(), anyInt())).thenAnswer(invocation -> {
+            var size = invocation.getArgument(1, Integer.class);
+            return List.of(Block.Range.of(Block.Id.of(nextBlock.getAndAdd(size)), size));
+        });
+        lenient().doAnswer(invocation -> persisted.addAll(invocation.getArgument(0))).when(fileSystem).persistClaimedBlocks(anyList());
+        lenient().doAnswer(invocation -> released.addAll(invocation.getArgument(0))).when(fileSystem).releaseClaimedBlocks(anyList());
+    }
+
+    @Test
+    void reserve_should_takeBlocksFromWindow_when_windowHasEnough() throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        var window = new ReservationWindow(fileSystem, 4, 16);
+        // When
+        var first = window.reserve(null, 1);
+        var second = window.reserve(Block.Id.of(101), 2);
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(first).containsExactly(Block.Range.of(Block.Id.of(100), 1));
+            softly.assertThat(second).containsExactly(Block.Range.of(Block.Id.of(101), 2));
+            softly.assertThat(window.available()).isEqualTo(1);
+            softly.assertThat(persisted).containsExactly(Block.Range.of(Block.Id.of(100), 1), Block.Range.of(Block.Id.of(101), 2));
+        });
+        verify(fileSystem, times(1)).claimBlocksNear(any(), anyInt());
+    }
+
+    @Test
+    void reserve_should_growWindowAndContinueIt_when_windowIsConsumed() throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        var window = new ReservationWindow(fileSystem, 2, 4);
+        // When
+        var result = new ArrayList<Block.Range>();
+        for (int i = 0; i < 8; i++) {
+            result.addAll(window.reserve(null, 1));
+        }
+        // Then
+        assertThat(Block.Range.flat(result)).containsExactly(
+                Block.Id.of(100), Block.Id.of(101), Block.Id.of(102), Block.Id.of(103),
+                Block.Id.of(104), Block.Id.of(105), Block.Id.of(106), Block.Id.of(107));
+        verify(fileSystem).claimBlocksNear(null, 2);
+        verify(fileSystem).claimBlocksNear(Block.Id.of(102), 4);
+        verify(fileSystem, times(0)).claimBlocksNear(any(), eq(8));
+        assertThat(window.size()).isEqualTo(4);
+    }
+
+    @Test
+    void release_should_releaseClaimedBlocksNotTaken() throws BitmapRegion.NotEnoughSpaceException {
+        // Given
+        var window = new ReservationWindow(fileSystem, 4, 16);
+        window.reserve(null, 1);
+        // When
+        window.release();
+        // Then
+        assertSoftly(softly -> {
+            softly.assertThat(released).containsExactly(Block.Range.of(Block.Id.of(101), 3));
+            softly.assertThat(persisted).containsExactly(Block.Range.of(Block.Id.of(100), 1));
+            softly.assertThat(window.available()).isZero();
+        });
+        verify(fileSystem, never()).freeBlocks(anyList());
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.atlantfs.util;
+
+import org.mockito.stubbing.Answer;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Blocks of mocked file system kept in memory, new blocks are reserved one after another starting from
+ * {@link #FIRST_BLOCK}.
+ *
+ * @param <K> the type of block identifier
+ */
+public class BlockStore<K> {
+
+    public static final int BLOCK_SIZE = 64;
+    public static final int FIRST_BLOCK = 100;
+
+    private final Map<K, byte[]> blocks = new ConcurrentHashMap<>();
+    private final AtomicInteger nextBlock = new AtomicInteger(FIRST_BLOCK);
+    private final IntFunction<K> idFactory;
+
+    public BlockStore(IntFunction<K> idFactory) {
+        this.idFactory = idFactory;
+    }
+
+    /**
+     * Reserve blocks after the last reserved one.
+     *
+     * @param count the number of blocks
+     * @return the first reserved block
+     */
+    public K reserve(int count) {
+        return idFactory.apply(nextBlock.getAndAdd(count));
+    }
+
+    public ByteBuffer read(K id) {
+        return ByteBuffer.wrap(blocks.getOrDefault(id, new byte[BLOCK_SIZE]).clone());
+    }
+
+    public int write(K id, Consumer<ByteBuffer> consumer) {
+        var buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        consumer.accept(buffer);
+        blocks.put(id, buffer.array());
+        return buffer.position();
+    }
+
+    public Answer<K> reserving() {
+        return _ -> reserve(1);
+    }
+
+    public Answer<ByteBuffer> reading() {
+        return invocation -> read(invocation.getArgument(0));
+    }
+
+    public Answer<Integer> writing() {
+        return invocation -> write(invocation.getArgument(0), invocation.getArgument(1));
+    }
+
+}